@@ -5,21 +5,29 @@ import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
 import io.cdap.cdap.api.plugin.PluginConfig;
+import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.action.Action;
 import io.cdap.cdap.etl.api.action.ActionContext;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
@@ -32,6 +40,11 @@ import javax.annotation.Nullable;
 public class ADLSDeleteAction extends Action {
 
   private static final Logger LOG = LoggerFactory.getLogger(ADLSDeleteAction.class);
+  private static final long LOG_INTERVAL = 100000;
+  private static final Set<String> MODES = ImmutableSet.of(ADLSDeleteActionConfig.MODE_DELETE,
+                                                           ADLSDeleteActionConfig.MODE_DRY_RUN,
+                                                           ADLSDeleteActionConfig.MODE_REPLAY);
+  private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*([smhd])");
 
   private ADLSDeleteActionConfig config;
   private PathFilter filter;
@@ -53,47 +66,103 @@ public class ADLSDeleteAction extends Action {
 
     FileSystem fileSystem = FileSystem.get(conf);
 
-    // delete the path, if its a directory without regex or a file
-    if (fileSystem.isFile(path) || (fileSystem.isDirectory(path) && config.fileRegex == null)) {
-      removePath(fileSystem, path);
+    Long modifiedBefore = config.getMinAgeMillis() == null ? null :
+      context.getLogicalStartTime() - config.getMinAgeMillis();
+    FileStatusFilter filter = new FileStatusFilter(config.fileRegex, modifiedBefore, config.minSize, config.maxSize);
+
+    if (ADLSDeleteActionConfig.MODE_DRY_RUN.equals(config.getMode())) {
+      Path manifest = new Path(config.manifestPath);
+      long start = System.currentTimeMillis();
+      long listed;
+      DeleteManifest.Writer writer = DeleteManifest.create(fileSystem, manifest);
+      try {
+        listed = listMatching(fileSystem, path, config.isRecursive(), config.isFiltered(), filter, writer);
+      } finally {
+        writer.close();
+      }
+      LOG.info("Dry run matched {} paths with {} bytes in {} ms. Wrote the manifest to {}.",
+               new Object[] {writer.getPaths(), writer.getBytes(), System.currentTimeMillis() - start, manifest});
+      context.getMetrics().countLong("delete.paths.listed", listed);
+      context.getMetrics().countLong("delete.dryrun.paths", writer.getPaths());
+      context.getMetrics().countLong("delete.dryrun.bytes", writer.getBytes());
       return;
     }
 
-    // if its a directory and regex is specified then list and delete all the matching files
-    if (config.fileRegex != null) {
-      PathFilter filter = new PathFilter() {
-        private final Pattern pattern = Pattern.compile(config.fileRegex);
-
-        @Override
-        public boolean accept(Path path) {
-          return pattern.matcher(path.getName()).matches();
-        }
-      };
-
-      FileStatus[] listFiles = fileSystem.listStatus(path, filter);
-
-      for (FileStatus file : listFiles) {
-        Path currPath = file.getPath();
-        LOG.debug("deleting file: {}", currPath.toString());
-        removePath(fileSystem, currPath);
+    PathDeleter deleter = new PathDeleter(fileSystem, config.getMaxConcurrentDeletes(), config.getMaxRetries(),
+                                          config.getRetryBackoffMillis(), config.continueOnError);
+    try {
+      if (ADLSDeleteActionConfig.MODE_REPLAY.equals(config.getMode())) {
+        long replayed = DeleteManifest.replay(fileSystem, new Path(config.manifestPath), path, deleter);
+        LOG.info("Read {} paths from manifest {}.", replayed, config.manifestPath);
+      } else {
+        long listed = listMatching(fileSystem, path, config.isRecursive(), config.isFiltered(), filter, deleter);
+        context.getMetrics().countLong("delete.paths.listed", listed);
+      }
+    } finally {
+      try {
+        deleter.close();
+      } finally {
+        deleter.emitMetrics(context.getMetrics());
       }
     }
   }
 
-  public void removePath(FileSystem fileSystem, Path currPath) throws Exception {
+  /**
+   * Passes the paths to delete to the given handler, which is either the given path or the paths under it that
+   * match the filter.
+   *
+   * A file is deleted if it matches the age and size limits of the filter. A directory is deleted with all of its
+   * contents unless the deletion is filtered or recursive, and a directory under the path only matches the filter if
+   * it has no age or size limits. Otherwise its children, or all files below it if
+   * recursive, are listed and the matching ones are deleted. The listing is streamed and paths are passed to the
+   * handler while it is in progress, so memory use does not depend on the number of paths.
+   *
+   * @return the number of paths listed
+   */
+  @VisibleForTesting
+  static long listMatching(FileSystem fileSystem, Path path, boolean recursive, boolean filtered,
+                           FileStatusFilter filter, MatchedPathHandler handler)
+    throws IOException, InterruptedException {
+    FileStatus status;
     try {
-      if (!fileSystem.delete(currPath, true)) {
-        if (!config.continueOnError) {
-          throw new IOException(String.format("Removal of %s was unsuccessful.", currPath.toString()));
-        }
-        LOG.warn("Removal of {} was unsuccessful.", currPath.toString());
+      status = fileSystem.getFileStatus(path);
+    } catch (FileNotFoundException e) {
+      if (!filtered) {
+        return 0;
+      }
+      throw e;
+    }
+    if (!recursive && !filtered) {
+      handler.handle(status);
+      return 0;
+    }
+    if (!status.isDirectory()) {
+      // the regex only applies to the contents of a directory
+      if (filter.acceptAgeAndSize(status)) {
+        handler.handle(status);
+      }
+      return 0;
+    }
+
+    RemoteIterator<LocatedFileStatus> iterator = recursive ? fileSystem.listFiles(path, true) :
+      fileSystem.listLocatedStatus(path);
+    long listed = 0;
+    long matched = 0;
+    while (iterator.hasNext()) {
+      LocatedFileStatus file = iterator.next();
+      if (++listed % LOG_INTERVAL == 0) {
+        LOG.info("Listed {} paths under {}, {} of them match.", new Object[] {listed, path, matched});
       }
-    } catch (IOException e) {
-      if (!config.continueOnError) {
-        throw e;
+      if (filter.accept(file)) {
+        matched++;
+        if (!handler.handle(file)) {
+          // a delete failed and errors are not tolerated
+          break;
+        }
       }
-      LOG.warn("Removal of {} was unsuccessful.", currPath.toString());
     }
+    LOG.info("Listed {} paths under {}, {} of them match.", new Object[] {listed, path, matched});
+    return listed;
   }
 
   @Override
@@ -107,6 +176,43 @@ public class ADLSDeleteAction extends Action {
           .withConfigProperty(ADLSDeleteActionConfig.FILE_REGEX);
       }
     }
+    FailureCollector collector = pipelineConfigurer.getStageConfigurer().getFailureCollector();
+    if (config.maxConcurrentDeletes != null && config.maxConcurrentDeletes < 1) {
+      collector.addFailure(String.format("Maximum concurrent deletes '%d' must be at least 1.",
+                                         config.maxConcurrentDeletes), null)
+        .withConfigProperty(ADLSDeleteActionConfig.MAX_CONCURRENT_DELETES);
+    }
+    if (config.maxRetries != null && config.maxRetries < 0) {
+      collector.addFailure(String.format("Maximum retries '%d' must not be negative.", config.maxRetries), null)
+        .withConfigProperty(ADLSDeleteActionConfig.MAX_RETRIES);
+    }
+    if (config.retryBackoffMillis != null && config.retryBackoffMillis < 0) {
+      collector.addFailure(String.format("Retry backoff '%d' must not be negative.", config.retryBackoffMillis), null)
+        .withConfigProperty(ADLSDeleteActionConfig.RETRY_BACKOFF_MILLIS);
+    }
+    if (!config.containsMacro(ADLSDeleteActionConfig.MODE) &&
+      !MODES.contains(config.getMode())) {
+      collector.addFailure(String.format("Mode '%s' is invalid.", config.mode),
+                           String.format("Use one of %s.", MODES))
+        .withConfigProperty(ADLSDeleteActionConfig.MODE);
+    } else if (!ADLSDeleteActionConfig.MODE_DELETE.equals(config.getMode()) && config.manifestPath == null &&
+      !config.containsMacro(ADLSDeleteActionConfig.MANIFEST_PATH)) {
+      collector.addFailure(String.format("A manifest path is required in mode '%s'.", config.mode), null)
+        .withConfigProperty(ADLSDeleteActionConfig.MANIFEST_PATH);
+    }
+    if (config.minAge != null) {
+      try {
+        config.getMinAgeMillis();
+      } catch (IllegalArgumentException e) {
+        collector.addFailure(e.getMessage(), "Specify a number followed by s, m, h or d, such as '30d'.")
+          .withConfigProperty(ADLSDeleteActionConfig.MIN_AGE);
+      }
+    }
+    if (config.minSize != null && config.maxSize != null && config.minSize > config.maxSize) {
+      collector.addFailure(String.format("Minimum size '%d' must not be greater than maximum size '%d'.",
+                                         config.minSize, config.maxSize), null)
+        .withConfigProperty(ADLSDeleteActionConfig.MIN_SIZE).withConfigProperty(ADLSDeleteActionConfig.MAX_SIZE);
+    }
   }
 
   /**
@@ -114,6 +220,21 @@ public class ADLSDeleteAction extends Action {
    */
   public class ADLSDeleteActionConfig extends PluginConfig {
     private static final String FILE_REGEX = "fileRegex";
+    private static final String MAX_CONCURRENT_DELETES = "maxConcurrentDeletes";
+    private static final String MAX_RETRIES = "maxRetries";
+    private static final String RETRY_BACKOFF_MILLIS = "retryBackoffMillis";
+    private static final String MODE = "mode";
+    private static final String MANIFEST_PATH = "manifestPath";
+    private static final String MODE_DELETE = "delete";
+    private static final String MODE_DRY_RUN = "dry-run";
+    private static final String MODE_REPLAY = "replay";
+    private static final String MIN_AGE = "minAge";
+    private static final String MIN_SIZE = "minSize";
+    private static final String MAX_SIZE = "maxSize";
+    private static final int DEFAULT_MAX_CONCURRENT_DELETES = 16;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final long DEFAULT_RETRY_BACKOFF_MILLIS = 500;
+
     @Description("The full ADLS path of the file or files that need to be deleted. If path points to a file, " +
       "the file will be removed. If path points to a directory with no regex specified, the directory and all of " +
       "its contents will be removed. If a regex is specified, only the files and directories matching that regex " +
@@ -129,6 +250,58 @@ public class ADLSDeleteAction extends Action {
     @Description("Indicates if the pipeline should continue if the delete fails")
     private boolean continueOnError;
 
+    @Description("Whether to delete matching files in all subdirectories of the path. Only files are deleted in " +
+      "this mode, directories are kept even if they end up empty. Defaults to false.")
+    @Nullable
+    @Macro
+    private Boolean recursive;
+
+    @Description("Minimum age of the paths to delete, relative to the logical start time of the pipeline run, as a " +
+      "number followed by s, m, h or d for seconds, minutes, hours or days, such as '30d'. Paths modified more " +
+      "recently are kept. Directories are only deleted if no age or size limit is set.")
+    @Nullable
+    @Macro
+    private String minAge;
+
+    @Description("Minimum size in bytes of the files to delete.")
+    @Nullable
+    @Macro
+    private Long minSize;
+
+    @Description("Maximum size in bytes of the files to delete.")
+    @Nullable
+    @Macro
+    private Long maxSize;
+
+    @Description("Whether to delete the matching paths ('delete'), only write the matching paths and their sizes to " +
+      "the manifest without deleting them ('dry-run'), or delete the paths in a manifest written by an earlier dry " +
+      "run without listing them again ('replay'). Defaults to 'delete'.")
+    @Nullable
+    @Macro
+    private String mode;
+
+    @Description("Path of the manifest written in dry-run mode and read in replay mode. Only paths under the path " +
+      "to delete are replayed.")
+    @Nullable
+    @Macro
+    private String manifestPath;
+
+    @Description("Maximum number of paths deleted in parallel. Defaults to 16.")
+    @Nullable
+    @Macro
+    private Integer maxConcurrentDeletes;
+
+    @Description("Maximum number of times a failed delete of a path is retried. Defaults to 3.")
+    @Nullable
+    @Macro
+    private Integer maxRetries;
+
+    @Description("Time in milliseconds to wait before retrying a failed delete. The time doubles with every " +
+      "following retry of the same path. Defaults to 500.")
+    @Nullable
+    @Macro
+    private Long retryBackoffMillis;
+
     @Description("ADLS File system uri")
     @Macro
     private String fileSystemUri;
@@ -156,6 +329,55 @@ public class ADLSDeleteAction extends Action {
       this.clientId = clientId;
       this.credentials = credentials;
     }
+
+    String getMode() {
+      return mode == null ? MODE_DELETE : mode;
+    }
+
+    boolean isRecursive() {
+      return recursive != null && recursive;
+    }
+
+    /**
+     * Returns whether only paths matching a regex, age or size are deleted.
+     */
+    boolean isFiltered() {
+      return fileRegex != null || minAge != null || minSize != null || maxSize != null;
+    }
+
+    @Nullable
+    Long getMinAgeMillis() {
+      if (minAge == null) {
+        return null;
+      }
+      Matcher matcher = DURATION.matcher(minAge.trim());
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException(String.format("Minimum age '%s' is invalid.", minAge));
+      }
+      long amount = Long.parseLong(matcher.group(1));
+      switch (matcher.group(2)) {
+        case "s":
+          return TimeUnit.SECONDS.toMillis(amount);
+        case "m":
+          return TimeUnit.MINUTES.toMillis(amount);
+        case "h":
+          return TimeUnit.HOURS.toMillis(amount);
+        default:
+          return TimeUnit.DAYS.toMillis(amount);
+      }
+    }
+
+    int getMaxConcurrentDeletes() {
+      return maxConcurrentDeletes == null ? DEFAULT_MAX_CONCURRENT_DELETES : maxConcurrentDeletes;
+    }
+
+    int getMaxRetries() {
+      return maxRetries == null ? DEFAULT_MAX_RETRIES : maxRetries;
+    }
+
+    long getRetryBackoffMillis() {
+      return retryBackoffMillis == null ? DEFAULT_RETRY_BACKOFF_MILLIS : retryBackoffMillis;
+    }
   }
 
   private Map<String, String> getFileSystemProperties() {
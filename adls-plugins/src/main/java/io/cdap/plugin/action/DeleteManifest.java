@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.action;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Writes and replays the manifest of the paths matched by a dry run of the delete action.
+ *
+ * The manifest is a UTF-8 text file with one line for every matched path, holding the size of the path in bytes and
+ * the fully qualified path, separated by a tab. The size of a directory is 0, since computing the size of its
+ * contents would require listing it.
+ */
+public final class DeleteManifest {
+  private static final char SEPARATOR = '\t';
+
+  private DeleteManifest() {
+  }
+
+  /**
+   * Creates a manifest at the given path, replacing any existing file.
+   */
+  public static Writer create(FileSystem fileSystem, Path manifest) throws IOException {
+    return new Writer(new BufferedWriter(new OutputStreamWriter(fileSystem.create(manifest, true),
+                                                                StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Reads the given manifest and passes every path in it to the given handler.
+   *
+   * @param root path every path in the manifest must be under, with the same scheme and authority, so that a
+   *             manifest never deletes paths outside of the configured path
+   * @return the number of paths read from the manifest
+   * @throws IOException if the manifest cannot be read, is malformed or contains a path outside of the root
+   */
+  public static long replay(FileSystem fileSystem, Path manifest, Path root,
+                            MatchedPathHandler handler) throws IOException, InterruptedException {
+    URI rootUri = fileSystem.makeQualified(root).toUri();
+    String rootPath = rootUri.getPath();
+    String rootPrefix = rootPath.endsWith("/") ? rootPath : rootPath + "/";
+    long count = 0;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(fileSystem.open(manifest),
+                                                                          StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        int separator = line.indexOf(SEPARATOR);
+        if (separator < 0) {
+          throw new IOException(String.format("Line %d of manifest %s is malformed: '%s'.", count + 1, manifest,
+                                              line));
+        }
+        long size;
+        try {
+          size = Long.parseLong(line.substring(0, separator));
+        } catch (NumberFormatException e) {
+          throw new IOException(String.format("Line %d of manifest %s has an invalid size: '%s'.", count + 1,
+                                              manifest, line));
+        }
+        // qualified without checking that the path belongs to the file system, which fails for other authorities
+        Path path = new Path(line.substring(separator + 1)).makeQualified(fileSystem.getUri(),
+                                                                          fileSystem.getWorkingDirectory());
+        URI uri = path.toUri();
+        String pathString = uri.getPath();
+        if (!rootUri.getScheme().equalsIgnoreCase(uri.getScheme())
+          || !Objects.equals(rootUri.getAuthority(), uri.getAuthority())
+          || (!pathString.equals(rootPath) && !pathString.startsWith(rootPrefix))) {
+          throw new IOException(String.format("Path %s in manifest %s is not under %s.", path, manifest, root));
+        }
+        count++;
+        FileStatus status = new FileStatus(size, false, 0, 0, 0, path);
+        if (!handler.handle(status)) {
+          break;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Appends matched paths to a manifest and keeps track of the number of paths and bytes.
+   */
+  public static final class Writer implements MatchedPathHandler, Closeable {
+    private final java.io.Writer writer;
+    private long paths;
+    private long bytes;
+
+    private Writer(java.io.Writer writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public boolean handle(FileStatus status) throws IOException {
+      long size = status.isDirectory() ? 0 : status.getLen();
+      writer.write(Long.toString(size));
+      writer.write(SEPARATOR);
+      writer.write(status.getPath().toString());
+      writer.write('\n');
+      paths++;
+      bytes += size;
+      return true;
+    }
+
+    public long getPaths() {
+      return paths;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+}
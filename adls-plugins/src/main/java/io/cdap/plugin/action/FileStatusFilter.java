@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.action;
+
+import org.apache.hadoop.fs.FileStatus;
+
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Decides whether a listed path is deleted, based on the name, modification time and size in its {@link FileStatus}.
+ *
+ * Age and size limits only apply to files. A directory is deleted with all of its contents, whose age and size its
+ * own status does not tell, so directories only match if there are no age or size limits.
+ */
+public class FileStatusFilter {
+  private final Pattern pattern;
+  private final long modifiedBefore;
+  private final long minSize;
+  private final long maxSize;
+  private final boolean ageOrSizeLimited;
+
+  /**
+   * @param fileRegex regular expression the name of a path must match, or null to match any name
+   * @param modifiedBefore time in milliseconds a path must have been modified before, or null for no age limit
+   * @param minSize minimum size in bytes of a file, or null for no minimum
+   * @param maxSize maximum size in bytes of a file, or null for no maximum
+   */
+  public FileStatusFilter(@Nullable String fileRegex, @Nullable Long modifiedBefore, @Nullable Long minSize,
+                          @Nullable Long maxSize) {
+    this.pattern = fileRegex == null ? null : Pattern.compile(fileRegex);
+    this.modifiedBefore = modifiedBefore == null ? Long.MAX_VALUE : modifiedBefore;
+    this.minSize = minSize == null ? 0L : minSize;
+    this.maxSize = maxSize == null ? Long.MAX_VALUE : maxSize;
+    this.ageOrSizeLimited = modifiedBefore != null || minSize != null || maxSize != null;
+  }
+
+  public boolean accept(FileStatus status) {
+    return acceptAgeAndSize(status) && (pattern == null || pattern.matcher(status.getPath().getName()).matches());
+  }
+
+  /**
+   * Returns whether the given path matches the age and size limits, regardless of its name.
+   */
+  public boolean acceptAgeAndSize(FileStatus status) {
+    if (status.isDirectory()) {
+      return !ageOrSizeLimited;
+    }
+    return status.getModificationTime() < modifiedBefore && status.getLen() >= minSize && status.getLen() <= maxSize;
+  }
+}
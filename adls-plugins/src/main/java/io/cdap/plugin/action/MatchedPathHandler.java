@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.action;
+
+import org.apache.hadoop.fs.FileStatus;
+
+import java.io.IOException;
+
+/**
+ * Receives the paths matched by the delete action while the listing is in progress.
+ */
+public interface MatchedPathHandler {
+
+  /**
+   * Handles a matched path.
+   *
+   * @return false if no more paths should be handled, for example because a delete failed
+   */
+  boolean handle(FileStatus status) throws IOException, InterruptedException;
+}
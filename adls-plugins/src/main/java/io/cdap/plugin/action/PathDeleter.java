@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.action;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Deletes paths in parallel on a bounded pool of worker threads.
+ *
+ * Paths are submitted one at a time and deleted asynchronously. At most a fixed number of deletes are queued or in
+ * flight, so {@link #delete(Path)} blocks once the workers fall behind. A delete that fails with an
+ * {@link IOException} is retried with exponential backoff, while unchecked exceptions fail the delete right away.
+ * Failures are collected and reported by {@link #close()}, which waits for all submitted deletes to complete. Unless
+ * failures are tolerated, no new deletes are started once a delete has failed.
+ */
+public class PathDeleter implements MatchedPathHandler, AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(PathDeleter.class);
+  private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  // only the first failures are kept as suppressed exceptions, the rest are only counted
+  private static final int MAX_REPORTED_FAILURES = 100;
+  // upper bounds in milliseconds of the delete latency histogram buckets, the last bucket is unbounded
+  private static final long[] LATENCY_BUCKETS = {10, 50, 100, 500, 1000, 5000, 30000};
+
+  private final FileSystem fileSystem;
+  private final boolean continueOnError;
+  private final int maxRetries;
+  private final long retryBackoffMillis;
+  private final ExecutorService executor;
+  private final Semaphore pending;
+  private final int maxPending;
+  private final AtomicLong submitted;
+  private final AtomicLong deleted;
+  private final AtomicLong failed;
+  private final AtomicLong retries;
+  private final AtomicLongArray latencies;
+  private IOException failure;
+
+  /**
+   * @param fileSystem file system to delete paths from
+   * @param concurrency number of paths deleted in parallel
+   * @param maxRetries number of times a failed delete is retried
+   * @param retryBackoffMillis time to wait before the first retry, doubled for every following retry
+   * @param continueOnError whether to continue deleting the remaining paths when a delete fails
+   */
+  public PathDeleter(FileSystem fileSystem, int concurrency, int maxRetries, long retryBackoffMillis,
+                     boolean continueOnError) {
+    this.fileSystem = fileSystem;
+    this.continueOnError = continueOnError;
+    this.maxRetries = maxRetries;
+    this.retryBackoffMillis = retryBackoffMillis;
+    this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+      .setNameFormat("adls-delete-%d").setDaemon(true).build());
+    // keep a few paths queued for every worker so workers never wait for the caller
+    this.maxPending = concurrency * 4;
+    this.pending = new Semaphore(maxPending);
+    this.submitted = new AtomicLong();
+    this.deleted = new AtomicLong();
+    this.failed = new AtomicLong();
+    this.retries = new AtomicLong();
+    this.latencies = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+  }
+
+  /**
+   * Submits the given path for deletion, waiting while the maximum number of deletes are pending.
+   *
+   * @return false if the path was not submitted because a previous delete failed and errors are not tolerated
+   */
+  public boolean delete(final Path path) throws InterruptedException {
+    if (isFailed()) {
+      return false;
+    }
+    pending.acquire();
+    submitted.incrementAndGet();
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            deleteWithRetries(path);
+          } finally {
+            pending.release();
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      pending.release();
+      throw e;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean handle(FileStatus status) throws InterruptedException {
+    return delete(status.getPath());
+  }
+
+  private void deleteWithRetries(Path path) {
+    if (isFailed()) {
+      // a delete failed after this one was queued
+      failed.incrementAndGet();
+      return;
+    }
+    LOG.debug("Deleting path: {}", path);
+    long backoff = retryBackoffMillis;
+    for (int attempt = 0; ; attempt++) {
+      long start = System.nanoTime();
+      try {
+        // a retried delete may find the path removed by an earlier attempt that failed on the way back
+        if (fileSystem.delete(path, true) || (attempt > 0 && !fileSystem.exists(path))) {
+          recordLatency(System.nanoTime() - start);
+          deleted.incrementAndGet();
+        } else {
+          recordFailure(new IOException(String.format("Removal of %s was unsuccessful.", path)));
+        }
+        return;
+      } catch (IOException e) {
+        recordLatency(System.nanoTime() - start);
+        if (attempt >= maxRetries) {
+          recordFailure(new IOException(String.format("Removal of %s was unsuccessful after %d attempts.",
+                                                      path, attempt + 1), e));
+          return;
+        }
+        LOG.debug(String.format("Removal of %s failed, retrying in %d ms.", path, backoff), e);
+        retries.incrementAndGet();
+        try {
+          TimeUnit.MILLISECONDS.sleep(backoff);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          recordFailure(new IOException(String.format("Interrupted while removing %s.", path), e));
+          return;
+        }
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+      } catch (RuntimeException e) {
+        // not retried, since unchecked exceptions of the file system are not transient
+        recordLatency(System.nanoTime() - start);
+        recordFailure(new IOException(String.format("Removal of %s failed: %s", path, e.getMessage()), e));
+        return;
+      }
+    }
+  }
+
+  private void recordLatency(long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = 0;
+    while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+      bucket++;
+    }
+    latencies.incrementAndGet(bucket);
+  }
+
+  private synchronized void recordFailure(IOException e) {
+    long count = failed.incrementAndGet();
+    LOG.warn(e.getMessage(), e.getCause());
+    if (failure == null) {
+      failure = e;
+    } else if (count <= MAX_REPORTED_FAILURES) {
+      failure.addSuppressed(e);
+    }
+  }
+
+  private synchronized boolean isFailed() {
+    return !continueOnError && failure != null;
+  }
+
+  /**
+   * Waits for all submitted deletes to complete and shuts down the workers.
+   *
+   * @throws IOException if a delete failed and errors are not tolerated
+   */
+  @Override
+  public void close() throws IOException, InterruptedException {
+    executor.shutdown();
+    try {
+      pending.acquire(maxPending);
+    } finally {
+      executor.shutdownNow();
+    }
+    LOG.info("Deleted {} of {} paths with {} retries, {} failed.",
+             new Object[] {deleted.get(), submitted.get(), retries.get(), failed.get()});
+    synchronized (this) {
+      if (failure != null && !continueOnError) {
+        throw new IOException(String.format("Failed to delete %d of %d paths: %s",
+                                            failed.get(), submitted.get(), failure.getMessage()), failure);
+      }
+    }
+  }
+
+  /**
+   * Emits the number of paths deleted, failed and retried, and the histogram of delete latencies as metrics.
+   */
+  public void emitMetrics(StageMetrics metrics) {
+    metrics.countLong("delete.paths.submitted", submitted.get());
+    metrics.countLong("delete.paths.deleted", deleted.get());
+    metrics.countLong("delete.paths.failed", failed.get());
+    metrics.countLong("delete.retries", retries.get());
+    for (int i = 0; i < latencies.length(); i++) {
+      String bucket = i < LATENCY_BUCKETS.length ? "le." + LATENCY_BUCKETS[i] + "ms" : "gt." +
+        LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + "ms";
+      metrics.countLong("delete.latency." + bucket, latencies.get(i));
+    }
+  }
+
+  public long getDeleted() {
+    return deleted.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+}
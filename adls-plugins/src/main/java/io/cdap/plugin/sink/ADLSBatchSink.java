@@ -27,15 +27,16 @@ import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.StageContext;
 import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.batch.BatchSinkContext;
-import io.cdap.plugin.common.HiveSchemaConverter;
 import io.cdap.plugin.common.LineageRecorder;
 import io.cdap.plugin.common.ReferenceBatchSink;
 import io.cdap.plugin.common.ReferencePluginConfig;
 import io.cdap.plugin.common.batch.JobUtils;
 import io.cdap.plugin.common.batch.sink.SinkOutputFormatProvider;
+import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.apache.avro.mapred.AvroKey;
@@ -47,11 +48,18 @@ import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.orc.mapreduce.OrcOutputFormat;
+import org.apache.parquet.avro.AvroParquetOutputFormat;
+import org.apache.parquet.hadoop.ParquetOutputFormat;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -70,9 +78,13 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
   private static final String AVRO = "avro";
   private static final String TEXT = "text";
   private static final String ORC = "orc";
+  private static final String PARQUET = "parquet";
   private StructuredToAvroTransformer avroTransformer;
   private StructuredToTextTransformer textTransformer;
   private StructuredToOrcTransformer orcTransformer;
+  private OutputPartitioner partitioner;
+  // the key the metrics of this stage are registered with for the output format, if they are
+  private String metricsKey;
 
   public ADLSBatchSink(AzureBatchSinkConfig config) {
     super(config);
@@ -102,22 +114,55 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
 
     conf.set(FileOutputFormat.OUTDIR, config.path);
     job.setOutputValueClass(NullWritable.class);
+    String outputFormatClass;
     if (AVRO.equals(config.outputFormat)) {
       org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(config.getSchema().toString());
       AvroJob.setOutputKeySchema(job, avroSchema);
-      context.addOutput(Output.of(config.referenceName,
-                                  new SinkOutputFormatProvider(AvroKeyOutputFormat.class.getName(), conf)));
+      OutputCompression.configureAvro(conf, config.getCompressionCodec(), config.avroSyncInterval);
+      outputFormatClass = AvroKeyOutputFormat.class.getName();
     } else if (ORC.equals(config.outputFormat)) {
-      StringBuilder builder = new StringBuilder();
-      HiveSchemaConverter.appendType(builder, config.getSchema());
-      conf.set("orc.mapred.output.schema", builder.toString());
-      context.addOutput(Output.of(config.referenceName,
-                                  new SinkOutputFormatProvider(OrcOutputFormat.class.getName(), conf)));
+      conf.set("orc.mapred.output.schema", OrcSchemaConverter.toOrcSchema(config.getSchema()).toString());
+      OutputCompression.configureOrc(conf, config.getCompressionCodec(), config.orcStripeSize,
+                                     config.orcRowIndexStride);
+      if (config.isVectorizedOrc()) {
+        StructuredRecordOrcOutputFormat.configure(conf, config.getSchema());
+        outputFormatClass = StructuredRecordOrcOutputFormat.class.getName();
+      } else {
+        outputFormatClass = OrcOutputFormat.class.getName();
+      }
+    } else if (PARQUET.equals(config.outputFormat)) {
+      org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(config.getSchema().toString());
+      AvroParquetOutputFormat.setSchema(job, avroSchema);
+      if (config.parquetRowGroupSize != null) {
+        ParquetOutputFormat.setBlockSize(job, config.parquetRowGroupSize);
+      }
+      if (config.parquetPageSize != null) {
+        ParquetOutputFormat.setPageSize(job, config.parquetPageSize);
+      }
+      if (config.getCompressionCodec() != null) {
+        ParquetOutputFormat.setCompression(job, OutputCompression.getParquetCodec(config.getCompressionCodec()));
+      }
+      outputFormatClass = AvroParquetOutputFormat.class.getName();
     } else {
-      context.addOutput(Output.of(config.referenceName,
-                                  new SinkOutputFormatProvider(TextOutputFormat.class.getName(), conf)));
+      if (config.getCompressionCodec() != null) {
+        OutputCompression.configureText(conf, config.getCompressionCodec());
+      }
+      if (config.isQuoteFields() || config.lineTerminator != null) {
+        DelimitedTextOutputFormat.configure(conf, config.getLineTerminator());
+        outputFormatClass = DelimitedTextOutputFormat.class.getName();
+      } else {
+        outputFormatClass = TextOutputFormat.class.getName();
+      }
     }
 
+    if (config.isPartitioned() || config.hasTargetFileSize()) {
+      PartitionedFileOutputFormat.configure(conf, outputFormatClass, config.getMaxOpenPartitionWriters());
+      PartitionedFileOutputFormat.setTargetFileSize(conf, config.targetFileSize, config.targetFileRecords);
+      PartitionedFileOutputFormat.configureMetrics(conf, getMetricsKey(context));
+      outputFormatClass = PartitionedFileOutputFormat.class.getName();
+    }
+    context.addOutput(Output.of(config.referenceName, new SinkOutputFormatProvider(outputFormatClass, conf)));
+
     LineageRecorder lineageRecorder = new LineageRecorder(context, config.referenceName);
     Schema schema = context.getInputSchema();
     if (schema != null) {
@@ -133,26 +178,79 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
 
   @Override
   public void initialize(BatchRuntimeContext context) throws Exception {
-    if (AVRO.equals(config.outputFormat)) {
+    if (AVRO.equals(config.outputFormat) || PARQUET.equals(config.outputFormat)) {
       avroTransformer = new StructuredToAvroTransformer(config.getSchema());
     } else if (ORC.equals(config.outputFormat)) {
-      orcTransformer = new StructuredToOrcTransformer(config.getSchema());
+      if (!config.isVectorizedOrc()) {
+        orcTransformer = new StructuredToOrcTransformer(config.getSchema());
+      }
     } else {
-      textTransformer = new StructuredToTextTransformer(config.getFieldDelimiter(), config.getSchema());
+      // every record gets a Text of its own, since engines like Spark may buffer emitted values before writing them.
+      // Fields are still encoded into the reused buffer of the transformer, so a record only allocates its Text.
+      if (config.isQuoteFields()) {
+        textTransformer = new StructuredToDelimitedTextTransformer(config.getFieldDelimiter(), config.getSchema(),
+                                                                   false, config.getQuoteCharacter(),
+                                                                   config.getEscapeCharacter());
+      } else {
+        textTransformer = new StructuredToTextTransformer(config.getFieldDelimiter(), config.getSchema());
+      }
+    }
+    if (config.isPartitioned() || config.hasTargetFileSize()) {
+      // the files are written in the same JVM as the records are transformed, with MapReduce and Spark
+      metricsKey = getMetricsKey(context);
+      PartitionedFileOutputFormat.registerMetrics(metricsKey, context.getMetrics());
+    }
+    if (config.isPartitioned()) {
+      partitioner = new OutputPartitioner(config.getPartitionFields(), config.partitionTimeFormat,
+                                          config.partitionTimeField, context.getLogicalStartTime());
     }
     super.initialize(context);
   }
 
+  @Override
+  public void destroy() {
+    if (metricsKey != null) {
+      PartitionedFileOutputFormat.unregisterMetrics(metricsKey);
+      metricsKey = null;
+    }
+    super.destroy();
+  }
+
+  /**
+   * Returns the key of the metrics of the stage in the current run, which tells apart stages of the same name in other
+   * pipelines and in other runs, like a preview, that write in the same JVM. The logical start time is the same for all
+   * contexts of a run.
+   */
+  private static String getMetricsKey(StageContext context) {
+    return String.join(":", context.getNamespace(), context.getPipelineName(), context.getStageName(),
+                       Long.toString(context.getLogicalStartTime()));
+  }
+
   @Override
   public void transform(StructuredRecord input, Emitter<KeyValue<Object, Object>> emitter)
     throws Exception {
+    KeyValue<Object, Object> output = toKeyValue(input);
+    if (partitioner != null) {
+      emitter.emit(new KeyValue<>(partitioner.getPartition(input), output));
+    } else if (config.hasTargetFileSize()) {
+      // files are rolled over by the partitioned output format, with all records in the same partition
+      emitter.emit(new KeyValue<>("", output));
+    } else {
+      emitter.emit(output);
+    }
+  }
+
+  private KeyValue<Object, Object> toKeyValue(StructuredRecord input) throws IOException {
     if (AVRO.equals(config.outputFormat)) {
-      emitter.emit(new KeyValue<>((Object) new AvroKey<>(avroTransformer.transform(input)),
-                                  (Object) NullWritable.get()));
+      return new KeyValue<>(new AvroKey<>(avroTransformer.transform(input)), NullWritable.get());
+    } else if (PARQUET.equals(config.outputFormat)) {
+      return new KeyValue<>(null, avroTransformer.transform(input));
+    } else if (ORC.equals(config.outputFormat) && config.isVectorizedOrc()) {
+      return new KeyValue<>(NullWritable.get(), input);
     } else if (ORC.equals(config.outputFormat)) {
-      emitter.emit(new KeyValue<>((Object) NullWritable.get(), (Object) orcTransformer.transform(input)));
+      return new KeyValue<>(NullWritable.get(), orcTransformer.transform(input));
     } else {
-      emitter.emit(new KeyValue<>((Object) textTransformer.transform(input), (Object) NullWritable.get()));
+      return new KeyValue<>(textTransformer.transform(input), NullWritable.get());
     }
   }
 
@@ -162,6 +260,20 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
   public static class AzureBatchSinkConfig extends ReferencePluginConfig {
     private static final String PATH = "path";
     private static final String SCHEMA = "schema";
+    private static final String OUTPUT_FORMAT = "outputFormat";
+    private static final String COMPRESSION_CODEC = "compressionCodec";
+    private static final String FIELD_DELIMITER = "fieldDelimiter";
+    private static final String QUOTE_FIELDS = "quoteFields";
+    private static final String PARTITION_FIELDS = "partitionFields";
+    private static final String PARTITION_TIME_FORMAT = "partitionTimeFormat";
+    private static final String PARTITION_TIME_FIELD = "partitionTimeField";
+    private static final String MAX_OPEN_PARTITION_WRITERS = "maxOpenPartitionWriters";
+    private static final String TARGET_FILE_SIZE = "targetFileSize";
+    private static final String TARGET_FILE_RECORDS = "targetFileRecords";
+    private static final String QUOTE_CHARACTER = "quoteCharacter";
+    private static final String ESCAPE_CHARACTER = "escapeCharacter";
+    private static final String LINE_TERMINATOR = "lineTerminator";
+    private static final Map<String, String> LINE_TERMINATORS = ImmutableMap.of("LF", "\n", "CRLF", "\r\n", "CR", "\r");
 
     protected static final String FILESYSTEM_PROPERTIES_DESCRIPTION = "A JSON string representing a map of properties " +
       "needed for the distributed file system.";
@@ -205,6 +317,103 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
     @Description("Field delimiter for text format output files. Defaults to tab.")
     public String fieldDelimiter;
 
+    @Nullable
+    @Macro
+    @Description("Comma separated list of fields to partition the output by. Records are written to a " +
+      "'field=value' directory for every partition field, under the time partition if there is one.")
+    public String partitionFields;
+
+    @Nullable
+    @Macro
+    @Description("Pattern of the time partition directories, for example \"'dt='yyyy-MM-dd\". The time is formatted " +
+      "in UTC using the patterns of java.time.format.DateTimeFormatter.")
+    public String partitionTimeFormat;
+
+    @Nullable
+    @Macro
+    @Description("Timestamp field whose value is used for the time partition. If not specified, the logical start " +
+      "time of the pipeline run is used.")
+    public String partitionTimeField;
+
+    @Nullable
+    @Macro
+    @Description("Maximum number of partition files each task keeps open. When the limit is reached, the least " +
+      "recently used file is closed. Defaults to 16.")
+    public Integer maxOpenPartitionWriters;
+
+    @Nullable
+    @Macro
+    @Description("Target size of output files in bytes. When a file reaches this size, it is closed and writing " +
+      "continues in a new part file. Orc and parquet files may exceed the target by up to a stripe or row group.")
+    public Long targetFileSize;
+
+    @Nullable
+    @Macro
+    @Description("Target number of records in output files. When a file reaches this number of records, it is " +
+      "closed and writing continues in a new part file.")
+    public Long targetFileRecords;
+
+    @Nullable
+    @Macro
+    @Description("Whether to quote fields of text output files that contain the delimiter, the quote character or " +
+      "line breaks, as described in RFC 4180. Defaults to false.")
+    public Boolean quoteFields;
+
+    @Nullable
+    @Macro
+    @Description("Character used to quote fields when quoting is enabled. Defaults to '\"'.")
+    public String quoteCharacter;
+
+    @Nullable
+    @Macro
+    @Description("Character placed before quote characters inside quoted fields. Defaults to the quote character, " +
+      "which doubles quotes as described in RFC 4180.")
+    public String escapeCharacter;
+
+    @Nullable
+    @Macro
+    @Description("Line terminator of text output files. Must be 'LF', 'CRLF' or 'CR'. Defaults to 'LF'.")
+    public String lineTerminator;
+
+    @Nullable
+    @Description("Whether to write ORC files through a vectorized writer that buffers records directly into " +
+      "column batches. Only used by the orc output format. Defaults to false.")
+    public Boolean vectorizedOrc;
+
+    @Nullable
+    @Macro
+    @Description("Row group size in bytes for parquet output files. Defaults to 128MB.")
+    public Integer parquetRowGroupSize;
+
+    @Nullable
+    @Macro
+    @Description("Page size in bytes for parquet output files. Defaults to 1MB.")
+    public Integer parquetPageSize;
+
+    @Nullable
+    @Macro
+    @Description("Compression codec for output files. Must be one of 'none', 'gzip', 'snappy', 'deflate' or 'zstd'. " +
+      "Text files support all codecs, avro and orc files support 'snappy' and 'deflate' and parquet files support " +
+      "'snappy' and 'gzip'. Defaults to no compression for text and parquet and to the library default for avro " +
+      "and orc.")
+    public String compressionCodec;
+
+    @Nullable
+    @Macro
+    @Description("Approximate number of uncompressed bytes in each block of avro output files. Larger blocks " +
+      "compress better. Defaults to 64KB.")
+    public Integer avroSyncInterval;
+
+    @Nullable
+    @Macro
+    @Description("Stripe size in bytes for orc output files. Defaults to 64MB.")
+    public Long orcStripeSize;
+
+    @Nullable
+    @Macro
+    @Description("Number of rows between index entries in orc output files. Defaults to 10000.")
+    public Integer orcRowIndexStride;
+
     public AzureBatchSinkConfig(String referenceName) {
       super(referenceName);
     }
@@ -236,6 +445,45 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
           }
         }
       }
+      if (inputSchema != null && !containsMacro(PARTITION_FIELDS)) {
+        for (String field : getPartitionFields()) {
+          Schema.Field inputField = inputSchema.getField(field);
+          if (inputField == null) {
+            collector.addFailure(String.format("Input schema does not contain the partition field '%s'.", field),
+                                 null).withConfigProperty(PARTITION_FIELDS);
+            continue;
+          }
+          Schema fieldSchema = inputField.getSchema();
+          fieldSchema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+          switch (fieldSchema.getType()) {
+            case ARRAY:
+            case MAP:
+            case RECORD:
+            case UNION:
+            case BYTES:
+              collector.addFailure(String.format("Partition field '%s' is of unexpected type '%s'.", field,
+                                                 fieldSchema.getDisplayName()),
+                                   "Partition by fields of a simple type.")
+                .withConfigProperty(PARTITION_FIELDS).withInputSchemaField(field);
+          }
+        }
+      }
+      if (inputSchema != null && !containsMacro(PARTITION_TIME_FIELD) && partitionTimeField != null) {
+        Schema.Field inputField = inputSchema.getField(partitionTimeField);
+        Schema fieldSchema = inputField == null ? null : inputField.getSchema();
+        fieldSchema = fieldSchema != null && fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+        if (fieldSchema == null) {
+          collector.addFailure(String.format("Input schema does not contain the time partition field '%s'.",
+                                             partitionTimeField), null)
+            .withConfigProperty(PARTITION_TIME_FIELD);
+        } else if (fieldSchema.getType() != Schema.Type.LONG &&
+          fieldSchema.getLogicalType() != Schema.LogicalType.DATE) {
+          collector.addFailure(String.format("Time partition field '%s' is of unexpected type '%s'.",
+                                             partitionTimeField, fieldSchema.getDisplayName()),
+                               "Use a timestamp, date or long field holding milliseconds since the epoch.")
+            .withConfigProperty(PARTITION_TIME_FIELD).withInputSchemaField(partitionTimeField);
+        }
+      }
     }
 
     protected void validate(FailureCollector collector) {
@@ -243,9 +491,65 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
         collector.addFailure("Path must start with adl:// for ADLS input files.", null)
           .withConfigProperty(PATH);
       }
-      if ((AVRO.equals(outputFormat) || ORC.equals(outputFormat)) && !containsMacro("schema") && schema == null) {
-        collector.addFailure("Output schema must be specified for 'avro' or 'orc' format output files.", null)
-          .withConfigProperty(SCHEMA);
+      if ((AVRO.equals(outputFormat) || ORC.equals(outputFormat) || PARQUET.equals(outputFormat)) &&
+        !containsMacro("schema") && schema == null) {
+        collector.addFailure("Output schema must be specified for 'avro', 'orc' or 'parquet' format output files.",
+                             null).withConfigProperty(SCHEMA);
+      }
+      if (!containsMacro(PARTITION_TIME_FORMAT) && partitionTimeFormat != null) {
+        try {
+          DateTimeFormatter.ofPattern(partitionTimeFormat);
+        } catch (IllegalArgumentException e) {
+          collector.addFailure(String.format("Invalid time partition pattern '%s': %s", partitionTimeFormat,
+                                             e.getMessage()), null)
+            .withConfigProperty(PARTITION_TIME_FORMAT);
+        }
+      }
+      if (partitionTimeField != null && partitionTimeFormat == null && !containsMacro(PARTITION_TIME_FORMAT)) {
+        collector.addFailure("A time partition field is specified without a time partition pattern.",
+                             "Specify the time partition pattern.")
+          .withConfigProperty(PARTITION_TIME_FORMAT);
+      }
+      if (!containsMacro(MAX_OPEN_PARTITION_WRITERS) && maxOpenPartitionWriters != null &&
+        maxOpenPartitionWriters < 1) {
+        collector.addFailure("The maximum number of open partition writers must be at least 1.", null)
+          .withConfigProperty(MAX_OPEN_PARTITION_WRITERS);
+      }
+      if (!containsMacro(TARGET_FILE_SIZE) && targetFileSize != null && targetFileSize < 1) {
+        collector.addFailure("The target file size must be positive.", null).withConfigProperty(TARGET_FILE_SIZE);
+      }
+      if (!containsMacro(TARGET_FILE_RECORDS) && targetFileRecords != null && targetFileRecords < 1) {
+        collector.addFailure("The target number of records per file must be positive.", null)
+          .withConfigProperty(TARGET_FILE_RECORDS);
+      }
+      validateCharacter(QUOTE_CHARACTER, quoteCharacter, collector);
+      validateCharacter(ESCAPE_CHARACTER, escapeCharacter, collector);
+      if (!containsMacro(LINE_TERMINATOR) && lineTerminator != null &&
+        !LINE_TERMINATORS.containsKey(lineTerminator.toUpperCase())) {
+        collector.addFailure(String.format("Unsupported line terminator '%s'.", lineTerminator),
+                             "Use one of 'LF', 'CRLF' or 'CR'.")
+          .withConfigProperty(LINE_TERMINATOR);
+      }
+      if (!containsMacro(QUOTE_FIELDS) && isQuoteFields() && !containsMacro(FIELD_DELIMITER) &&
+        !containsMacro(QUOTE_CHARACTER) && getFieldDelimiter().indexOf(getQuoteCharacter()) >= 0) {
+        collector.addFailure("The quote character must not be part of the field delimiter.", null)
+          .withConfigProperty(QUOTE_CHARACTER);
+      }
+      if (!containsMacro(COMPRESSION_CODEC) && !containsMacro(OUTPUT_FORMAT) && compressionCodec != null) {
+        Set<String> supportedCodecs = OutputCompression.getSupportedCodecs(outputFormat);
+        if (!supportedCodecs.contains(getCompressionCodec())) {
+          collector.addFailure(String.format("Compression codec '%s' is not supported for '%s' format output files.",
+                                             compressionCodec, outputFormat),
+                               String.format("Use one of %s.", supportedCodecs))
+            .withConfigProperty(COMPRESSION_CODEC);
+        }
+      }
+    }
+
+    private void validateCharacter(String property, @Nullable String value, FailureCollector collector) {
+      if (!containsMacro(property) && value != null && value.length() != 1) {
+        collector.addFailure(String.format("'%s' must be a single character.", value), null)
+          .withConfigProperty(property);
       }
     }
 
@@ -277,6 +581,53 @@ public class ADLSBatchSink extends ReferenceBatchSink<StructuredRecord, Object,
       return fieldDelimiter == null ? "\t" : fieldDelimiter;
     }
 
+    public boolean isPartitioned() {
+      return !getPartitionFields().isEmpty() || partitionTimeFormat != null;
+    }
+
+    public List<String> getPartitionFields() {
+      if (partitionFields == null) {
+        return Collections.emptyList();
+      }
+      return Arrays.stream(partitionFields.split(","))
+        .map(String::trim)
+        .filter(field -> !field.isEmpty())
+        .collect(Collectors.toList());
+    }
+
+    public boolean hasTargetFileSize() {
+      return targetFileSize != null || targetFileRecords != null;
+    }
+
+    public int getMaxOpenPartitionWriters() {
+      return maxOpenPartitionWriters == null ? 16 : maxOpenPartitionWriters;
+    }
+
+    public boolean isQuoteFields() {
+      return quoteFields != null && quoteFields;
+    }
+
+    public char getQuoteCharacter() {
+      return quoteCharacter == null || quoteCharacter.isEmpty() ? '"' : quoteCharacter.charAt(0);
+    }
+
+    public char getEscapeCharacter() {
+      return escapeCharacter == null || escapeCharacter.isEmpty() ? getQuoteCharacter() : escapeCharacter.charAt(0);
+    }
+
+    public String getLineTerminator() {
+      return lineTerminator == null ? "\n" : LINE_TERMINATORS.get(lineTerminator.toUpperCase());
+    }
+
+    @Nullable
+    public String getCompressionCodec() {
+      return compressionCodec == null ? null : compressionCodec.toLowerCase();
+    }
+
+    public boolean isVectorizedOrc() {
+      return vectorizedOrc != null && vectorizedOrc;
+    }
+
     protected Map<String, String> getProps() {
       if (fileSystemProperties == null) {
         return new HashMap<>();
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A text output format that writes every key followed by a configurable line terminator. Unlike
+ * {@link org.apache.hadoop.mapreduce.lib.output.TextOutputFormat}, which always terminates lines with '\n', this
+ * allows writing files with CRLF line endings. Values are ignored.
+ */
+public class DelimitedTextOutputFormat extends FileOutputFormat<Text, NullWritable> {
+  private static final String LINE_TERMINATOR = "delimited.text.line.terminator";
+
+  /**
+   * Configure the output format to terminate every line with the given characters.
+   */
+  public static void configure(Configuration conf, String lineTerminator) {
+    conf.set(LINE_TERMINATOR, lineTerminator);
+  }
+
+  @Override
+  public RecordWriter<Text, NullWritable> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    byte[] lineTerminator = conf.get(LINE_TERMINATOR, "\n").getBytes(StandardCharsets.UTF_8);
+    CompressionCodec codec = null;
+    String extension = "";
+    if (getCompressOutput(context)) {
+      codec = ReflectionUtils.newInstance(getOutputCompressorClass(context, GzipCodec.class), conf);
+      extension = codec.getDefaultExtension();
+    }
+    Path file = getDefaultWorkFile(context, extension);
+    FileSystem fs = file.getFileSystem(conf);
+    DataOutputStream out = fs.create(file, false);
+    if (codec != null) {
+      out = new DataOutputStream(codec.createOutputStream(out));
+    }
+    DataOutputStream stream = out;
+
+    return new RecordWriter<Text, NullWritable>() {
+      @Override
+      public void write(Text key, NullWritable value) throws IOException {
+        stream.write(key.getBytes(), 0, key.getLength());
+        stream.write(lineTerminator);
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException {
+        stream.close();
+      }
+    };
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.orc.TypeDescription;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts CDAP schemas to ORC {@link TypeDescription TypeDescriptions}.
+ *
+ * Unlike {@link io.cdap.plugin.common.HiveSchemaConverter}, unions that are not simply nullable are supported and
+ * are written as ORC uniontypes whose children are the non-null branches of the union.
+ */
+public final class OrcSchemaConverter {
+
+  private OrcSchemaConverter() {
+  }
+
+  /**
+   * Returns the ORC type for the given schema. A nullable schema has the same ORC type as its non-nullable part.
+   */
+  public static TypeDescription toOrcSchema(Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return TypeDescription.createBoolean();
+      case INT:
+        return TypeDescription.createInt();
+      case LONG:
+        return TypeDescription.createLong();
+      case FLOAT:
+        return TypeDescription.createFloat();
+      case DOUBLE:
+        return TypeDescription.createDouble();
+      case BYTES:
+        return TypeDescription.createBinary();
+      case STRING:
+      case ENUM:
+        return TypeDescription.createString();
+      case ARRAY:
+        return TypeDescription.createList(toOrcSchema(schema.getComponentSchema()));
+      case MAP:
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        return TypeDescription.createMap(toOrcSchema(mapSchema.getKey()), toOrcSchema(mapSchema.getValue()));
+      case RECORD:
+        TypeDescription struct = TypeDescription.createStruct();
+        for (Schema.Field field : schema.getFields()) {
+          struct.addField(field.getName(), toOrcSchema(field.getSchema()));
+        }
+        return struct;
+      case UNION:
+        List<Schema> branches = getBranches(schema);
+        if (branches.isEmpty()) {
+          throw new IllegalArgumentException("Unions of only null are currently not supported in ORC");
+        }
+        if (branches.size() == 1) {
+          return toOrcSchema(branches.get(0));
+        }
+        TypeDescription union = TypeDescription.createUnion();
+        for (Schema branch : branches) {
+          union.addUnionChild(toOrcSchema(branch));
+        }
+        return union;
+      default:
+        throw new IllegalArgumentException(String.format("%s type is currently not supported in ORC",
+                                                         schema.getType().name()));
+    }
+  }
+
+  /**
+   * Returns the non-null branches of a union schema, in the order they appear in the ORC uniontype.
+   */
+  static List<Schema> getBranches(Schema unionSchema) {
+    List<Schema> branches = new ArrayList<>();
+    for (Schema branch : unionSchema.getUnionSchemas()) {
+      if (branch.getType() != Schema.Type.NULL) {
+        branches.add(branch);
+      }
+    }
+    return branches;
+  }
+
+  /**
+   * Returns whether values of the given schema can be null.
+   */
+  static boolean isNullable(Schema schema) {
+    return schema.getType() == Schema.Type.UNION && getBranches(schema).size() < schema.getUnionSchemas().size();
+  }
+
+  /**
+   * Returns whether the given schema is written as an ORC uniontype rather than as its non-null branch.
+   */
+  static boolean isOrcUnion(Schema schema) {
+    return schema.getType() == Schema.Type.UNION && getBranches(schema).size() > 1;
+  }
+
+  /**
+   * Returns the index of the first union branch that can hold the given non-null value.
+   *
+   * @throws IllegalArgumentException if no branch matches
+   */
+  static int getBranchIndex(List<Schema> branches, Object value) {
+    for (int i = 0; i < branches.size(); i++) {
+      if (matches(branches.get(i), value)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException(String.format("Value of class %s does not match any union branch.",
+                                                     value.getClass().getName()));
+  }
+
+  private static boolean matches(Schema schema, Object value) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case INT:
+        return value instanceof Integer;
+      case LONG:
+        return value instanceof Long;
+      case FLOAT:
+        return value instanceof Float;
+      case DOUBLE:
+        return value instanceof Double;
+      case BYTES:
+        return value instanceof byte[] || value instanceof ByteBuffer;
+      case STRING:
+        return value instanceof CharSequence;
+      case ENUM:
+        return schema.getEnumValues().contains(value.toString());
+      case ARRAY:
+        return value instanceof Collection || value.getClass().isArray();
+      case MAP:
+        return value instanceof Map;
+      case RECORD:
+        return value instanceof StructuredRecord &&
+          schema.getRecordName().equals(((StructuredRecord) value).getSchema().getRecordName());
+      case UNION:
+        for (Schema branch : getBranches(schema)) {
+          if (matches(branch, value)) {
+            return true;
+          }
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.avro.mapred.AvroJob;
+import org.apache.avro.mapred.AvroOutputFormat;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.orc.OrcConf;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Translates the compression settings of the sink to the properties understood by each output format.
+ *
+ * Codec names are 'none', 'gzip', 'snappy', 'deflate' and 'zstd', although not every format supports every codec.
+ * Snappy and zstd compression of text files rely on the Hadoop native libraries being available on the cluster.
+ */
+public final class OutputCompression {
+  public static final String NONE = "none";
+  public static final String GZIP = "gzip";
+  public static final String SNAPPY = "snappy";
+  public static final String DEFLATE = "deflate";
+  public static final String ZSTD = "zstd";
+
+  private static final Map<String, String> TEXT_CODECS = ImmutableMap.of(
+    GZIP, "org.apache.hadoop.io.compress.GzipCodec",
+    SNAPPY, "org.apache.hadoop.io.compress.SnappyCodec",
+    DEFLATE, "org.apache.hadoop.io.compress.DefaultCodec",
+    // referenced by name since the codec is only available starting from Hadoop 2.9
+    ZSTD, "org.apache.hadoop.io.compress.ZStandardCodec");
+
+  private static final Map<String, String> ORC_CODECS = ImmutableMap.of(
+    SNAPPY, "SNAPPY",
+    DEFLATE, "ZLIB");
+
+  private static final Map<String, CompressionCodecName> PARQUET_CODECS = ImmutableMap.of(
+    SNAPPY, CompressionCodecName.SNAPPY,
+    GZIP, CompressionCodecName.GZIP);
+
+  private static final Map<String, Set<String>> SUPPORTED_CODECS = ImmutableMap.of(
+    "text", codecs(TEXT_CODECS.keySet()),
+    "avro", ImmutableSet.of(NONE, SNAPPY, DEFLATE),
+    "orc", codecs(ORC_CODECS.keySet()),
+    "parquet", codecs(PARQUET_CODECS.keySet()));
+
+  private OutputCompression() {
+  }
+
+  /**
+   * Returns the codecs that can be used with the given output format.
+   */
+  public static Set<String> getSupportedCodecs(String format) {
+    Set<String> codecs = SUPPORTED_CODECS.get(format);
+    return codecs == null ? Collections.emptySet() : codecs;
+  }
+
+  /**
+   * Configures compression of files written by {@link FileOutputFormat FileOutputFormats} that support Hadoop
+   * compression codecs, such as the text output format.
+   */
+  public static void configureText(Configuration conf, String codec) {
+    if (NONE.equals(codec)) {
+      conf.setBoolean(FileOutputFormat.COMPRESS, false);
+      return;
+    }
+    conf.setBoolean(FileOutputFormat.COMPRESS, true);
+    conf.set(FileOutputFormat.COMPRESS_CODEC, getCodec(TEXT_CODECS, codec, "text"));
+  }
+
+  /**
+   * Configures the codec and sync interval of avro data files.
+   *
+   * @param syncInterval approximate number of uncompressed bytes in each avro block, or null to use the default
+   */
+  public static void configureAvro(Configuration conf, @Nullable String codec, @Nullable Integer syncInterval) {
+    if (codec != null) {
+      if (!getSupportedCodecs("avro").contains(codec)) {
+        throw new IllegalArgumentException(String.format("Unsupported avro compression codec '%s'.", codec));
+      }
+      // the avro output format only reads the codec if output compression is enabled
+      conf.setBoolean(FileOutputFormat.COMPRESS, !NONE.equals(codec));
+      conf.set(AvroJob.OUTPUT_CODEC, NONE.equals(codec) ? "null" : codec);
+    }
+    if (syncInterval != null) {
+      conf.setInt(AvroOutputFormat.SYNC_INTERVAL_KEY, syncInterval);
+    }
+  }
+
+  /**
+   * Configures the compression, stripe size and row index stride of ORC files.
+   */
+  public static void configureOrc(Configuration conf, @Nullable String codec, @Nullable Long stripeSize,
+                                  @Nullable Integer rowIndexStride) {
+    if (codec != null) {
+      OrcConf.COMPRESS.setString(conf, NONE.equals(codec) ? "NONE" : getCodec(ORC_CODECS, codec, "orc"));
+    }
+    if (stripeSize != null) {
+      OrcConf.STRIPE_SIZE.setLong(conf, stripeSize);
+    }
+    if (rowIndexStride != null) {
+      OrcConf.ROW_INDEX_STRIDE.setLong(conf, rowIndexStride);
+    }
+  }
+
+  /**
+   * Returns the parquet codec for the given codec name.
+   */
+  public static CompressionCodecName getParquetCodec(String codec) {
+    return NONE.equals(codec) ? CompressionCodecName.UNCOMPRESSED : getCodec(PARQUET_CODECS, codec, "parquet");
+  }
+
+  private static <T> T getCodec(Map<String, T> codecs, String codec, String format) {
+    T value = codecs.get(codec);
+    if (value == null) {
+      throw new IllegalArgumentException(String.format("Unsupported %s compression codec '%s'.", format, codec));
+    }
+    return value;
+  }
+
+  private static Set<String> codecs(Set<String> codecs) {
+    return ImmutableSet.<String>builder().add(NONE).addAll(codecs).build();
+  }
+}
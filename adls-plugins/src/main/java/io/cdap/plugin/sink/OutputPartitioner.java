@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Computes the relative directory a record is written to when the output is partitioned.
+ *
+ * The directory starts with the time partition, formatted with a {@link DateTimeFormatter} pattern in UTC, followed
+ * by one 'field=value' directory for every partition field, e.g. {@code dt=2020-01-31/region=emea}. The time is
+ * either read from a timestamp field of the record or is the logical start time of the pipeline run.
+ */
+public class OutputPartitioner {
+  static final String DEFAULT_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+
+  private final String[] fields;
+  private final DateTimeFormatter timeFormatter;
+  private final String timeField;
+  private final long logicalStartTime;
+  private final StringBuilder builder;
+  // consecutive records usually fall in the same time partition, so remember the last formatted time
+  private long lastTime;
+  private String lastTimePartition;
+
+  /**
+   * @param fields names of the fields to partition by
+   * @param timeFormat pattern of the time partition, or null if the output is not partitioned by time
+   * @param timeField name of the timestamp field to partition by, or null to use the logical start time
+   * @param logicalStartTime logical start time of the pipeline run in milliseconds
+   */
+  public OutputPartitioner(List<String> fields, @Nullable String timeFormat, @Nullable String timeField,
+                           long logicalStartTime) {
+    this.fields = fields.toArray(new String[0]);
+    this.timeFormatter = timeFormat == null ? null : DateTimeFormatter.ofPattern(timeFormat).withZone(ZoneOffset.UTC);
+    this.timeField = timeField;
+    this.logicalStartTime = logicalStartTime;
+    this.builder = new StringBuilder();
+  }
+
+  /**
+   * Returns the partition directory of the given record, relative to the output path.
+   */
+  public String getPartition(StructuredRecord record) {
+    builder.setLength(0);
+    if (timeFormatter != null) {
+      builder.append(getTimePartition(timeField == null ? logicalStartTime : getTime(record)));
+    }
+    for (String field : fields) {
+      if (builder.length() > 0) {
+        builder.append('/');
+      }
+      builder.append(field).append('=');
+      Object value = record.get(field);
+      String stringValue = value == null ? null : value.toString();
+      if (stringValue == null || stringValue.isEmpty()) {
+        builder.append(DEFAULT_PARTITION);
+      } else {
+        escape(stringValue, builder);
+      }
+    }
+    return builder.toString();
+  }
+
+  private String getTimePartition(long time) {
+    if (lastTimePartition == null || time != lastTime) {
+      lastTimePartition = timeFormatter.format(Instant.ofEpochMilli(time));
+      lastTime = time;
+    }
+    return lastTimePartition;
+  }
+
+  private long getTime(StructuredRecord record) {
+    Object value = record.get(timeField);
+    if (value == null) {
+      throw new IllegalArgumentException(String.format("Time partition field '%s' must not be null.", timeField));
+    }
+    Schema schema = record.getSchema().getField(timeField).getSchema();
+    schema = schema.isNullable() ? schema.getNonNullable() : schema;
+    long time = ((Number) value).longValue();
+    if (schema.getLogicalType() == Schema.LogicalType.TIMESTAMP_MICROS) {
+      return TimeUnit.MICROSECONDS.toMillis(time);
+    }
+    if (schema.getLogicalType() == Schema.LogicalType.DATE) {
+      return TimeUnit.DAYS.toMillis(time);
+    }
+    return time;
+  }
+
+  /**
+   * Escapes characters that are not allowed or have a special meaning in paths, the same way Hive escapes
+   * partition values.
+   */
+  private static void escape(String value, StringBuilder builder) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (needsEscape(c)) {
+        builder.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4 & 0xF, 16)))
+          .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+      } else {
+        builder.append(c);
+      }
+    }
+  }
+
+  private static boolean needsEscape(char c) {
+    if (c < 0x20 || c == 0x7F) {
+      return true;
+    }
+    switch (c) {
+      case '"':
+      case '#':
+      case '%':
+      case '\'':
+      case '*':
+      case '/':
+      case ':':
+      case '=':
+      case '?':
+      case '\\':
+      case '{':
+      case '[':
+      case ']':
+      case '^':
+        return true;
+      default:
+        return false;
+    }
+  }
+}
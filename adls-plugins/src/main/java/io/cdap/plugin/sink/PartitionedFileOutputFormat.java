@@ -0,0 +1,384 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.etl.api.StageMetrics;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link FileOutputFormat} that writes records into partition directories under the output path and rolls over
+ * to a new part file when a file reaches a target size.
+ *
+ * The key of every record is the partition directory relative to the output path, which is empty if the output is
+ * not partitioned, and the value is the key and value expected by the delegate {@link FileOutputFormat}, which
+ * writes the actual files. Files are created in the task work directory the same way Hadoop's MultipleOutputs does
+ * it, so the regular output committer moves them to the output path when the task commits.
+ *
+ * Every task keeps at most a configured number of writers open. When a record for another partition arrives, the
+ * least recently used writer is closed. If that partition receives records again, a new file is opened for it.
+ *
+ * The size of a file is the length the output file system reports for it. While a file is open, that length only
+ * includes the data the writer flushed to the store, so files can exceed the target size by the size of the write
+ * buffer of the file system, or by up to a stripe or row group for formats like orc and parquet. The length is checked
+ * about halfway to the target at the average record size so far, rather than after every record. The number of files,
+ * records and bytes written and a histogram of the file sizes are reported through the metrics of the stage that
+ * writes through the output format, which works the same with MapReduce and Spark, unlike task counters.
+ */
+public class PartitionedFileOutputFormat extends FileOutputFormat<String, KeyValue<Object, Object>> {
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedFileOutputFormat.class);
+  private static final String DELEGATE = "partitioned.output.format.delegate";
+  private static final String MAX_OPEN_WRITERS = "partitioned.output.format.max.open.writers";
+  private static final String TARGET_FILE_BYTES = "partitioned.output.format.target.file.bytes";
+  private static final String TARGET_FILE_RECORDS = "partitioned.output.format.target.file.records";
+  private static final int DEFAULT_MAX_OPEN_WRITERS = 16;
+  // the file name used by the avro output formats, which do not read the base output name
+  private static final String AVRO_NAMED_OUTPUT = "avro.mo.config.namedOutput";
+  private static final String METRICS_KEY = "partitioned.output.format.metrics.key";
+  private static final long[] FILE_SIZE_BUCKETS_MB = {1, 16, 64, 128, 256, 1024};
+  // the most records written before the length of a file that shows no data yet is checked again
+  private static final long MAX_SIZE_CHECK_INTERVAL = 1024;
+  // an output format cannot reach the context of the stage writing through it, so every stage registers its metrics
+  // in the JVMs its records are written in, under a key of the stage in the run
+  private static final Map<String, RegisteredMetrics> STAGE_METRICS = new HashMap<>();
+
+  /**
+   * Configure the output format to write files of every partition through the given delegate output format.
+   */
+  public static void configure(Configuration conf, String delegateClassName, int maxOpenWriters) {
+    conf.set(DELEGATE, delegateClassName);
+    conf.setInt(MAX_OPEN_WRITERS, maxOpenWriters);
+  }
+
+  /**
+   * Configure the output format to report the files written to the metrics registered under the given key with
+   * {@link #registerMetrics}.
+   */
+  public static void configureMetrics(Configuration conf, String metricsKey) {
+    conf.set(METRICS_KEY, metricsKey);
+  }
+
+  /**
+   * Registers the metrics of a stage under the given key, which must identify the stage in the run, so the files
+   * written for the stage in this JVM are reported to them. Every registration must be undone with
+   * {@link #unregisterMetrics} once the stage is destroyed.
+   */
+  public static void registerMetrics(String metricsKey, StageMetrics metrics) {
+    synchronized (STAGE_METRICS) {
+      STAGE_METRICS.computeIfAbsent(metricsKey, key -> new RegisteredMetrics(metrics)).references++;
+    }
+  }
+
+  /**
+   * Undoes a registration of metrics under the given key, removing them once all registrations are undone.
+   */
+  public static void unregisterMetrics(String metricsKey) {
+    synchronized (STAGE_METRICS) {
+      RegisteredMetrics registered = STAGE_METRICS.get(metricsKey);
+      if (registered != null && --registered.references == 0) {
+        STAGE_METRICS.remove(metricsKey);
+      }
+    }
+  }
+
+  @Nullable
+  private static StageMetrics getMetrics(String metricsKey) {
+    synchronized (STAGE_METRICS) {
+      RegisteredMetrics registered = STAGE_METRICS.get(metricsKey);
+      return registered == null ? null : registered.metrics;
+    }
+  }
+
+  /**
+   * Returns the number of keys metrics are registered under.
+   */
+  static int getRegisteredMetrics() {
+    synchronized (STAGE_METRICS) {
+      return STAGE_METRICS.size();
+    }
+  }
+
+  /**
+   * Configure the output format to close a file and continue in a new one once it reaches the given size.
+   *
+   * @param targetBytes target number of bytes of every file, or null for no size limit
+   * @param targetRecords target number of records of every file, or null for no record limit
+   */
+  public static void setTargetFileSize(Configuration conf, @Nullable Long targetBytes,
+                                       @Nullable Long targetRecords) {
+    if (targetBytes != null) {
+      conf.setLong(TARGET_FILE_BYTES, targetBytes);
+    }
+    if (targetRecords != null) {
+      conf.setLong(TARGET_FILE_RECORDS, targetRecords);
+    }
+  }
+
+  @Override
+  public RecordWriter<String, KeyValue<Object, Object>> getRecordWriter(TaskAttemptContext context)
+    throws IOException {
+    Configuration conf = context.getConfiguration();
+    @SuppressWarnings("unchecked")
+    Class<? extends FileOutputFormat<Object, Object>> delegateClass =
+      (Class<? extends FileOutputFormat<Object, Object>>) conf.getClass(DELEGATE, null, FileOutputFormat.class);
+    // the delegates create their files under the same work path, which is only missing without an output path
+    Path workPath = ((FileOutputCommitter) getOutputCommitter(context)).getWorkPath();
+    return new PartitionedRecordWriter(delegateClass, context, workPath);
+  }
+
+  /**
+   * Writes every record through the writer of its partition, keeping the most recently used writers open.
+   */
+  private static final class PartitionedRecordWriter extends RecordWriter<String, KeyValue<Object, Object>> {
+    private final Class<? extends FileOutputFormat<Object, Object>> delegateClass;
+    private final TaskAttemptContext context;
+    private final String baseName;
+    @Nullable
+    private final String metricsKey;
+    @Nullable
+    private final Path workPath;
+    private final int maxOpenWriters;
+    private final long targetBytes;
+    private final long targetRecords;
+    // access ordered, so the first entry is the least recently used writer
+    private final LinkedHashMap<String, FileWriter> writers;
+    private final Map<String, Integer> filesOpened;
+    private String lastPartition;
+    private FileWriter lastWriter;
+    // looked up once the first record arrives, since the stage is initialized after the writer may have been created,
+    // and kept, since the stage may be destroyed before the writer is closed
+    private StageMetrics metrics;
+    private boolean metricsLookedUp;
+
+    private PartitionedRecordWriter(Class<? extends FileOutputFormat<Object, Object>> delegateClass,
+                                    TaskAttemptContext context, @Nullable Path workPath) {
+      Configuration conf = context.getConfiguration();
+      this.delegateClass = delegateClass;
+      this.context = context;
+      this.baseName = getOutputName(context);
+      this.metricsKey = conf.get(METRICS_KEY);
+      this.workPath = workPath;
+      this.maxOpenWriters = Math.max(1, conf.getInt(MAX_OPEN_WRITERS, DEFAULT_MAX_OPEN_WRITERS));
+      this.targetBytes = conf.getLong(TARGET_FILE_BYTES, Long.MAX_VALUE);
+      this.targetRecords = conf.getLong(TARGET_FILE_RECORDS, Long.MAX_VALUE);
+      this.writers = new LinkedHashMap<>(16, 0.75f, true);
+      this.filesOpened = new HashMap<>();
+    }
+
+    @Override
+    public void write(String partition, KeyValue<Object, Object> record) throws IOException, InterruptedException {
+      // records of the same partition usually arrive together, so skip the map lookup for them
+      if (!partition.equals(lastPartition)) {
+        lastWriter = getWriter(partition);
+        lastPartition = partition;
+      }
+      FileWriter writer = lastWriter;
+      writer.writer.write(record.getKey(), record.getValue());
+      writer.records++;
+      if (targetBytes != Long.MAX_VALUE && writer.records >= writer.nextSizeCheck) {
+        checkSize(writer);
+      }
+      if (writer.bytes >= targetBytes || writer.records >= targetRecords) {
+        writers.remove(partition);
+        close(writer);
+        lastPartition = null;
+        lastWriter = null;
+      }
+    }
+
+    /**
+     * Updates the size of the file to the length the file system reports for it and determines when to check it again.
+     */
+    private void checkSize(FileWriter writer) throws IOException {
+      writer.bytes = getLength(writer);
+      long interval;
+      if (writer.bytes == 0) {
+        // nothing was flushed yet, so there is no record size to go by
+        interval = Math.min(writer.records, MAX_SIZE_CHECK_INTERVAL);
+      } else {
+        interval = (long) ((targetBytes - writer.bytes) / 2.0 * writer.records / writer.bytes);
+      }
+      writer.nextSizeCheck = writer.records + Math.max(1, interval);
+    }
+
+    /**
+     * Returns the length the file system reports for the file of the given writer, or 0 if it was not created yet.
+     */
+    private long getLength(FileWriter writer) throws IOException {
+      if (workPath == null) {
+        return 0;
+      }
+      FileSystem fs = workPath.getFileSystem(context.getConfiguration());
+      if (writer.path == null) {
+        // the delegates append an extension to the unique name of the file, which depends on the format
+        Path prefix = new Path(workPath, getUniqueFile(context, writer.name, ""));
+        String name = prefix.getName();
+        FileStatus[] statuses;
+        try {
+          statuses = fs.listStatus(prefix.getParent(), path -> path.getName().equals(name)
+            || path.getName().startsWith(name + "."));
+        } catch (FileNotFoundException e) {
+          return 0;
+        }
+        if (statuses.length == 0) {
+          return 0;
+        }
+        writer.path = statuses[0].getPath();
+        return statuses[0].getLen();
+      }
+      try {
+        return fs.getFileStatus(writer.path).getLen();
+      } catch (FileNotFoundException e) {
+        return 0;
+      }
+    }
+
+    private FileWriter getWriter(String partition) throws IOException, InterruptedException {
+      if (!metricsLookedUp) {
+        metrics = metricsKey == null ? null : getMetrics(metricsKey);
+        metricsLookedUp = true;
+      }
+      FileWriter writer = writers.get(partition);
+      if (writer != null) {
+        return writer;
+      }
+      if (writers.size() >= maxOpenWriters) {
+        Iterator<Map.Entry<String, FileWriter>> eldest = writers.entrySet().iterator();
+        Map.Entry<String, FileWriter> entry = eldest.next();
+        LOG.debug("Closing the writer of partition '{}' since {} writers are open.", entry.getKey(), maxOpenWriters);
+        eldest.remove();
+        close(entry.getValue());
+      }
+      // files of a partition that was evicted or rolled over need a new name
+      int fileIndex = filesOpened.merge(partition, 1, Integer::sum) - 1;
+      String name = fileIndex == 0 ? baseName : baseName + "-" + fileIndex;
+      name = partition.isEmpty() ? name : partition + "/" + name;
+      Configuration conf = new Configuration(context.getConfiguration());
+      conf.set(BASE_OUTPUT_NAME, name);
+      conf.set(AVRO_NAMED_OUTPUT, name);
+
+      // output formats like parquet keep the state of their writer, so every file needs its own instance
+      FileOutputFormat<Object, Object> delegate = ReflectionUtils.newInstance(delegateClass, conf);
+      writer = new FileWriter(name, delegate.getRecordWriter(new TaskAttemptContextImpl(conf,
+                                                                                       context.getTaskAttemptID())));
+      writers.put(partition, writer);
+      return writer;
+    }
+
+    private void close(FileWriter writer) throws IOException, InterruptedException {
+      writer.writer.close(context);
+      writer.bytes = getLength(writer);
+      LOG.debug("Wrote {} records and {} bytes to file '{}'.",
+                new Object[] {writer.records, writer.bytes, writer.name});
+      if (metrics != null) {
+        metrics.count("output.files", 1);
+        count(metrics, "output.records", writer.records);
+        count(metrics, "output.bytes", writer.bytes);
+        metrics.count("output.file.size." + getSizeBucket(writer.bytes), 1);
+      }
+    }
+
+    /**
+     * Counts the given amount, which can exceed the int range of a single count.
+     */
+    private void count(StageMetrics metrics, String name, long amount) {
+      while (amount > Integer.MAX_VALUE) {
+        metrics.count(name, Integer.MAX_VALUE);
+        amount -= Integer.MAX_VALUE;
+      }
+      metrics.count(name, (int) amount);
+    }
+
+    private String getSizeBucket(long bytes) {
+      for (long bucket : FILE_SIZE_BUCKETS_MB) {
+        if (bytes <= bucket * 1024 * 1024) {
+          return "le." + bucket + "MB";
+        }
+      }
+      return "gt." + FILE_SIZE_BUCKETS_MB[FILE_SIZE_BUCKETS_MB.length - 1] + "MB";
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+      IOException failure = null;
+      for (FileWriter writer : writers.values()) {
+        try {
+          close(writer);
+        } catch (IOException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+      writers.clear();
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  /**
+   * Metrics registered for a stage, with the number of registrations that were not undone yet.
+   */
+  private static final class RegisteredMetrics {
+    private final StageMetrics metrics;
+    private int references;
+
+    private RegisteredMetrics(StageMetrics metrics) {
+      this.metrics = metrics;
+    }
+  }
+
+  /**
+   * An open file with the number of records and bytes written to it.
+   */
+  private static final class FileWriter {
+    private final String name;
+    private final RecordWriter<Object, Object> writer;
+    // the file the delegate writes, once it was found in the work path
+    private Path path;
+    private long records;
+    private long bytes;
+    private long nextSizeCheck = 1;
+
+    private FileWriter(String name, RecordWriter<Object, Object> writer) {
+      this.name = name;
+      this.writer = writer;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.orc.OrcFile;
+import org.apache.orc.mapred.OrcOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * An ORC output format that takes StructuredRecords as values and writes them through a
+ * {@link StructuredRecordOrcWriter}. The ORC schema is read from the same 'orc.mapred.output.schema' property used
+ * by {@link org.apache.orc.mapreduce.OrcOutputFormat}.
+ */
+public class StructuredRecordOrcOutputFormat extends FileOutputFormat<NullWritable, StructuredRecord> {
+  private static final String SCHEMA = "structured.record.orc.schema";
+
+  /**
+   * Configure the output format to write records of the specified schema.
+   */
+  public static void configure(Configuration conf, Schema schema) {
+    conf.set(SCHEMA, schema.toString());
+  }
+
+  @Override
+  public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    Schema schema = Schema.parseJson(conf.get(SCHEMA));
+    StructuredRecordOrcWriter writer =
+      new StructuredRecordOrcWriter(OrcFile.createWriter(getDefaultWorkFile(context, ".orc"),
+                                                         OrcOutputFormat.buildOptions(conf)), schema);
+
+    return new RecordWriter<NullWritable, StructuredRecord>() {
+      @Override
+      public void write(NullWritable key, StructuredRecord value) throws IOException {
+        writer.write(value);
+      }
+
+      @Override
+      public void close(TaskAttemptContext context) throws IOException {
+        writer.close();
+      }
+    };
+  }
+}
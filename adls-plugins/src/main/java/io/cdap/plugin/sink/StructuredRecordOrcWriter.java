@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.MapColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.MultiValuedColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.UnionColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.Writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes StructuredRecords to an ORC {@link Writer} by buffering them directly into the column vectors of a
+ * {@link VectorizedRowBatch}. Full batches are handed to the writer, so no intermediate OrcStruct or Writable
+ * objects are created per record. A record that cannot be written is left out of the batch, so the records written
+ * before it are still written out.
+ */
+public class StructuredRecordOrcWriter implements Closeable {
+  private final Writer writer;
+  private final VectorizedRowBatch batch;
+  private final String[] fieldNames;
+  private final ColumnWriter[] columnWriters;
+  // the list and map columns of the batch, with their child counts before the current record, to undo a failed record
+  private final MultiValuedColumnVector[] multiValuedVectors;
+  private final int[] childCounts;
+
+  public StructuredRecordOrcWriter(Writer writer, Schema schema) {
+    this.writer = writer;
+    this.batch = writer.getSchema().createRowBatch();
+    List<Schema.Field> fields = schema.getFields();
+    this.fieldNames = new String[fields.size()];
+    this.columnWriters = new ColumnWriter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      fieldNames[i] = field.getName();
+      columnWriters[i] = createValueWriter(field.getName(), field.getSchema());
+    }
+    List<MultiValuedColumnVector> vectors = new ArrayList<>();
+    for (ColumnVector vector : batch.cols) {
+      addMultiValuedVectors(vector, vectors);
+    }
+    this.multiValuedVectors = vectors.toArray(new MultiValuedColumnVector[0]);
+    this.childCounts = new int[multiValuedVectors.length];
+  }
+
+  /**
+   * Adds a record to the current batch, writing the batch out once it is full.
+   */
+  public void write(StructuredRecord record) throws IOException {
+    int row = batch.size;
+    for (int i = 0; i < multiValuedVectors.length; i++) {
+      childCounts[i] = multiValuedVectors[i].childCount;
+    }
+    try {
+      for (int i = 0; i < fieldNames.length; i++) {
+        columnWriters[i].write(batch.cols[i], row, record.get(fieldNames[i]));
+      }
+    } catch (RuntimeException e) {
+      // the row is not added to the batch, so only the children it reserved need to be released
+      for (int i = 0; i < multiValuedVectors.length; i++) {
+        multiValuedVectors[i].childCount = childCounts[i];
+      }
+      throw e;
+    }
+    batch.size++;
+    if (batch.size == batch.getMaxSize()) {
+      flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    writer.close();
+  }
+
+  private void flush() throws IOException {
+    if (batch.size > 0) {
+      writer.addRowBatch(batch);
+      batch.reset();
+    }
+  }
+
+  /**
+   * Creates a writer for values of the given schema that can be null. A null is only written if the schema allows it,
+   * so a record that does not match its schema fails instead of producing a file that does not match it either.
+   */
+  private static ColumnWriter createValueWriter(String fieldName, Schema schema) {
+    ColumnWriter writer = createColumnWriter(fieldName, schema);
+    boolean nullable = OrcSchemaConverter.isNullable(schema);
+    return (vector, row, value) -> {
+      if (value != null) {
+        // the position may have been used by a record that failed to be written
+        vector.isNull[row] = false;
+        writer.write(vector, row, value);
+      } else if (nullable) {
+        vector.noNulls = false;
+        vector.isNull[row] = true;
+      } else {
+        throw new IllegalArgumentException(String.format("Field '%s' is not nullable, but has a null value.",
+                                                         fieldName));
+      }
+    };
+  }
+
+  private static void addMultiValuedVectors(ColumnVector vector, List<MultiValuedColumnVector> vectors) {
+    if (vector instanceof ListColumnVector) {
+      vectors.add((ListColumnVector) vector);
+      addMultiValuedVectors(((ListColumnVector) vector).child, vectors);
+    } else if (vector instanceof MapColumnVector) {
+      vectors.add((MapColumnVector) vector);
+      addMultiValuedVectors(((MapColumnVector) vector).keys, vectors);
+      addMultiValuedVectors(((MapColumnVector) vector).values, vectors);
+    } else if (vector instanceof StructColumnVector) {
+      for (ColumnVector field : ((StructColumnVector) vector).fields) {
+        addMultiValuedVectors(field, vectors);
+      }
+    } else if (vector instanceof UnionColumnVector) {
+      for (ColumnVector field : ((UnionColumnVector) vector).fields) {
+        addMultiValuedVectors(field, vectors);
+      }
+    }
+  }
+
+  private static ColumnWriter createColumnWriter(String fieldName, Schema fieldSchema) {
+    if (fieldSchema.getType() == Schema.Type.UNION && !OrcSchemaConverter.isOrcUnion(fieldSchema)) {
+      // a nullable type is written as its non-null branch
+      return createColumnWriter(fieldName, OrcSchemaConverter.getBranches(fieldSchema).get(0));
+    }
+    switch (fieldSchema.getType()) {
+      case BOOLEAN:
+        return (vector, row, value) -> ((LongColumnVector) vector).vector[row] = (Boolean) value ? 1L : 0L;
+      case INT:
+      case LONG:
+        return (vector, row, value) -> ((LongColumnVector) vector).vector[row] = ((Number) value).longValue();
+      case FLOAT:
+      case DOUBLE:
+        return (vector, row, value) -> ((DoubleColumnVector) vector).vector[row] = ((Number) value).doubleValue();
+      case STRING:
+      case ENUM:
+        return (vector, row, value) -> {
+          byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+          ((BytesColumnVector) vector).setRef(row, bytes, 0, bytes.length);
+        };
+      case BYTES:
+        return (vector, row, value) -> {
+          byte[] bytes = value instanceof ByteBuffer ? Bytes.getBytes((ByteBuffer) value) : (byte[]) value;
+          ((BytesColumnVector) vector).setRef(row, bytes, 0, bytes.length);
+        };
+      case RECORD:
+        return createStructWriter(fieldSchema);
+      case ARRAY:
+        return createListWriter(fieldName, fieldSchema);
+      case MAP:
+        return createMapWriter(fieldName, fieldSchema);
+      case UNION:
+        return createUnionWriter(fieldName, fieldSchema);
+      default:
+        throw new IllegalArgumentException(String.format("%s is not a supported type", fieldName));
+    }
+  }
+
+  private static ColumnWriter createStructWriter(Schema schema) {
+    List<Schema.Field> fields = schema.getFields();
+    String[] names = new String[fields.size()];
+    ColumnWriter[] writers = new ColumnWriter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      names[i] = fields.get(i).getName();
+      writers[i] = createValueWriter(names[i], fields.get(i).getSchema());
+    }
+    return (vector, row, value) -> {
+      StructColumnVector struct = (StructColumnVector) vector;
+      StructuredRecord record = (StructuredRecord) value;
+      for (int i = 0; i < names.length; i++) {
+        writers[i].write(struct.fields[i], row, record.get(names[i]));
+      }
+    };
+  }
+
+  private static ColumnWriter createListWriter(String fieldName, Schema schema) {
+    ColumnWriter elementWriter = createValueWriter(fieldName, schema.getComponentSchema());
+    return (vector, row, value) -> {
+      ListColumnVector list = (ListColumnVector) vector;
+      int offset = list.childCount;
+      if (value instanceof Collection) {
+        Collection<?> collection = (Collection<?>) value;
+        reserve(list, row, collection.size());
+        list.child.ensureSize(list.childCount, true);
+        int i = offset;
+        for (Object element : collection) {
+          elementWriter.write(list.child, i++, element);
+        }
+      } else {
+        int length = Array.getLength(value);
+        reserve(list, row, length);
+        list.child.ensureSize(list.childCount, true);
+        for (int i = 0; i < length; i++) {
+          elementWriter.write(list.child, offset + i, Array.get(value, i));
+        }
+      }
+    };
+  }
+
+  private static ColumnWriter createMapWriter(String fieldName, Schema schema) {
+    Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+    ColumnWriter keyWriter = createColumnWriter(fieldName, mapSchema.getKey());
+    ColumnWriter valueWriter = createValueWriter(fieldName, mapSchema.getValue());
+    return (vector, row, value) -> {
+      MapColumnVector map = (MapColumnVector) vector;
+      Map<?, ?> entries = (Map<?, ?>) value;
+      int i = map.childCount;
+      reserve(map, row, entries.size());
+      map.keys.ensureSize(map.childCount, true);
+      map.values.ensureSize(map.childCount, true);
+      for (Map.Entry<?, ?> entry : entries.entrySet()) {
+        if (entry.getKey() == null) {
+          throw new IllegalArgumentException(String.format("Map field '%s' has a null key, which orc files do not " +
+                                                             "support.", fieldName));
+        }
+        keyWriter.write(map.keys, i, entry.getKey());
+        valueWriter.write(map.values, i++, entry.getValue());
+      }
+    };
+  }
+
+  private static ColumnWriter createUnionWriter(String fieldName, Schema schema) {
+    List<Schema> branches = OrcSchemaConverter.getBranches(schema);
+    ColumnWriter[] writers = new ColumnWriter[branches.size()];
+    for (int i = 0; i < branches.size(); i++) {
+      writers[i] = createColumnWriter(fieldName, branches.get(i));
+    }
+    return (vector, row, value) -> {
+      UnionColumnVector union = (UnionColumnVector) vector;
+      int tag = OrcSchemaConverter.getBranchIndex(branches, value);
+      union.tags[row] = tag;
+      writers[tag].write(union.fields[tag], row, value);
+    };
+  }
+
+  /**
+   * Reserves the next {@code length} child positions of a list or map column for the given row.
+   */
+  private static void reserve(MultiValuedColumnVector vector, int row, int length) {
+    vector.offsets[row] = vector.childCount;
+    vector.lengths[row] = length;
+    vector.childCount += length;
+  }
+
+  /**
+   * Writes a field value into a row of a column vector. Writers of a single type only accept non-null values.
+   */
+  private interface ColumnWriter {
+    void write(ColumnVector vector, int row, Object value);
+  }
+}
@@ -17,54 +17,121 @@
 package io.cdap.plugin.sink;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import com.google.common.collect.Maps;
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.generic.GenericRecordBuilder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Structured Record to Avro converter
+ * Structured Record to Avro converter.
+ *
+ * For every (input schema, output schema) pair a {@link WritePlan} is compiled once. The plan holds the positional
+ * index of every output field and a converter chosen from the field type, so converting a record does not need to
+ * look up schema fields by name or rebuild the Avro schema.
  */
 public class StructuredToAvroTransformer extends AbstractStructuredRecordTransformer<GenericRecord> {
-  private final Map<Integer, Schema> schemaCache;
+  private final Map<io.cdap.cdap.api.data.schema.Schema, Schema> schemaCache;
+  private final Map<io.cdap.cdap.api.data.schema.Schema, Map<io.cdap.cdap.api.data.schema.Schema, WritePlan>> plans;
+  // records written by a sink almost always share the same schema instances, so remember the last plan used
+  private io.cdap.cdap.api.data.schema.Schema lastInputSchema;
+  private io.cdap.cdap.api.data.schema.Schema lastOutputSchema;
+  private WritePlan lastPlan;
 
   public StructuredToAvroTransformer(io.cdap.cdap.api.data.schema.Schema outputSchema) {
     super(outputSchema);
-    this.schemaCache = Maps.newHashMap();
+    this.schemaCache = new HashMap<>();
+    this.plans = new HashMap<>();
   }
 
   @Override
   public GenericRecord transform(StructuredRecord structuredRecord,
                                  io.cdap.cdap.api.data.schema.Schema schema) throws IOException {
-    io.cdap.cdap.api.data.schema.Schema structuredRecordSchema = structuredRecord.getSchema();
+    WritePlan plan = getWritePlan(structuredRecord.getSchema(), schema);
+    GenericData.Record record = new GenericData.Record(plan.avroSchema);
+    for (int i = 0; i < plan.fieldNames.length; i++) {
+      record.put(plan.positions[i], plan.converters[i].convert(structuredRecord.get(plan.fieldNames[i])));
+    }
+    return record;
+  }
 
-    Schema avroSchema = getAvroSchema(schema);
+  private WritePlan getWritePlan(io.cdap.cdap.api.data.schema.Schema inputSchema,
+                                 io.cdap.cdap.api.data.schema.Schema outputSchema) {
+    if (inputSchema == lastInputSchema && outputSchema == lastOutputSchema) {
+      return lastPlan;
+    }
+    Map<io.cdap.cdap.api.data.schema.Schema, WritePlan> outputPlans =
+      plans.computeIfAbsent(outputSchema, s -> new HashMap<>());
+    WritePlan plan = outputPlans.get(inputSchema);
+    if (plan == null) {
+      plan = compile(inputSchema, outputSchema);
+      outputPlans.put(inputSchema, plan);
+    }
+    lastInputSchema = inputSchema;
+    lastOutputSchema = outputSchema;
+    lastPlan = plan;
+    return plan;
+  }
 
-    GenericRecordBuilder recordBuilder = new GenericRecordBuilder(avroSchema);
-    for (Schema.Field field : avroSchema.getFields()) {
+  private WritePlan compile(io.cdap.cdap.api.data.schema.Schema inputSchema,
+                            io.cdap.cdap.api.data.schema.Schema outputSchema) {
+    Schema avroSchema = getAvroSchema(outputSchema);
+    List<Schema.Field> avroFields = avroSchema.getFields();
+    String[] fieldNames = new String[avroFields.size()];
+    int[] positions = new int[avroFields.size()];
+    FieldConverter[] converters = new FieldConverter[avroFields.size()];
+    for (int i = 0; i < avroFields.size(); i++) {
+      Schema.Field field = avroFields.get(i);
       String fieldName = field.name();
-      io.cdap.cdap.api.data.schema.Schema.Field schemaField = structuredRecordSchema.getField(fieldName);
+      io.cdap.cdap.api.data.schema.Schema.Field schemaField = inputSchema.getField(fieldName);
       if (schemaField == null) {
         throw new IllegalArgumentException("Input record does not contain the " + fieldName + " field.");
       }
-      recordBuilder.set(fieldName, convertField(structuredRecord.get(fieldName), schemaField.getSchema()));
+      fieldNames[i] = fieldName;
+      positions[i] = field.pos();
+      converters[i] = createConverter(schemaField.getSchema());
+    }
+    return new WritePlan(avroSchema, fieldNames, positions, converters);
+  }
+
+  private FieldConverter createConverter(io.cdap.cdap.api.data.schema.Schema fieldSchema) {
+    if (fieldSchema.isNullable()) {
+      io.cdap.cdap.api.data.schema.Schema nonNullable = fieldSchema.getNonNullable();
+      if (nonNullable.getType() != io.cdap.cdap.api.data.schema.Schema.Type.UNION) {
+        FieldConverter delegate = createConverter(nonNullable);
+        return value -> value == null ? null : delegate.convert(value);
+      }
+    }
+    switch (fieldSchema.getType()) {
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+        return value -> {
+          if (value == null) {
+            throw new NullPointerException("Found a null value for a non-nullable field.");
+          }
+          return value;
+        };
+      default:
+        // enums, bytes and complex types keep the generic conversion logic
+        return value -> convertField(value, fieldSchema);
     }
-    return recordBuilder.build();
   }
 
   private Schema getAvroSchema(io.cdap.cdap.api.data.schema.Schema cdapSchema) {
-    int hashCode = cdapSchema.hashCode();
-    if (schemaCache.containsKey(hashCode)) {
-      return schemaCache.get(hashCode);
-    } else {
-      Schema avroSchema = new Schema.Parser().parse(cdapSchema.toString());
-      schemaCache.put(hashCode, avroSchema);
-      return avroSchema;
+    Schema avroSchema = schemaCache.get(cdapSchema);
+    if (avroSchema == null) {
+      avroSchema = new Schema.Parser().parse(cdapSchema.toString());
+      schemaCache.put(cdapSchema, avroSchema);
     }
+    return avroSchema;
   }
 
   @Override
@@ -74,4 +141,28 @@ public class StructuredToAvroTransformer extends AbstractStructuredRecordTransfo
     }
     return ByteBuffer.wrap((byte[]) field);
   }
+
+  /**
+   * Converts a single field value of a {@link StructuredRecord} to its Avro representation.
+   */
+  private interface FieldConverter {
+    Object convert(Object value) throws IOException;
+  }
+
+  /**
+   * Precomputed mapping from the fields of an input schema to the fields of an Avro output schema.
+   */
+  private static final class WritePlan {
+    private final Schema avroSchema;
+    private final String[] fieldNames;
+    private final int[] positions;
+    private final FieldConverter[] converters;
+
+    private WritePlan(Schema avroSchema, String[] fieldNames, int[] positions, FieldConverter[] converters) {
+      this.avroSchema = avroSchema;
+      this.fieldNames = fieldNames;
+      this.positions = positions;
+      this.converters = converters;
+    }
+  }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * Structured Record to delimited text converter that quotes fields as described in RFC 4180.
+ *
+ * A field is only quoted if it contains the first character of the delimiter, the quote or escape character, or a line
+ * break. Checking for the first character rather than the whole delimiter also quotes fields that end with a part of
+ * a multi character delimiter, which would otherwise run into the delimiter that follows them. Inside a
+ * quoted field, quote and escape characters are preceded by the escape character. When the escape character is the
+ * same as the quote character, this doubles quotes the way RFC 4180 requires. Booleans and numbers are checked the
+ * same way as strings if one of these characters can appear in their text, like with a delimiter of '.' or '-'.
+ */
+public class StructuredToDelimitedTextTransformer extends StructuredToTextTransformer {
+  // the characters that can appear in the text of booleans and numbers, including NaN and Infinity
+  private static final String PLAIN_CHARACTERS = "0123456789-.EINaefilnrstuy";
+
+  private final char delimiterStart;
+  private final char quote;
+  private final char escape;
+  private final byte[] quoteBytes;
+  private final byte[] escapeBytes;
+
+  public StructuredToDelimitedTextTransformer(String delimiter, @Nullable Schema outputSchema, boolean reuseText,
+                                              char quote, char escape) {
+    super(delimiter, outputSchema, reuseText);
+    if (delimiter.isEmpty()) {
+      throw new IllegalArgumentException("The delimiter of quoted text must not be empty.");
+    }
+    this.delimiterStart = delimiter.charAt(0);
+    this.quote = quote;
+    this.escape = escape;
+    this.quoteBytes = String.valueOf(quote).getBytes(StandardCharsets.UTF_8);
+    this.escapeBytes = String.valueOf(escape).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  protected boolean rewritesPlainValues() {
+    return PLAIN_CHARACTERS.indexOf(delimiterStart) >= 0 || PLAIN_CHARACTERS.indexOf(quote) >= 0
+      || PLAIN_CHARACTERS.indexOf(escape) >= 0;
+  }
+
+  @Override
+  protected void writeString(CharSequence value, Utf8Buffer out) {
+    if (needsQuotes(value)) {
+      writeQuoted(value, out);
+    } else {
+      out.writeString(value);
+    }
+  }
+
+  private boolean needsQuotes(CharSequence value) {
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == quote || c == escape || c == '\n' || c == '\r' || c == delimiterStart) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void writeQuoted(CharSequence value, Utf8Buffer out) {
+    out.write(quoteBytes);
+    int start = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == quote || c == escape) {
+        out.writeString(value, start, i);
+        out.write(escapeBytes);
+        start = i;
+      }
+    }
+    out.writeString(value, start, length);
+    out.write(quoteBytes);
+  }
+}
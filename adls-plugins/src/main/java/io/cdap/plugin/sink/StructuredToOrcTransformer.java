@@ -19,9 +19,6 @@ package io.cdap.plugin.sink;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
-import io.cdap.cdap.api.data.schema.UnsupportedTypeException;
-import io.cdap.plugin.common.HiveSchemaConverter;
-import io.cdap.plugin.common.RecordConverter;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.DoubleWritable;
@@ -31,23 +28,29 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcList;
+import org.apache.orc.mapred.OrcMap;
 import org.apache.orc.mapred.OrcStruct;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.orc.mapred.OrcUnion;
 
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.annotation.Nullable;
 
 /**
- * Creates ORCStruct records from StructuredRecords
+ * Creates ORCStruct records from StructuredRecords.
+ *
+ * A converter is compiled once for every output schema. Nested records, arrays, maps and unions are written as
+ * {@link OrcStruct}, {@link OrcList}, {@link OrcMap} and {@link OrcUnion} values respectively.
  */
 public class StructuredToOrcTransformer extends AbstractStructuredRecordTransformer<OrcStruct> {
 
-  private static final Logger LOG = LoggerFactory.getLogger(StructuredToOrcTransformer.class);
-  private final Map<Schema, TypeDescription> schemaCache = new HashMap<>();
+  private final Map<Schema, StructConverter> converterCache = new HashMap<>();
+  private Schema lastSchema;
+  private StructConverter lastConverter;
 
   public StructuredToOrcTransformer(Schema outputSchema) {
     super(outputSchema);
@@ -55,79 +58,203 @@ public class StructuredToOrcTransformer extends AbstractStructuredRecordTransfor
 
   @Override
   public OrcStruct transform(StructuredRecord input, Schema schema) {
-    List<Schema.Field> fields = input.getSchema().getFields();
-    OrcStruct orcRecord = parseOrcSchema(input.getSchema());
-    // populate ORC struct orcRecord object
-    for (int i = 0; i < fields.size(); i++) {
-      Schema.Field field = fields.get(i);
-      try {
-        WritableComparable writable = convertToWritable(field, input);
-        orcRecord.setFieldValue(field.getName(), writable);
-      } catch (UnsupportedTypeException e) {
-        LOG.debug("{} is not a supported type", field.getName(), e);
-        throw new IllegalArgumentException(String.format("%s is not a supported type", field.getName()), e);
-      }
-    }
-    return orcRecord;
+    return getConverter(schema).convert(input);
   }
 
-  private OrcStruct parseOrcSchema(Schema inputSchema) {
-    OrcStruct orcRecord;
-    if (schemaCache.containsKey(inputSchema)) {
-      TypeDescription schema = schemaCache.get(inputSchema);
-      orcRecord = (OrcStruct) OrcStruct.createValue(schema);
-    } else {
-      StringBuilder builder = new StringBuilder();
-      try {
-        HiveSchemaConverter.appendType(builder, inputSchema);
-      } catch (UnsupportedTypeException e) {
-        throw new IllegalArgumentException(String.format("Not a valid Schema %s", inputSchema.toString()), e);
-      }
-      TypeDescription schema = TypeDescription.fromString(builder.toString());
-      orcRecord = (OrcStruct) OrcStruct.createValue(schema);
-      schemaCache.put(inputSchema, schema);
+  private StructConverter getConverter(Schema schema) {
+    if (schema == lastSchema) {
+      return lastConverter;
+    }
+    StructConverter converter = converterCache.get(schema);
+    if (converter == null) {
+      converter = new StructConverter(schema, OrcSchemaConverter.toOrcSchema(schema));
+      converterCache.put(schema, converter);
     }
-    return orcRecord;
+    lastSchema = schema;
+    lastConverter = converter;
+    return converter;
   }
 
-  private WritableComparable convertToWritable(Schema.Field field, StructuredRecord input)
-    throws UnsupportedTypeException {
-    Object fieldVal = input.get(field.getName());
-    Schema fieldSchema = field.getSchema();
-    Schema.Type fieldType = fieldSchema.getType();
-    if (fieldSchema.isNullable()) {
-      if (fieldVal == null) {
-        return null;
-      }
-      fieldType = fieldSchema.getNonNullable().getType();
+  private static WritableConverter createConverter(String fieldName, Schema fieldSchema, TypeDescription orcSchema) {
+    if (fieldSchema.getType() == Schema.Type.UNION && !OrcSchemaConverter.isOrcUnion(fieldSchema)) {
+      // a nullable type is written as its non-null branch
+      return createConverter(fieldName, OrcSchemaConverter.getBranches(fieldSchema).get(0), orcSchema);
     }
-    switch (fieldType) {
-      case NULL:
-        return null;
+    switch (fieldSchema.getType()) {
       case STRING:
-        return new Text((String) fieldVal);
       case ENUM:
-        return new Text(fieldVal.toString());
+        return value -> new Text(value.toString());
       case BOOLEAN:
-        return new BooleanWritable((Boolean) fieldVal);
+        return value -> new BooleanWritable((Boolean) value);
       case INT:
-        return new IntWritable((Integer) fieldVal);
+        return value -> new IntWritable((Integer) value);
       case LONG:
-        return new LongWritable((Long) fieldVal);
+        return value -> new LongWritable((Long) value);
       case FLOAT:
-        return new FloatWritable((Float) fieldVal);
+        return value -> new FloatWritable((Float) value);
       case DOUBLE:
-        return new DoubleWritable((Double) fieldVal);
+        return value -> new DoubleWritable((Double) value);
       case BYTES:
-        if (fieldVal instanceof byte[]) {
-          return new BytesWritable((byte[]) fieldVal);
-        } else {
-          return new BytesWritable(Bytes.getBytes((ByteBuffer) fieldVal));
-        }
+        return value -> value instanceof byte[] ?
+          new BytesWritable((byte[]) value) : new BytesWritable(Bytes.getBytes((ByteBuffer) value));
+      case RECORD:
+        StructConverter structConverter = new StructConverter(fieldSchema, orcSchema);
+        return value -> structConverter.convert((StructuredRecord) value);
+      case ARRAY:
+        return new ListConverter(fieldName, fieldSchema, orcSchema);
+      case MAP:
+        return new MapConverter(fieldName, fieldSchema, orcSchema);
+      case UNION:
+        return new UnionConverter(fieldName, fieldSchema, orcSchema);
       default:
-        throw new UnsupportedTypeException(String.format("%s type is currently not supported in ORC",
-                                                         field.getSchema().getType().name()));
+        throw new IllegalArgumentException(String.format("%s is not a supported type", fieldName));
+    }
+  }
+
+  /**
+   * Creates a converter for values of the given schema that can be null, which fails for nulls the schema does not
+   * allow.
+   */
+  private static WritableConverter createValueConverter(String fieldName, Schema fieldSchema,
+                                                        TypeDescription orcSchema) {
+    WritableConverter converter = createConverter(fieldName, fieldSchema, orcSchema);
+    boolean nullable = OrcSchemaConverter.isNullable(fieldSchema);
+    return value -> {
+      if (value != null) {
+        return converter.convert(value);
+      }
+      if (nullable) {
+        return null;
+      }
+      throw new IllegalArgumentException(String.format("Field '%s' is not nullable, but has a null value.", fieldName));
+    };
+  }
+
+  /**
+   * Converts a value to its ORC Writable representation. Converters of a single type only accept non-null values.
+   */
+  private interface WritableConverter {
+    WritableComparable convert(Object value);
+  }
+
+  /**
+   * Converts StructuredRecords of a given schema to {@link OrcStruct}.
+   */
+  private static final class StructConverter {
+    private final TypeDescription orcSchema;
+    private final String[] fieldNames;
+    private final WritableConverter[] converters;
+
+    private StructConverter(Schema schema, TypeDescription orcSchema) {
+      this.orcSchema = orcSchema;
+      List<Schema.Field> fields = schema.getFields();
+      List<TypeDescription> children = orcSchema.getChildren();
+      this.fieldNames = new String[fields.size()];
+      this.converters = new WritableConverter[fields.size()];
+      for (int i = 0; i < fields.size(); i++) {
+        Schema.Field field = fields.get(i);
+        fieldNames[i] = field.getName();
+        converters[i] = createValueConverter(field.getName(), field.getSchema(), children.get(i));
+      }
+    }
+
+    private OrcStruct convert(StructuredRecord record) {
+      OrcStruct struct = new OrcStruct(orcSchema);
+      for (int i = 0; i < fieldNames.length; i++) {
+        struct.setFieldValue(i, converters[i].convert(record.get(fieldNames[i])));
+      }
+      return struct;
     }
   }
 
+  /**
+   * Converts collections and arrays to {@link OrcList}.
+   */
+  private static final class ListConverter implements WritableConverter {
+    private final TypeDescription orcSchema;
+    private final WritableConverter elementConverter;
+
+    private ListConverter(String fieldName, Schema schema, TypeDescription orcSchema) {
+      this.orcSchema = orcSchema;
+      this.elementConverter = createValueConverter(fieldName, schema.getComponentSchema(),
+                                                   orcSchema.getChildren().get(0));
+    }
+
+    @Override
+    public WritableComparable convert(Object value) {
+      if (value instanceof Collection) {
+        Collection<?> collection = (Collection<?>) value;
+        OrcList<WritableComparable> list = new OrcList<>(orcSchema, collection.size());
+        for (Object element : collection) {
+          list.add(elementConverter.convert(element));
+        }
+        return list;
+      }
+      int length = Array.getLength(value);
+      OrcList<WritableComparable> list = new OrcList<>(orcSchema, length);
+      for (int i = 0; i < length; i++) {
+        list.add(elementConverter.convert(Array.get(value, i)));
+      }
+      return list;
+    }
+  }
+
+  /**
+   * Converts maps to {@link OrcMap}.
+   */
+  private static final class MapConverter implements WritableConverter {
+    private final String fieldName;
+    private final TypeDescription orcSchema;
+    private final WritableConverter keyConverter;
+    private final WritableConverter valueConverter;
+
+    private MapConverter(String fieldName, Schema schema, TypeDescription orcSchema) {
+      this.fieldName = fieldName;
+      this.orcSchema = orcSchema;
+      Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+      List<TypeDescription> children = orcSchema.getChildren();
+      this.keyConverter = createConverter(fieldName, mapSchema.getKey(), children.get(0));
+      this.valueConverter = createValueConverter(fieldName, mapSchema.getValue(), children.get(1));
+    }
+
+    @Override
+    public WritableComparable convert(Object value) {
+      OrcMap<WritableComparable, WritableComparable> map = new OrcMap<>(orcSchema);
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (entry.getKey() == null) {
+          throw new IllegalArgumentException(String.format("Map field '%s' has a null key, which orc files do not " +
+                                                             "support.", fieldName));
+        }
+        map.put(keyConverter.convert(entry.getKey()), valueConverter.convert(entry.getValue()));
+      }
+      return map;
+    }
+  }
+
+  /**
+   * Converts values of a union with more than one non-null branch to {@link OrcUnion}.
+   */
+  private static final class UnionConverter implements WritableConverter {
+    private final TypeDescription orcSchema;
+    private final List<Schema> branches;
+    private final WritableConverter[] branchConverters;
+
+    private UnionConverter(String fieldName, Schema schema, TypeDescription orcSchema) {
+      this.orcSchema = orcSchema;
+      this.branches = OrcSchemaConverter.getBranches(schema);
+      List<TypeDescription> children = orcSchema.getChildren();
+      this.branchConverters = new WritableConverter[branches.size()];
+      for (int i = 0; i < branches.size(); i++) {
+        branchConverters[i] = createConverter(fieldName, branches.get(i), children.get(i));
+      }
+    }
+
+    @Override
+    public WritableComparable convert(Object value) {
+      int tag = OrcSchemaConverter.getBranchIndex(branches, value);
+      OrcUnion union = new OrcUnion(orcSchema);
+      union.set(tag, branchConverters[tag].convert(value));
+      return union;
+    }
+  }
 }
@@ -20,38 +20,174 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.format.UnexpectedFormatException;
 import io.cdap.cdap.api.data.schema.Schema;
-import com.google.common.base.Joiner;
 import org.apache.hadoop.io.Text;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
- * Structured Record to Text converter
+ * Structured Record to Text converter.
+ *
+ * Fields are encoded straight into a reusable UTF-8 buffer. The writer used for every output field is chosen once
+ * per (input schema, output schema) pair, with fast paths for numbers and strings that avoid creating a String for
+ * every field value.
  */
 public class StructuredToTextTransformer extends AbstractStructuredRecordTransformer<Text> {
-  private final Joiner joiner;
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.UTF_8);
+  // types written straight into the output buffer, unless a subclass changes their text
+  private static final Set<Schema.Type> PLAIN_TYPES =
+    EnumSet.of(Schema.Type.BOOLEAN, Schema.Type.INT, Schema.Type.LONG, Schema.Type.FLOAT, Schema.Type.DOUBLE);
+
+  private final byte[] delimiter;
+  private final boolean reuseText;
+  private final Utf8Buffer buffer;
+  private final Text text;
+  private final Map<Schema, Map<Schema, WritePlan>> plans;
+  // records written by a sink almost always share the same schema instances, so remember the last plan used
+  private Schema lastInputSchema;
+  private Schema lastOutputSchema;
+  private WritePlan lastPlan;
 
   public StructuredToTextTransformer(String delimiter, @Nullable io.cdap.cdap.api.data.schema.Schema outputSchema) {
+    this(delimiter, outputSchema, false);
+  }
+
+  /**
+   * @param reuseText whether the same {@link Text} instance is returned by every call to transform. This must only
+   *                  be enabled if the returned value is consumed before the next record is transformed.
+   */
+  public StructuredToTextTransformer(String delimiter, @Nullable Schema outputSchema, boolean reuseText) {
     super(outputSchema);
-    this.joiner = Joiner.on(delimiter);
+    this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+    this.reuseText = reuseText;
+    this.buffer = new Utf8Buffer();
+    this.text = new Text();
+    this.plans = new HashMap<>();
   }
 
   @Override
   public Text transform(StructuredRecord structuredRecord, Schema schema) {
-    Schema structuredRecordSchema = structuredRecord.getSchema();
-    List<String> fields = new ArrayList<>();
-    for (Schema.Field field : schema.getFields()) {
-      String fieldName = field.getName();
-      Schema.Field schemaField = structuredRecordSchema.getField(fieldName);
+    WritePlan plan = getWritePlan(structuredRecord.getSchema(), schema);
+    buffer.reset();
+    for (int i = 0; i < plan.fieldNames.length; i++) {
+      if (i > 0) {
+        buffer.write(delimiter);
+      }
+      Object value = structuredRecord.get(plan.fieldNames[i]);
+      if (value != null) {
+        plan.writers[i].write(value, buffer);
+      }
+    }
+    Text result = reuseText ? text : new Text();
+    result.set(buffer.getBytes(), 0, buffer.getLength());
+    return result;
+  }
+
+  private WritePlan getWritePlan(Schema inputSchema, Schema outputSchema) {
+    if (inputSchema == lastInputSchema && outputSchema == lastOutputSchema) {
+      return lastPlan;
+    }
+    Map<Schema, WritePlan> outputPlans = plans.computeIfAbsent(outputSchema, s -> new HashMap<>());
+    WritePlan plan = outputPlans.get(inputSchema);
+    if (plan == null) {
+      plan = compile(inputSchema, outputSchema);
+      outputPlans.put(inputSchema, plan);
+    }
+    lastInputSchema = inputSchema;
+    lastOutputSchema = outputSchema;
+    lastPlan = plan;
+    return plan;
+  }
+
+  private WritePlan compile(Schema inputSchema, Schema outputSchema) {
+    List<Schema.Field> fields = outputSchema.getFields();
+    String[] fieldNames = new String[fields.size()];
+    FieldWriter[] writers = new FieldWriter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      String fieldName = fields.get(i).getName();
+      Schema.Field schemaField = inputSchema.getField(fieldName);
       if (schemaField == null) {
         throw new IllegalArgumentException("Input record does not contain the " + fieldName + " field.");
       }
-      fields.add(convertField(structuredRecord.get(fieldName), schemaField.getSchema()));
+      fieldNames[i] = fieldName;
+      writers[i] = createWriter(schemaField.getSchema());
+    }
+    return new WritePlan(fieldNames, writers);
+  }
+
+  private FieldWriter createWriter(Schema fieldSchema) {
+    Schema.Type fieldType = fieldSchema.isNullable() ? fieldSchema.getNonNullable().getType() : fieldSchema.getType();
+    if (PLAIN_TYPES.contains(fieldType) && rewritesPlainValues()) {
+      return (value, out) -> writeString(value.toString(), out);
+    }
+    switch (fieldType) {
+      case BOOLEAN:
+        return (value, out) -> {
+          if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+          } else {
+            writeString(value.toString(), out);
+          }
+        };
+      case INT:
+      case LONG:
+        return (value, out) -> {
+          if (value instanceof Integer || value instanceof Long) {
+            out.writeLong(((Number) value).longValue());
+          } else {
+            writeString(value.toString(), out);
+          }
+        };
+      case FLOAT:
+        return (value, out) -> {
+          if (value instanceof Float) {
+            out.writeFloat((Float) value);
+          } else {
+            writeString(value.toString(), out);
+          }
+        };
+      case DOUBLE:
+        return (value, out) -> {
+          if (value instanceof Double) {
+            out.writeDouble((Double) value);
+          } else {
+            writeString(value.toString(), out);
+          }
+        };
+      case STRING:
+        return (value, out) -> {
+          if (value instanceof CharSequence) {
+            writeString((CharSequence) value, out);
+          } else {
+            writeString(value.toString(), out);
+          }
+        };
+      default:
+        // enums, bytes and unsupported types keep the generic conversion logic
+        return (value, out) -> writeString(convertField(value, fieldSchema), out);
     }
-    return new Text(joiner.join(fields));
+  }
+
+  /**
+   * Writes the text of a string field to the output buffer.
+   */
+  protected void writeString(CharSequence value, Utf8Buffer out) {
+    out.writeString(value);
+  }
+
+  /**
+   * Returns whether {@link #writeString} may change the text of booleans and numbers, in which case they are written
+   * through it rather than straight into the output buffer.
+   */
+  protected boolean rewritesPlainValues() {
+    return false;
   }
 
   protected String convertField(Object field, Schema fieldSchema) {
@@ -80,4 +216,24 @@ public class StructuredToTextTransformer extends AbstractStructuredRecordTransfo
         throw new UnexpectedFormatException("Cannot convert fields of type " + fieldType + " to text");
     }
   }
+
+  /**
+   * Writes a single non-null field value of a {@link StructuredRecord} to the output buffer.
+   */
+  private interface FieldWriter {
+    void write(Object value, Utf8Buffer out);
+  }
+
+  /**
+   * Precomputed names and writers of the output fields for an input schema.
+   */
+  private static final class WritePlan {
+    private final String[] fieldNames;
+    private final FieldWriter[] writers;
+
+    private WritePlan(String[] fieldNames, FieldWriter[] writers) {
+      this.fieldNames = fieldNames;
+      this.writers = writers;
+    }
+  }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that encodes values as UTF-8 text without creating intermediate Strings.
+ *
+ * The buffer is meant to be reset and reused for every record. Numbers are written with the same formatting as
+ * their {@code toString()} representation.
+ */
+public final class Utf8Buffer {
+  private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+  // Double.toString uses plain decimal notation for magnitudes below this value
+  private static final double MAX_PLAIN_DECIMAL = 1.0E7;
+  private static final byte REPLACEMENT = '?';
+
+  private byte[] bytes;
+  private int length;
+
+  public Utf8Buffer() {
+    this(1024);
+  }
+
+  public Utf8Buffer(int initialCapacity) {
+    this.bytes = new byte[initialCapacity];
+  }
+
+  public void reset() {
+    length = 0;
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public void write(byte b) {
+    ensureCapacity(1);
+    bytes[length++] = b;
+  }
+
+  public void write(byte[] b) {
+    ensureCapacity(b.length);
+    System.arraycopy(b, 0, bytes, length, b.length);
+    length += b.length;
+  }
+
+  public void writeLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      write(MIN_LONG);
+      return;
+    }
+    ensureCapacity(20);
+    if (value < 0) {
+      bytes[length++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long v = value / 10; v > 0; v /= 10) {
+      digits++;
+    }
+    int pos = length + digits;
+    do {
+      bytes[--pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    length += digits;
+  }
+
+  public void writeDouble(double value) {
+    if (isIntegral(value, value == (long) value)) {
+      writeLong((long) value);
+      write((byte) '.');
+      write((byte) '0');
+      return;
+    }
+    writeAscii(Double.toString(value));
+  }
+
+  public void writeFloat(float value) {
+    if (isIntegral(value, value == (long) value)) {
+      writeLong((long) value);
+      write((byte) '.');
+      write((byte) '0');
+      return;
+    }
+    writeAscii(Float.toString(value));
+  }
+
+  /**
+   * Writes a String that is known to only contain ASCII characters, such as the representation of a number.
+   */
+  public void writeAscii(String value) {
+    int len = value.length();
+    ensureCapacity(len);
+    for (int i = 0; i < len; i++) {
+      bytes[length++] = (byte) value.charAt(i);
+    }
+  }
+
+  /**
+   * Writes the UTF-8 encoding of the given characters. Unpaired surrogates are replaced by '?', the same way
+   * {@link org.apache.hadoop.io.Text} encodes them.
+   */
+  public void writeString(CharSequence value) {
+    writeString(value, 0, value.length());
+  }
+
+  /**
+   * Writes the UTF-8 encoding of the characters of the given sequence between start (inclusive) and end (exclusive).
+   */
+  public void writeString(CharSequence value, int start, int end) {
+    // every char takes at most 3 bytes, a surrogate pair takes 4 bytes for 2 chars
+    ensureCapacity((end - start) * 3);
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        bytes[length++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[length++] = (byte) (0xC0 | (c >> 6));
+        bytes[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+          bytes[length++] = REPLACEMENT;
+        }
+      } else {
+        bytes[length++] = (byte) (0xE0 | (c >> 12));
+        bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[length++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private static boolean isIntegral(double value, boolean equalsLong) {
+    // negative zero is integral but is written as -0.0
+    return equalsLong && Math.abs(value) < MAX_PLAIN_DECIMAL &&
+      Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0d);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (length + extra > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.action;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for the listing and filtering of paths to delete in {@link ADLSDeleteAction}.
+ */
+public class ADLSDeleteActionTest {
+  private static final long NOW = System.currentTimeMillis();
+  private static final long OLD = NOW - TimeUnit.DAYS.toMillis(40);
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FileSystem fs;
+  private File root;
+
+  @Before
+  public void setUp() throws IOException {
+    fs = new RawLocalFileSystem();
+    fs.initialize(URI.create("file:///"), new Configuration());
+    root = temporaryFolder.newFolder("root");
+  }
+
+  @Test
+  public void testDeleteDirectory() throws Exception {
+    createFile("a/data.csv", 10, NOW);
+    Assert.assertEquals(0, delete(false, false, new FileStatusFilter(null, null, null, null)));
+    Assert.assertFalse(root.exists());
+  }
+
+  @Test
+  public void testDeleteChildrenMatchingRegex() throws Exception {
+    createFile("data.csv", 10, NOW);
+    createFile("data.txt", 10, NOW);
+    createFile("dir.csv/nested.txt", 10, NOW);
+
+    Assert.assertEquals(3, delete(false, true, new FileStatusFilter(".*\\.csv", null, null, null)));
+    Assert.assertFalse(new File(root, "data.csv").exists());
+    Assert.assertFalse(new File(root, "dir.csv").exists());
+    Assert.assertTrue(new File(root, "data.txt").exists());
+  }
+
+  @Test
+  public void testRecursiveAgeAndSize() throws Exception {
+    File oldSmall = createFile("2020/01/old-small.csv", 10, OLD);
+    File oldLarge = createFile("2020/01/old-large.csv", 1000, OLD);
+    File oldText = createFile("2020/02/old.txt", 10, OLD);
+    File recent = createFile("2020/02/recent.csv", 10, NOW);
+
+    long modifiedBefore = NOW - TimeUnit.DAYS.toMillis(30);
+    Assert.assertEquals(4, delete(true, true, new FileStatusFilter(".*\\.csv", modifiedBefore, null, 100L)));
+    Assert.assertFalse(oldSmall.exists());
+    Assert.assertTrue(oldLarge.exists());
+    Assert.assertTrue(oldText.exists());
+    Assert.assertTrue(recent.exists());
+    // directories are kept in recursive mode
+    Assert.assertTrue(new File(root, "2020/01").isDirectory());
+  }
+
+  @Test
+  public void testDirectoriesIgnoreAgeAndSize() throws Exception {
+    File newFile = createFile("old/new.csv", 10, NOW);
+    File oldFile = createFile("old.csv", 10, OLD);
+    // the directory looks old, but holds a file that was modified after it
+    setLastModified(new File(root, "old"), OLD);
+
+    Assert.assertEquals(2, delete(false, true, new FileStatusFilter(null, NOW - 1000, null, null)));
+    Assert.assertTrue(newFile.exists());
+    Assert.assertFalse(oldFile.exists());
+    Assert.assertEquals(1, delete(false, true, new FileStatusFilter("old", null, null, 100L)));
+    Assert.assertTrue(newFile.exists());
+    // without age or size limits, the directory matches by its name
+    Assert.assertEquals(1, delete(false, true, new FileStatusFilter("old", null, null, null)));
+    Assert.assertFalse(newFile.exists());
+  }
+
+  @Test
+  public void testFileIgnoresRegex() throws Exception {
+    File file = createFile("data.txt", 10, OLD);
+    Assert.assertEquals(0, delete(new Path(file.toURI()), false, true,
+                                  new FileStatusFilter(".*\\.csv", NOW, null, null)));
+    Assert.assertFalse(file.exists());
+
+    file = createFile("recent.txt", 10, NOW);
+    delete(new Path(file.toURI()), false, true, new FileStatusFilter(null, OLD, null, null));
+    Assert.assertTrue(file.exists());
+  }
+
+  @Test
+  public void testMissingPath() throws Exception {
+    Path missing = new Path(new File(root, "missing").toURI());
+    Assert.assertEquals(0, delete(missing, false, false, new FileStatusFilter(null, null, null, null)));
+    try {
+      delete(missing, true, true, new FileStatusFilter(".*", null, null, null));
+      Assert.fail("Expected listing a missing path to fail");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testDryRunAndReplay() throws Exception {
+    File oldFile = createFile("2020/01/old.csv", 10, OLD);
+    File oldDir = createFile("2020/02/old/data.csv", 10, OLD);
+    File recent = createFile("2020/02/recent.csv", 10, NOW);
+    setLastModified(new File(root, "2020/02/old"), OLD);
+    Path manifest = new Path(new File(temporaryFolder.getRoot(), "manifest.tsv").toURI());
+
+    DeleteManifest.Writer writer = DeleteManifest.create(fs, manifest);
+    try {
+      ADLSDeleteAction.listMatching(fs, new Path(new File(root, "2020/01").toURI()), true, true,
+                                    new FileStatusFilter(null, NOW - 1000, null, null), writer);
+      ADLSDeleteAction.listMatching(fs, new Path(new File(root, "2020/02").toURI()), false, true,
+                                    new FileStatusFilter("old", null, null, null), writer);
+    } finally {
+      writer.close();
+    }
+    Assert.assertEquals(2, writer.getPaths());
+    Assert.assertEquals(10, writer.getBytes());
+    // nothing is deleted by the dry run
+    Assert.assertTrue(oldFile.exists());
+    Assert.assertTrue(oldDir.exists());
+
+    PathDeleter deleter = new PathDeleter(fs, 2, 0, 0, false);
+    try {
+      Assert.assertEquals(2, DeleteManifest.replay(fs, manifest, new Path(root.toURI()), deleter));
+    } finally {
+      deleter.close();
+    }
+    Assert.assertFalse(oldFile.exists());
+    Assert.assertFalse(oldDir.exists());
+    Assert.assertTrue(recent.exists());
+  }
+
+  @Test
+  public void testReplayOutsideOfPath() throws Exception {
+    File file = createFile("a/data.csv", 10, OLD);
+    Path manifest = new Path(new File(temporaryFolder.getRoot(), "manifest.tsv").toURI());
+    DeleteManifest.Writer writer = DeleteManifest.create(fs, manifest);
+    try {
+      ADLSDeleteAction.listMatching(fs, new Path(root.toURI()), true, true,
+                                    new FileStatusFilter(null, null, null, null), writer);
+    } finally {
+      writer.close();
+    }
+
+    PathDeleter deleter = new PathDeleter(fs, 2, 0, 0, false);
+    try {
+      // a sibling directory with the same prefix is not under the path either
+      DeleteManifest.replay(fs, manifest, new Path(new File(root, "a").toURI() + "-other"), deleter);
+      Assert.fail("Expected replaying paths outside of the path to fail");
+    } catch (IOException e) {
+      // expected
+    } finally {
+      deleter.close();
+    }
+    Assert.assertTrue(file.exists());
+  }
+
+  @Test
+  public void testReplayOtherAuthority() throws Exception {
+    File file = createFile("a/data.csv", 10, OLD);
+    // the same path as a file under the root, but on another host
+    URI uri = file.toURI();
+    URI other = new URI(uri.getScheme(), "otherhost", uri.getPath(), null);
+    File manifestFile = new File(temporaryFolder.getRoot(), "manifest.tsv");
+    Files.write(manifestFile.toPath(), ("10\t" + other + "\n").getBytes(StandardCharsets.UTF_8));
+
+    PathDeleter deleter = new PathDeleter(fs, 2, 0, 0, false);
+    try {
+      DeleteManifest.replay(fs, new Path(manifestFile.toURI()), new Path(root.toURI()), deleter);
+      Assert.fail("Expected replaying paths of another authority to fail");
+    } catch (IOException e) {
+      // expected
+    } finally {
+      deleter.close();
+    }
+    Assert.assertTrue(file.exists());
+  }
+
+  private long delete(boolean recursive, boolean filtered, FileStatusFilter filter) throws Exception {
+    return delete(new Path(root.toURI()), recursive, filtered, filter);
+  }
+
+  private long delete(Path path, boolean recursive, boolean filtered, FileStatusFilter filter) throws Exception {
+    PathDeleter deleter = new PathDeleter(fs, 2, 0, 0, false);
+    try {
+      return ADLSDeleteAction.listMatching(fs, path, recursive, filtered, filter, deleter);
+    } finally {
+      deleter.close();
+    }
+  }
+
+  private File createFile(String name, int size, long modificationTime) throws IOException {
+    File file = new File(root, name);
+    file.getParentFile().mkdirs();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      content.append('x');
+    }
+    Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    setLastModified(file, modificationTime);
+    return file;
+  }
+
+  private static void setLastModified(File file, long modificationTime) {
+    Assert.assertTrue(file.setLastModified(modificationTime));
+  }
+}
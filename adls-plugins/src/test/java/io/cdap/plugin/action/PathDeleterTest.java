@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.action;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Test for {@link PathDeleter}.
+ */
+public class PathDeleterTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testDelete() throws Exception {
+    List<File> files = createFiles(100);
+    PathDeleter deleter = new PathDeleter(createFileSystem(new RawLocalFileSystem()), 8, 0, 0, false);
+    for (File file : files) {
+      Assert.assertTrue(deleter.delete(new Path(file.toURI())));
+    }
+    deleter.close();
+
+    Assert.assertEquals(100, deleter.getDeleted());
+    Assert.assertEquals(0, deleter.getFailed());
+    for (File file : files) {
+      Assert.assertFalse(file.exists());
+    }
+  }
+
+  @Test
+  public void testRetry() throws Exception {
+    List<File> files = createFiles(10);
+    PathDeleter deleter = new PathDeleter(createFileSystem(new FlakyFileSystem(2)), 4, 2, 1, false);
+    for (File file : files) {
+      deleter.delete(new Path(file.toURI()));
+    }
+    deleter.close();
+
+    Assert.assertEquals(10, deleter.getDeleted());
+    Assert.assertEquals(20, deleter.getRetries());
+    for (File file : files) {
+      Assert.assertFalse(file.exists());
+    }
+  }
+
+  @Test
+  public void testContinueOnError() throws Exception {
+    List<File> files = createFiles(10);
+    PathDeleter deleter = new PathDeleter(createFileSystem(new FlakyFileSystem(2)), 4, 1, 1, true);
+    for (File file : files) {
+      Assert.assertTrue(deleter.delete(new Path(file.toURI())));
+    }
+    deleter.close();
+
+    Assert.assertEquals(0, deleter.getDeleted());
+    Assert.assertEquals(10, deleter.getFailed());
+    Assert.assertEquals(10, deleter.getRetries());
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    List<File> files = createFiles(10);
+    PathDeleter deleter = new PathDeleter(createFileSystem(new FlakyFileSystem(1)), 1, 0, 0, false);
+    for (File file : files) {
+      deleter.delete(new Path(file.toURI()));
+    }
+    try {
+      deleter.close();
+      Assert.fail("Expected the delete to fail");
+    } catch (IOException e) {
+      // expected
+    }
+    Assert.assertEquals(0, deleter.getDeleted());
+    Assert.assertTrue(deleter.getFailed() > 0);
+    // deletes after the first failure are not attempted
+    Assert.assertFalse(deleter.delete(new Path(files.get(0).toURI())));
+  }
+
+  @Test
+  public void testUncheckedFailure() throws Exception {
+    List<File> files = createFiles(3);
+    PathDeleter deleter = new PathDeleter(createFileSystem(new BrokenFileSystem()), 2, 2, 1, true);
+    for (File file : files) {
+      Assert.assertTrue(deleter.delete(new Path(file.toURI())));
+    }
+    deleter.close();
+    // unchecked failures are counted as failed and not retried
+    Assert.assertEquals(0, deleter.getDeleted());
+    Assert.assertEquals(3, deleter.getFailed());
+    Assert.assertEquals(0, deleter.getRetries());
+
+    deleter = new PathDeleter(createFileSystem(new BrokenFileSystem()), 2, 2, 1, false);
+    for (File file : files) {
+      deleter.delete(new Path(file.toURI()));
+    }
+    try {
+      deleter.close();
+      Assert.fail("Expected the delete to fail");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause().getCause() instanceof IllegalArgumentException);
+    }
+    for (File file : files) {
+      Assert.assertTrue(file.exists());
+    }
+  }
+
+  private List<File> createFiles(int count) throws IOException {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      files.add(temporaryFolder.newFile("file-" + i));
+    }
+    return files;
+  }
+
+  private static FileSystem createFileSystem(FileSystem fs) throws IOException {
+    fs.initialize(URI.create("file:///"), new Configuration());
+    return fs;
+  }
+
+  /**
+   * A local file system whose deletes fail with an unchecked exception, like some store clients do.
+   */
+  private static final class BrokenFileSystem extends RawLocalFileSystem {
+    @Override
+    public boolean delete(Path path, boolean recursive) {
+      throw new IllegalArgumentException("Simulated unchecked failure deleting " + path);
+    }
+  }
+
+  /**
+   * A local file system that fails the first deletes of every path.
+   */
+  private static final class FlakyFileSystem extends RawLocalFileSystem {
+    private final int failures;
+    private final ConcurrentMap<Path, Integer> attempts = new ConcurrentHashMap<>();
+
+    private FlakyFileSystem(int failures) {
+      this.failures = failures;
+    }
+
+    @Override
+    public boolean delete(Path path, boolean recursive) throws IOException {
+      if (attempts.merge(path, 1, Integer::sum) <= failures) {
+        throw new IOException("Simulated failure deleting " + path);
+      }
+      return super.delete(path, recursive);
+    }
+  }
+}
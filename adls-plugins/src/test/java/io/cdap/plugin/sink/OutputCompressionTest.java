@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.mapred.AvroJob;
+import org.apache.avro.mapred.AvroOutputFormat;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.NativeCodeLoader;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.orc.CompressionKind;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.parquet.avro.AvroParquetOutputFormat;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.hadoop.ParquetOutputFormat;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test for {@link OutputCompression}. Writes a fixed dataset with every supported codec of the text, avro, orc and
+ * parquet formats and records the number of bytes written and the CPU time spent for each of them.
+ */
+public class OutputCompressionTest {
+  private static final Logger LOG = LoggerFactory.getLogger(OutputCompressionTest.class);
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final Schema SCHEMA =
+    Schema.recordOf("record",
+                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("amount", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+
+  private static final List<StructuredRecord> RECORDS = new ArrayList<>();
+
+  @BeforeClass
+  public static void setupClass() {
+    for (int i = 0; i < 20000; i++) {
+      RECORDS.add(StructuredRecord.builder(SCHEMA)
+                    .set("id", (long) i)
+                    .set("name", "customer-" + (i % 100))
+                    .set("amount", i % 7 == 0 ? null : (i % 1000) / 4.0d)
+                    .build());
+    }
+  }
+
+  @Test
+  public void testTextCodecs() throws Exception {
+    long uncompressed = -1;
+    for (String codec : OutputCompression.getSupportedCodecs("text")) {
+      Configuration conf = new Configuration();
+      OutputCompression.configureText(conf, codec);
+      if (!conf.getBoolean(FileOutputFormat.COMPRESS, false)) {
+        uncompressed = writeText(null, codec);
+        continue;
+      }
+      if ((OutputCompression.SNAPPY.equals(codec) || OutputCompression.ZSTD.equals(codec)) &&
+        !NativeCodeLoader.isNativeCodeLoaded()) {
+        LOG.info("Skipping text codec '{}' since the Hadoop native libraries are not available.", codec);
+        continue;
+      }
+      Class<?> codecClass = conf.getClassByName(conf.get(FileOutputFormat.COMPRESS_CODEC));
+      CompressionCodec compressionCodec = (CompressionCodec) ReflectionUtils.newInstance(codecClass, conf);
+      long compressed = writeText(compressionCodec, codec);
+      Assert.assertTrue(compressed < uncompressed);
+    }
+  }
+
+  @Test
+  public void testAvroCodecs() throws Exception {
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(SCHEMA.toString());
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(SCHEMA);
+    long uncompressed = -1;
+    for (String codec : OutputCompression.getSupportedCodecs("avro")) {
+      Configuration conf = new Configuration();
+      OutputCompression.configureAvro(conf, codec, 256 * 1024);
+      Assert.assertEquals(!OutputCompression.NONE.equals(codec), conf.getBoolean(FileOutputFormat.COMPRESS, false));
+      Assert.assertEquals(256 * 1024, conf.getInt(AvroOutputFormat.SYNC_INTERVAL_KEY, -1));
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      long cpuTime = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+      try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>(avroSchema))) {
+        writer.setCodec(CodecFactory.fromString(conf.get(AvroJob.OUTPUT_CODEC)));
+        writer.setSyncInterval(conf.getInt(AvroOutputFormat.SYNC_INTERVAL_KEY, -1));
+        writer.create(avroSchema, out);
+        for (StructuredRecord record : RECORDS) {
+          writer.append(transformer.transform(record));
+        }
+      }
+      report("avro", codec, out.size(), cpuTime);
+      if (OutputCompression.NONE.equals(codec)) {
+        uncompressed = out.size();
+      } else {
+        Assert.assertTrue(out.size() < uncompressed);
+      }
+    }
+  }
+
+  @Test
+  public void testOrcCodecs() throws Exception {
+    FileSystem fs = new RawLocalFileSystem();
+    fs.initialize(URI.create("file:///"), new Configuration());
+    long uncompressed = -1;
+    for (String codec : OutputCompression.getSupportedCodecs("orc")) {
+      Configuration conf = new Configuration();
+      OutputCompression.configureOrc(conf, codec, 8L * 1024 * 1024, 5000);
+      Path path = new Path(new File(TEMP_FOLDER.newFolder(), "data.orc").toURI());
+
+      long cpuTime = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+      OrcFile.WriterOptions options = OrcFile.writerOptions(conf).fileSystem(fs)
+        .setSchema(OrcSchemaConverter.toOrcSchema(SCHEMA));
+      try (StructuredRecordOrcWriter writer = new StructuredRecordOrcWriter(OrcFile.createWriter(path, options),
+                                                                            SCHEMA)) {
+        for (StructuredRecord record : RECORDS) {
+          writer.write(record);
+        }
+      }
+      long size = fs.getFileStatus(path).getLen();
+      report("orc", codec, size, cpuTime);
+
+      Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf).filesystem(fs));
+      Assert.assertEquals(RECORDS.size(), reader.getNumberOfRows());
+      Assert.assertEquals(5000, reader.getRowIndexStride());
+      if (OutputCompression.NONE.equals(codec)) {
+        Assert.assertEquals(CompressionKind.NONE, reader.getCompressionKind());
+        uncompressed = size;
+      } else {
+        Assert.assertNotEquals(CompressionKind.NONE, reader.getCompressionKind());
+        Assert.assertTrue(size < uncompressed);
+      }
+    }
+  }
+
+  @Test
+  public void testParquetCodecs() {
+    Assert.assertEquals(CompressionCodecName.UNCOMPRESSED, OutputCompression.getParquetCodec("none"));
+    Assert.assertEquals(CompressionCodecName.SNAPPY, OutputCompression.getParquetCodec("snappy"));
+    Assert.assertEquals(CompressionCodecName.GZIP, OutputCompression.getParquetCodec("gzip"));
+  }
+
+  @Test
+  public void testParquetRoundTrip() throws Exception {
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(SCHEMA.toString());
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(SCHEMA);
+    FileSystem fs = new RawLocalFileSystem();
+    fs.initialize(URI.create("file:///"), new Configuration());
+    long uncompressed = -1;
+    for (String codec : OutputCompression.getSupportedCodecs("parquet")) {
+      // configured the way the sink configures the parquet output format
+      Job job = Job.getInstance();
+      AvroParquetOutputFormat.setSchema(job, avroSchema);
+      ParquetOutputFormat.setBlockSize(job, 8 * 1024 * 1024);
+      ParquetOutputFormat.setCompression(job, OutputCompression.getParquetCodec(codec));
+      Configuration conf = job.getConfiguration();
+      Path path = new Path(new File(TEMP_FOLDER.newFolder(), "data.parquet").toURI());
+
+      long cpuTime = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+      TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+      RecordWriter<Void, GenericRecord> writer = new AvroParquetOutputFormat<GenericRecord>()
+        .getRecordWriter(context, path);
+      for (StructuredRecord record : RECORDS) {
+        writer.write(null, transformer.transform(record));
+      }
+      writer.close(context);
+      long size = fs.getFileStatus(path).getLen();
+      report("parquet", codec, size, cpuTime);
+
+      int count = 0;
+      try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(path).withConf(conf)
+        .build()) {
+        GenericRecord read = reader.read();
+        while (read != null) {
+          StructuredRecord record = RECORDS.get(count++);
+          Assert.assertEquals(record.get("id"), read.get("id"));
+          Assert.assertEquals(record.get("name"), read.get("name").toString());
+          Assert.assertEquals(record.get("amount"), read.get("amount"));
+          read = reader.read();
+        }
+      }
+      Assert.assertEquals(RECORDS.size(), count);
+      if (OutputCompression.NONE.equals(codec)) {
+        uncompressed = size;
+      } else {
+        Assert.assertTrue(size < uncompressed);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedCodec() {
+    OutputCompression.configureOrc(new Configuration(), OutputCompression.ZSTD, null, null);
+  }
+
+  private static long writeText(CompressionCodec compressionCodec, String codec) throws IOException {
+    StructuredToTextTransformer transformer = new StructuredToTextTransformer(",", SCHEMA);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    long cpuTime = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    try (OutputStream out = compressionCodec == null ? bytes : compressionCodec.createOutputStream(bytes)) {
+      for (StructuredRecord record : RECORDS) {
+        Text line = transformer.transform(record);
+        out.write(line.getBytes(), 0, line.getLength());
+        out.write('\n');
+      }
+    }
+    report("text", codec, bytes.size(), cpuTime);
+    return bytes.size();
+  }
+
+  private static void report(String format, String codec, long bytesWritten, long startCpuTime) {
+    long cpuMillis = (THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpuTime) / 1000000;
+    LOG.info(String.format("Wrote %d records in %s format with codec '%s': %d bytes, %d ms CPU time.",
+                           RECORDS.size(), format, codec, bytesWritten, cpuMillis));
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Test for {@link OutputPartitioner}
+ */
+public class OutputPartitionerTest {
+  private static final Schema SCHEMA =
+    Schema.recordOf("record",
+                    Schema.Field.of("region", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                    Schema.Field.of("ts", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+                    Schema.Field.of("millis", Schema.of(Schema.Type.LONG)),
+                    Schema.Field.of("day", Schema.of(Schema.LogicalType.DATE)));
+
+  // 2020-01-31T23:30:00Z
+  private static final long TIME = 1580513400000L;
+
+  @Test
+  public void testFieldPartitions() {
+    OutputPartitioner partitioner = new OutputPartitioner(ImmutableList.of("region", "id"), null, null, 0L);
+    Assert.assertEquals("region=emea/id=3", partitioner.getPartition(createRecord("emea", 3)));
+    Assert.assertEquals("region=" + OutputPartitioner.DEFAULT_PARTITION + "/id=4",
+                        partitioner.getPartition(createRecord(null, 4)));
+    Assert.assertEquals("region=" + OutputPartitioner.DEFAULT_PARTITION + "/id=5",
+                        partitioner.getPartition(createRecord("", 5)));
+    Assert.assertEquals("region=a%2Fb%3Dc%25/id=6", partitioner.getPartition(createRecord("a/b=c%", 6)));
+  }
+
+  @Test
+  public void testTimePartitions() {
+    OutputPartitioner partitioner = new OutputPartitioner(Collections.emptyList(), "'dt='yyyy-MM-dd'/hour='HH",
+                                                          null, TIME);
+    Assert.assertEquals("dt=2020-01-31/hour=23", partitioner.getPartition(createRecord("emea", 1)));
+
+    partitioner = new OutputPartitioner(ImmutableList.of("region"), "'dt='yyyy-MM-dd", "ts", 0L);
+    Assert.assertEquals("dt=2020-01-31/region=emea", partitioner.getPartition(createRecord("emea", 1)));
+
+    partitioner = new OutputPartitioner(Collections.emptyList(), "'dt='yyyy-MM-dd", "millis", 0L);
+    Assert.assertEquals("dt=2020-01-31", partitioner.getPartition(createRecord("emea", 1)));
+
+    partitioner = new OutputPartitioner(Collections.emptyList(), "'dt='yyyy-MM-dd", "day", 0L);
+    Assert.assertEquals("dt=2020-01-31", partitioner.getPartition(createRecord("emea", 1)));
+  }
+
+  private static StructuredRecord createRecord(String region, int id) {
+    return StructuredRecord.builder(SCHEMA)
+      .set("region", region)
+      .set("id", id)
+      .set("ts", TIME * 1000)
+      .set("millis", TIME)
+      .set("day", (int) (TIME / 86400000L))
+      .build();
+  }
+}
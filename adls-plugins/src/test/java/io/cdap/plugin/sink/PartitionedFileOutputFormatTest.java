@@ -0,0 +1,422 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.cdap.etl.api.StageMetrics;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.mapred.AvroKey;
+import org.apache.avro.mapreduce.AvroJob;
+import org.apache.avro.mapreduce.AvroKeyOutputFormat;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.orc.OrcFile;
+import org.apache.orc.mapreduce.OrcOutputFormat;
+import org.apache.parquet.avro.AvroParquetOutputFormat;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test for {@link PartitionedFileOutputFormat}
+ */
+public class PartitionedFileOutputFormatTest {
+  private static final Schema SCHEMA =
+    Schema.recordOf("record",
+                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+  private static final org.apache.avro.Schema AVRO_SCHEMA =
+    new org.apache.avro.Schema.Parser().parse(SCHEMA.toString());
+  // files written by the delegate output format, by file name, in the order they were opened
+  private static final Map<String, List<Object>> FILES = new LinkedHashMap<>();
+  private static final List<String> CLOSED = new ArrayList<>();
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Before
+  public void setup() {
+    FILES.clear();
+    CLOSED.clear();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedWriterIsClosed() throws Exception {
+    Configuration conf = new Configuration();
+    PartitionedFileOutputFormat.configure(conf, RecordingOutputFormat.class.getName(), 2);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    RecordWriter<String, KeyValue<Object, Object>> writer =
+      new PartitionedFileOutputFormat().getRecordWriter(context);
+
+    writer.write("p=a", new KeyValue<>(null, 1));
+    writer.write("p=a", new KeyValue<>(null, 2));
+    writer.write("p=b", new KeyValue<>(null, 3));
+    writer.write("p=a", new KeyValue<>(null, 4));
+    // p=b is the least recently used writer and is closed
+    writer.write("p=c", new KeyValue<>(null, 5));
+    Assert.assertEquals(ImmutableList.of("p=b/part"), CLOSED);
+    // p=b is opened again with a new file name
+    writer.write("p=b", new KeyValue<>(null, 6));
+    Assert.assertEquals(ImmutableList.of("p=b/part", "p=a/part"), CLOSED);
+    writer.write("", new KeyValue<>(null, 7));
+    writer.close(context);
+
+    Assert.assertEquals(ImmutableList.of("p=a/part", "p=b/part", "p=c/part", "p=b/part-1", "part"),
+                        ImmutableList.copyOf(FILES.keySet()));
+    Assert.assertEquals(ImmutableList.of(1, 2, 4), FILES.get("p=a/part"));
+    Assert.assertEquals(ImmutableList.of(3), FILES.get("p=b/part"));
+    Assert.assertEquals(ImmutableList.of(5), FILES.get("p=c/part"));
+    Assert.assertEquals(ImmutableList.of(6), FILES.get("p=b/part-1"));
+    Assert.assertEquals(ImmutableList.of(7), FILES.get("part"));
+    Assert.assertEquals(5, CLOSED.size());
+  }
+
+  @Test
+  public void testRollOverByRecords() throws Exception {
+    Configuration conf = new Configuration();
+    PartitionedFileOutputFormat.configure(conf, RecordingOutputFormat.class.getName(), 4);
+    PartitionedFileOutputFormat.setTargetFileSize(conf, null, 2L);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    RecordWriter<String, KeyValue<Object, Object>> writer =
+      new PartitionedFileOutputFormat().getRecordWriter(context);
+    for (int i = 0; i < 5; i++) {
+      writer.write("", new KeyValue<>(null, i));
+    }
+    writer.write("p=a", new KeyValue<>(null, 5));
+    writer.close(context);
+
+    Assert.assertEquals(ImmutableList.of("part", "part-1", "part-2", "p=a/part"), ImmutableList.copyOf(FILES.keySet()));
+    Assert.assertEquals(ImmutableList.of(0, 1), FILES.get("part"));
+    Assert.assertEquals(ImmutableList.of(2, 3), FILES.get("part-1"));
+    Assert.assertEquals(ImmutableList.of(4), FILES.get("part-2"));
+    Assert.assertEquals(ImmutableList.of("part", "part-1", "part-2", "p=a/part"), CLOSED);
+  }
+
+  @Test
+  public void testRollOverByBytes() throws Exception {
+    Configuration conf = getUnbufferedConf();
+    PartitionedFileOutputFormat.setTargetFileSize(conf, 250L, null);
+    File output = writeLines(conf, 7);
+
+    // lines of 100 bytes, so files roll over after the third line
+    Assert.assertEquals(300, new File(output, "part-m-00000").length());
+    Assert.assertEquals(300, new File(output, "part-1-m-00000").length());
+    Assert.assertEquals(100, new File(output, "part-2-m-00000").length());
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    Configuration conf = getUnbufferedConf();
+    PartitionedFileOutputFormat.setTargetFileSize(conf, 250L, null);
+    PartitionedFileOutputFormat.configureMetrics(conf, "default:pipeline:sink:1");
+    RecordingMetrics metrics = new RecordingMetrics();
+    PartitionedFileOutputFormat.registerMetrics("default:pipeline:sink:1", metrics);
+    // a stage of the same name in another run reports to metrics of its own
+    RecordingMetrics otherMetrics = new RecordingMetrics();
+    PartitionedFileOutputFormat.registerMetrics("default:pipeline:sink:2", otherMetrics);
+    try {
+      writeLines(conf, 7);
+    } finally {
+      PartitionedFileOutputFormat.unregisterMetrics("default:pipeline:sink:1");
+      PartitionedFileOutputFormat.unregisterMetrics("default:pipeline:sink:2");
+    }
+
+    // files of 300, 300 and 100 bytes
+    Assert.assertEquals(3L, (long) metrics.counts.get("output.files"));
+    Assert.assertEquals(7L, (long) metrics.counts.get("output.records"));
+    Assert.assertEquals(700L, (long) metrics.counts.get("output.bytes"));
+    Assert.assertEquals(3L, (long) metrics.counts.get("output.file.size.le.1MB"));
+    Assert.assertTrue(otherMetrics.counts.isEmpty());
+  }
+
+  @Test
+  public void testMetricsAreRemovedOnceUnregistered() {
+    int registered = PartitionedFileOutputFormat.getRegisteredMetrics();
+    // every task of a stage in the JVM registers the metrics of the stage
+    PartitionedFileOutputFormat.registerMetrics("default:pipeline:sink:1", new RecordingMetrics());
+    PartitionedFileOutputFormat.registerMetrics("default:pipeline:sink:1", new RecordingMetrics());
+    Assert.assertEquals(registered + 1, PartitionedFileOutputFormat.getRegisteredMetrics());
+    PartitionedFileOutputFormat.unregisterMetrics("default:pipeline:sink:1");
+    Assert.assertEquals(registered + 1, PartitionedFileOutputFormat.getRegisteredMetrics());
+    PartitionedFileOutputFormat.unregisterMetrics("default:pipeline:sink:1");
+    Assert.assertEquals(registered, PartitionedFileOutputFormat.getRegisteredMetrics());
+  }
+
+  @Test
+  public void testPartitionsOfTextFiles() throws Exception {
+    StructuredToTextTransformer transformer = new StructuredToTextTransformer(",", SCHEMA);
+    File output = writePartitions(TextOutputFormat.class.getName(), new Configuration(),
+                                  record -> new KeyValue<>(transformer.transform(record), NullWritable.get()));
+    for (String partition : new String[] {"p=a", "p=b"}) {
+      File file = getFile(output, partition, "");
+      Assert.assertEquals(2, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+    }
+  }
+
+  @Test
+  public void testPartitionsOfAvroFiles() throws Exception {
+    Job job = Job.getInstance();
+    AvroJob.setOutputKeySchema(job, AVRO_SCHEMA);
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(SCHEMA);
+    File output = writePartitions(AvroKeyOutputFormat.class.getName(), job.getConfiguration(),
+                                  record -> new KeyValue<>(new AvroKey<>(transformer.transform(record)),
+                                                           NullWritable.get()));
+    for (String partition : new String[] {"p=a", "p=b"}) {
+      Assert.assertEquals(2, countAvroRecords(getFile(output, partition, ".avro")));
+    }
+  }
+
+  @Test
+  public void testRollOverAvroFiles() throws Exception {
+    Job job = Job.getInstance();
+    AvroJob.setOutputKeySchema(job, AVRO_SCHEMA);
+    PartitionedFileOutputFormat.setTargetFileSize(job.getConfiguration(), null, 2L);
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(SCHEMA);
+    List<KeyValue<String, StructuredRecord>> records = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      records.add(new KeyValue<>("", StructuredRecord.builder(SCHEMA).set("id", (long) i).set("name", "name").build()));
+    }
+    File output = write(AvroKeyOutputFormat.class.getName(), job.getConfiguration(), records,
+                        record -> new KeyValue<>(new AvroKey<>(transformer.transform(record)), NullWritable.get()));
+
+    // every rolled over file has a name of its own instead of overwriting the previous one
+    Assert.assertEquals(2, countAvroRecords(new File(output, "part-m-00000.avro")));
+    Assert.assertEquals(2, countAvroRecords(new File(output, "part-1-m-00000.avro")));
+    Assert.assertEquals(1, countAvroRecords(new File(output, "part-2-m-00000.avro")));
+  }
+
+  @Test
+  public void testPartitionsOfOrcFiles() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set("orc.mapred.output.schema", OrcSchemaConverter.toOrcSchema(SCHEMA).toString());
+    StructuredToOrcTransformer transformer = new StructuredToOrcTransformer(SCHEMA);
+    File output = writePartitions(OrcOutputFormat.class.getName(), conf,
+                                  record -> new KeyValue<>(NullWritable.get(), transformer.transform(record)));
+    for (String partition : new String[] {"p=a", "p=b"}) {
+      Path path = new Path(getFile(output, partition, ".orc").toURI());
+      Assert.assertEquals(2, OrcFile.createReader(path, OrcFile.readerOptions(conf)).getNumberOfRows());
+    }
+  }
+
+  @Test
+  public void testPartitionsOfParquetFiles() throws Exception {
+    Job job = Job.getInstance();
+    AvroParquetOutputFormat.setSchema(job, AVRO_SCHEMA);
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(SCHEMA);
+    File output = writePartitions(AvroParquetOutputFormat.class.getName(), job.getConfiguration(),
+                                  record -> new KeyValue<>(null, transformer.transform(record)));
+    for (String partition : new String[] {"p=a", "p=b"}) {
+      Path path = new Path(getFile(output, partition, ".parquet").toURI());
+      int count = 0;
+      try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(path).build()) {
+        while (reader.read() != null) {
+          count++;
+        }
+      }
+      Assert.assertEquals(2, count);
+    }
+  }
+
+  /**
+   * Returns a configuration that writes local files without checksums or buffering, so the length of an open file
+   * includes every record written to it.
+   */
+  private static Configuration getUnbufferedConf() {
+    Configuration conf = new Configuration();
+    conf.setClass("fs.file.impl", RawLocalFileSystem.class, FileSystem.class);
+    conf.setBoolean("fs.file.impl.disable.cache", true);
+    conf.setInt("io.file.buffer.size", 1);
+    return conf;
+  }
+
+  /**
+   * Writes the given number of text lines of 100 bytes each through a text output format and returns the output
+   * directory.
+   */
+  private File writeLines(Configuration conf, int count) throws Exception {
+    List<KeyValue<String, StructuredRecord>> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      records.add(new KeyValue<>("", StructuredRecord.builder(SCHEMA).set("id", (long) i).set("name", "").build()));
+    }
+    return write(TextOutputFormat.class.getName(), conf, records,
+                 record -> new KeyValue<>(new Text(Strings.padEnd(record.get("id").toString(), 99, 'x')),
+                                          NullWritable.get()));
+  }
+
+  /**
+   * Writes two records to each of two partitions through the given delegate output format and commits them to a new
+   * output directory, which is returned.
+   */
+  private File writePartitions(String delegate, Configuration conf, KeyValueFunction toKeyValue) throws Exception {
+    List<KeyValue<String, StructuredRecord>> records = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      StructuredRecord record = StructuredRecord.builder(SCHEMA).set("id", (long) i).set("name", "name " + i).build();
+      records.add(new KeyValue<>(i % 2 == 0 ? "p=a" : "p=b", record));
+    }
+    return write(delegate, conf, records, toKeyValue);
+  }
+
+  /**
+   * Writes the given records to their partitions through the given delegate output format, in a task that is
+   * committed like a MapReduce task is, and returns the output directory.
+   */
+  private File write(String delegate, Configuration conf, List<KeyValue<String, StructuredRecord>> records,
+                     KeyValueFunction toKeyValue) throws Exception {
+    File output = new File(temporaryFolder.getRoot(), "output");
+    conf.set(FileOutputFormat.OUTDIR, output.toURI().toString());
+    PartitionedFileOutputFormat.configure(conf, delegate, 4);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID("test", 1, TaskType.MAP, 0, 0));
+    PartitionedFileOutputFormat outputFormat = new PartitionedFileOutputFormat();
+    OutputCommitter committer = outputFormat.getOutputCommitter(context);
+    committer.setupJob(context);
+    committer.setupTask(context);
+    RecordWriter<String, KeyValue<Object, Object>> writer = outputFormat.getRecordWriter(context);
+    for (KeyValue<String, StructuredRecord> record : records) {
+      writer.write(record.getKey(), toKeyValue.apply(record.getValue()));
+    }
+    writer.close(context);
+    committer.commitTask(context);
+    committer.commitJob(context);
+    return output;
+  }
+
+  /**
+   * Returns the only file of a partition, asserting that it has the extension of its format.
+   */
+  private static File getFile(File output, String partition, String extension) {
+    File[] files = new File(output, partition).listFiles((dir, name) -> !name.startsWith("."));
+    Assert.assertNotNull(files);
+    Assert.assertEquals(Arrays.toString(files), 1, files.length);
+    Assert.assertEquals("part-m-00000" + extension, files[0].getName());
+    return files[0];
+  }
+
+  private static int countAvroRecords(File file) throws Exception {
+    int count = 0;
+    try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+      while (reader.hasNext()) {
+        reader.next();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Turns a record into the key and value written by a delegate output format.
+   */
+  private interface KeyValueFunction {
+    KeyValue<Object, Object> apply(StructuredRecord record) throws IOException;
+  }
+
+  /**
+   * Stage metrics that record the counts in memory.
+   */
+  private static final class RecordingMetrics implements StageMetrics {
+    private final Map<String, Long> counts = new HashMap<>();
+
+    @Override
+    public void count(String metricName, int delta) {
+      counts.merge(metricName, (long) delta, Long::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      counts.put(metricName, value);
+    }
+
+    @Override
+    public void pipelineCount(String metricName, int delta) {
+      count(metricName, delta);
+    }
+
+    @Override
+    public void pipelineGauge(String metricName, long value) {
+      gauge(metricName, value);
+    }
+
+    @Override
+    public Metrics child(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+  }
+
+  /**
+   * Output format that records the values written to every file instead of writing them to the file system.
+   */
+  public static class RecordingOutputFormat extends FileOutputFormat<Object, Object> {
+    @Override
+    public RecordWriter<Object, Object> getRecordWriter(TaskAttemptContext context) {
+      String name = getOutputName(context);
+      Assert.assertFalse(FILES.containsKey(name));
+      List<Object> values = new ArrayList<>();
+      FILES.put(name, values);
+      return new RecordWriter<Object, Object>() {
+        @Override
+        public void write(Object key, Object value) {
+          values.add(value);
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) {
+          CLOSED.add(name);
+        }
+      };
+    }
+  }
+}
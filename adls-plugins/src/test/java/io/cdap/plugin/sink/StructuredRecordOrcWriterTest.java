@@ -0,0 +1,324 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcStruct;
+import org.apache.orc.mapreduce.OrcMapreduceRecordReader;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test for {@link StructuredRecordOrcWriter}
+ */
+public class StructuredRecordOrcWriterTest {
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final Schema SCHEMA =
+    Schema.recordOf("record",
+                    Schema.Field.of("int_field", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+                    Schema.Field.of("double_field", Schema.of(Schema.Type.DOUBLE)),
+                    Schema.Field.of("string_field", Schema.of(Schema.Type.STRING)));
+
+  private static final Schema INNER_SCHEMA =
+    Schema.recordOf("inner",
+                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                    Schema.Field.of("tags", Schema.nullableOf(Schema.arrayOf(Schema.of(Schema.Type.STRING)))));
+
+  private static final Schema NESTED_SCHEMA =
+    Schema.recordOf("nested",
+                    Schema.Field.of("inner", Schema.nullableOf(INNER_SCHEMA)),
+                    Schema.Field.of("list", Schema.arrayOf(INNER_SCHEMA)),
+                    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                        Schema.nullableOf(Schema.of(Schema.Type.INT)))),
+                    Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.INT),
+                                                            Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testWriteMultipleBatches() throws Exception {
+    Configuration conf = new Configuration();
+    FileSystem fs = createLocalFileSystem(conf);
+    TypeDescription orcSchema = OrcSchemaConverter.toOrcSchema(SCHEMA);
+    Path path = new Path(new File(TEMP_FOLDER.newFolder(), "data.orc").toURI());
+
+    // write more than one full batch so that both the batch flush and the final flush are exercised
+    int numRecords = VectorizedRowBatch.DEFAULT_SIZE * 2 + 10;
+    OrcFile.WriterOptions options = OrcFile.writerOptions(conf).fileSystem(fs).setSchema(orcSchema);
+    try (StructuredRecordOrcWriter writer = new StructuredRecordOrcWriter(OrcFile.createWriter(path, options),
+                                                                          SCHEMA)) {
+      for (int i = 0; i < numRecords; i++) {
+        writer.write(StructuredRecord.builder(SCHEMA)
+                       .set("int_field", i % 3 == 0 ? null : i)
+                       .set("double_field", i / 2.0d)
+                       .set("string_field", "s" + i)
+                       .build());
+      }
+    }
+
+    Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf).filesystem(fs));
+    Assert.assertEquals(numRecords, reader.getNumberOfRows());
+    RecordReader rows = reader.rows();
+    VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+    int i = 0;
+    while (rows.nextBatch(batch)) {
+      LongColumnVector ints = (LongColumnVector) batch.cols[0];
+      DoubleColumnVector doubles = (DoubleColumnVector) batch.cols[1];
+      BytesColumnVector strings = (BytesColumnVector) batch.cols[2];
+      for (int row = 0; row < batch.size; row++, i++) {
+        if (i % 3 == 0) {
+          Assert.assertTrue(ints.isNull[row]);
+        } else {
+          Assert.assertEquals(i, ints.vector[row]);
+        }
+        Assert.assertEquals(i / 2.0d, doubles.vector[row], 0.0d);
+        Assert.assertEquals("s" + i, strings.toString(row));
+      }
+    }
+    rows.close();
+    Assert.assertEquals(numRecords, i);
+  }
+
+  @Test
+  public void testNestedTypes() throws Exception {
+    Configuration conf = new Configuration();
+    FileSystem fs = createLocalFileSystem(conf);
+    TypeDescription orcSchema = OrcSchemaConverter.toOrcSchema(NESTED_SCHEMA);
+    Assert.assertEquals("struct<inner:struct<id:bigint,tags:array<string>>,list:array<struct<id:bigint," +
+                          "tags:array<string>>>,map:map<string,int>,union:uniontype<int,string>>",
+                        orcSchema.toString());
+    Path path = new Path(new File(TEMP_FOLDER.newFolder(), "nested.orc").toURI());
+
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA)
+        .set("id", (long) i)
+        .set("tags", i % 2 == 0 ? null : ImmutableList.of("a" + i, "b" + i))
+        .build();
+      records.add(StructuredRecord.builder(NESTED_SCHEMA)
+                    .set("inner", i == 3 ? null : inner)
+                    .set("list", ImmutableList.of(inner, inner))
+                    .set("map", ImmutableMap.of("k" + i, i))
+                    .set("union", i == 4 ? null : (i % 2 == 0 ? (Object) i : "s" + i))
+                    .build());
+    }
+
+    OrcFile.WriterOptions options = OrcFile.writerOptions(conf).fileSystem(fs).setSchema(orcSchema);
+    try (StructuredRecordOrcWriter writer = new StructuredRecordOrcWriter(OrcFile.createWriter(path, options),
+                                                                          NESTED_SCHEMA)) {
+      for (StructuredRecord record : records) {
+        writer.write(record);
+      }
+    }
+
+    // records read back must be the same as the ones produced by the non vectorized transformer
+    StructuredToOrcTransformer transformer = new StructuredToOrcTransformer(NESTED_SCHEMA);
+    Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf).filesystem(fs));
+    OrcMapreduceRecordReader<OrcStruct> rows = new OrcMapreduceRecordReader<>(reader, new Reader.Options());
+    for (StructuredRecord record : records) {
+      Assert.assertTrue(rows.nextKeyValue());
+      Assert.assertEquals(transformer.transform(record), rows.getCurrentValue());
+    }
+    Assert.assertFalse(rows.nextKeyValue());
+    rows.close();
+  }
+
+  @Test
+  public void testNullMapKey() throws Exception {
+    StructuredRecord record = StructuredRecord.builder(NESTED_SCHEMA)
+      .set("list", ImmutableList.of())
+      .set("map", Collections.singletonMap(null, 1))
+      .set("union", 1)
+      .build();
+    try {
+      new StructuredToOrcTransformer(NESTED_SCHEMA).transform(record);
+      Assert.fail("Expected a null map key to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("'map'"));
+    }
+
+    Configuration conf = new Configuration();
+    FileSystem fs = createLocalFileSystem(conf);
+    Path path = new Path(new File(TEMP_FOLDER.newFolder(), "null-key.orc").toURI());
+    OrcFile.WriterOptions options = OrcFile.writerOptions(conf).fileSystem(fs)
+      .setSchema(OrcSchemaConverter.toOrcSchema(NESTED_SCHEMA));
+    try (StructuredRecordOrcWriter writer = new StructuredRecordOrcWriter(OrcFile.createWriter(path, options),
+                                                                          NESTED_SCHEMA)) {
+      writer.write(record);
+      Assert.fail("Expected a null map key to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("'map'"));
+    }
+    // the rejected record is not written when the writer is closed
+    Assert.assertEquals(0, OrcFile.createReader(path, OrcFile.readerOptions(conf).filesystem(fs)).getNumberOfRows());
+  }
+
+  @Test
+  public void testFailedRecordIsLeftOut() throws Exception {
+    StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", 1L).set("tags", ImmutableList.of("a"))
+      .build();
+    StructuredRecord first = StructuredRecord.builder(NESTED_SCHEMA)
+      .set("inner", inner)
+      .set("list", ImmutableList.of(inner))
+      .set("map", ImmutableMap.of("k1", 1))
+      .set("union", 1)
+      .build();
+    StructuredRecord last = StructuredRecord.builder(NESTED_SCHEMA)
+      .set("list", ImmutableList.of(inner, inner))
+      .set("map", ImmutableMap.of("k2", 2))
+      .set("union", "s2")
+      .build();
+
+    Configuration conf = new Configuration();
+    FileSystem fs = createLocalFileSystem(conf);
+    Path path = new Path(new File(TEMP_FOLDER.newFolder(), "failed.orc").toURI());
+    OrcFile.WriterOptions options = OrcFile.writerOptions(conf).fileSystem(fs)
+      .setSchema(OrcSchemaConverter.toOrcSchema(NESTED_SCHEMA));
+    try (StructuredRecordOrcWriter writer = new StructuredRecordOrcWriter(OrcFile.createWriter(path, options),
+                                                                          NESTED_SCHEMA)) {
+      writer.write(first);
+      try {
+        // the list is written before the map fails
+        writer.write(StructuredRecord.builder(NESTED_SCHEMA)
+                       .set("inner", inner)
+                       .set("list", ImmutableList.of(inner, inner, inner))
+                       .set("map", Collections.singletonMap(null, 3))
+                       .set("union", 3)
+                       .build());
+        Assert.fail("Expected a null map key to be rejected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        writer.write(StructuredRecord.builder(NESTED_SCHEMA)
+                       .set("list", ImmutableList.of(inner, "not a record"))
+                       .set("map", ImmutableMap.of("k4", 4))
+                       .set("union", 4)
+                       .build());
+        Assert.fail("Expected a list element of the wrong type to be rejected");
+      } catch (ClassCastException e) {
+        // expected
+      }
+      writer.write(last);
+    }
+
+    StructuredToOrcTransformer transformer = new StructuredToOrcTransformer(NESTED_SCHEMA);
+    Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf).filesystem(fs));
+    Assert.assertEquals(2, reader.getNumberOfRows());
+    OrcMapreduceRecordReader<OrcStruct> rows = new OrcMapreduceRecordReader<>(reader, new Reader.Options());
+    for (StructuredRecord record : ImmutableList.of(first, last)) {
+      Assert.assertTrue(rows.nextKeyValue());
+      Assert.assertEquals(transformer.transform(record), rows.getCurrentValue());
+    }
+    Assert.assertFalse(rows.nextKeyValue());
+    rows.close();
+  }
+
+  @Test
+  public void testNullInNonNullableField() throws Exception {
+    // records of an upstream schema that allows nulls where the output schema does not
+    Schema nullableSchema =
+      Schema.recordOf("record",
+                      Schema.Field.of("int_field", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+                      Schema.Field.of("double_field", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+                      Schema.Field.of("string_field", Schema.of(Schema.Type.STRING)));
+    StructuredRecord valid = StructuredRecord.builder(nullableSchema)
+      .set("double_field", 1.0d)
+      .set("string_field", "s")
+      .build();
+    StructuredRecord invalid = StructuredRecord.builder(nullableSchema)
+      .set("string_field", "s")
+      .build();
+    try {
+      new StructuredToOrcTransformer(SCHEMA).transform(invalid);
+      Assert.fail("Expected a null in a non-nullable field to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("'double_field'"));
+    }
+
+    Configuration conf = new Configuration();
+    FileSystem fs = createLocalFileSystem(conf);
+    Path path = new Path(new File(TEMP_FOLDER.newFolder(), "non-nullable.orc").toURI());
+    OrcFile.WriterOptions options = OrcFile.writerOptions(conf).fileSystem(fs)
+      .setSchema(OrcSchemaConverter.toOrcSchema(SCHEMA));
+    try (StructuredRecordOrcWriter writer = new StructuredRecordOrcWriter(OrcFile.createWriter(path, options),
+                                                                          SCHEMA)) {
+      writer.write(valid);
+      try {
+        writer.write(invalid);
+        Assert.fail("Expected a null in a non-nullable field to be rejected");
+      } catch (IllegalArgumentException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains("'double_field'"));
+      }
+    }
+    Assert.assertEquals(1, OrcFile.createReader(path, OrcFile.readerOptions(conf).filesystem(fs)).getNumberOfRows());
+  }
+
+  @Test
+  public void testNullInNonNullableElement() throws Exception {
+    StructuredRecord inner = StructuredRecord.builder(INNER_SCHEMA).set("id", 1L).build();
+    StructuredRecord record = StructuredRecord.builder(NESTED_SCHEMA)
+      .set("list", Arrays.asList(inner, null))
+      .set("map", ImmutableMap.of("k", 1))
+      .set("union", 1)
+      .build();
+
+    Configuration conf = new Configuration();
+    FileSystem fs = createLocalFileSystem(conf);
+    Path path = new Path(new File(TEMP_FOLDER.newFolder(), "non-nullable-element.orc").toURI());
+    OrcFile.WriterOptions options = OrcFile.writerOptions(conf).fileSystem(fs)
+      .setSchema(OrcSchemaConverter.toOrcSchema(NESTED_SCHEMA));
+    try (StructuredRecordOrcWriter writer = new StructuredRecordOrcWriter(OrcFile.createWriter(path, options),
+                                                                          NESTED_SCHEMA)) {
+      writer.write(record);
+      Assert.fail("Expected a null element of a non-nullable array to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("'list'"));
+    }
+  }
+
+  // use the local file system directly rather than resolving it through the FileSystem service loader
+  private static FileSystem createLocalFileSystem(Configuration conf) throws Exception {
+    FileSystem fs = new RawLocalFileSystem();
+    fs.initialize(URI.create("file:///"), conf);
+    return fs;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Test Structured Record to Avro converter
+ */
+public class StructuredToAvroTransformerTest {
+  private static final Schema INNER_SCHEMA =
+    Schema.recordOf("inner", Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+
+  private static final Schema INPUT_SCHEMA =
+    Schema.recordOf("input",
+                    Schema.Field.of("ignored", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("int_field", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+                    Schema.Field.of("bytes_field", Schema.of(Schema.Type.BYTES)),
+                    Schema.Field.of("string_field", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("record_field", INNER_SCHEMA));
+
+  private static final Schema OUTPUT_SCHEMA =
+    Schema.recordOf("output",
+                    Schema.Field.of("string_field", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("int_field", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+                    Schema.Field.of("bytes_field", Schema.of(Schema.Type.BYTES)),
+                    Schema.Field.of("record_field", INNER_SCHEMA));
+
+  @Test
+  public void testAvroTransform() throws Exception {
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(OUTPUT_SCHEMA);
+    for (int i = 0; i < 3; i++) {
+      StructuredRecord input = StructuredRecord.builder(INPUT_SCHEMA)
+        .set("ignored", "x")
+        .set("int_field", i == 1 ? null : i)
+        .set("bytes_field", new byte[]{(byte) i})
+        .set("string_field", "s" + i)
+        .set("record_field", StructuredRecord.builder(INNER_SCHEMA).set("name", "n" + i).build())
+        .build();
+
+      GenericRecord output = transformer.transform(input);
+      Assert.assertEquals("s" + i, output.get("string_field"));
+      Assert.assertEquals(i == 1 ? null : i, output.get("int_field"));
+      Assert.assertEquals(ByteBuffer.wrap(new byte[]{(byte) i}), output.get("bytes_field"));
+      Assert.assertEquals("n" + i, ((GenericRecord) output.get("record_field")).get("name"));
+      Assert.assertNull(output.getSchema().getField("ignored"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingInputField() throws Exception {
+    Schema inputSchema = Schema.recordOf("input", Schema.Field.of("string_field", Schema.of(Schema.Type.STRING)));
+    new StructuredToAvroTransformer(OUTPUT_SCHEMA)
+      .transform(StructuredRecord.builder(inputSchema).set("string_field", "s").build());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link StructuredToDelimitedTextTransformer}
+ */
+public class StructuredToDelimitedTextTransformerTest {
+  private static final Schema SCHEMA =
+    Schema.recordOf("record",
+                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                    Schema.Field.of("comment", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testQuoting() throws Exception {
+    StructuredToTextTransformer transformer = new StructuredToDelimitedTextTransformer(",", SCHEMA, false, '"', '"');
+    Assert.assertEquals("1,plain,", transform(transformer, 1, "plain", null));
+    Assert.assertEquals("2,\"a,b\",\"say \"\"hi\"\"\"", transform(transformer, 2, "a,b", "say \"hi\""));
+    Assert.assertEquals("3,\"multi\nline\",\"\r\"", transform(transformer, 3, "multi\nline", "\r"));
+    Assert.assertEquals("4,café,\"é,é\"", transform(transformer, 4, "café", "é,é"));
+  }
+
+  @Test
+  public void testEscapeCharacter() throws Exception {
+    StructuredToTextTransformer transformer = new StructuredToDelimitedTextTransformer("\t", SCHEMA, true, '\'',
+                                                                                        '\\');
+    Assert.assertEquals("1\t'it\\'s'\t'back\\\\slash'", transform(transformer, 1, "it's", "back\\slash"));
+    Assert.assertEquals("2\ta,b\t", transform(transformer, 2, "a,b", ""));
+  }
+
+  @Test
+  public void testMultiCharacterDelimiter() throws Exception {
+    StructuredToTextTransformer transformer = new StructuredToDelimitedTextTransformer("||", SCHEMA, false, '"', '"');
+    Assert.assertEquals("1||\"a|b\"||\"a||b\"", transform(transformer, 1, "a|b", "a||b"));
+    // unquoted, the end of the field would run into the delimiter as "|||"
+    Assert.assertEquals("2||\"ends with |\"||", transform(transformer, 2, "ends with |", null));
+    Assert.assertEquals("3||a-b||", transform(transformer, 3, "a-b", null));
+  }
+
+  @Test
+  public void testDelimiterInNumbers() throws Exception {
+    Schema schema = Schema.recordOf("numbers",
+                                    Schema.Field.of("long", Schema.of(Schema.Type.LONG)),
+                                    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+                                    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("long", -3L)
+      .set("double", 1.5d)
+      .set("boolean", true)
+      .build();
+    Assert.assertEquals("\"-3\"-1.5-true",
+                        new StructuredToDelimitedTextTransformer("-", schema, false, '"', '"')
+                          .transform(record).toString());
+    Assert.assertEquals("-3.\"1.5\".true",
+                        new StructuredToDelimitedTextTransformer(".", schema, false, '"', '"')
+                          .transform(record).toString());
+    // a quote character that appears in booleans
+    Assert.assertEquals("-3,1.5,etru\\ee",
+                        new StructuredToDelimitedTextTransformer(",", schema, false, 'e', '\\')
+                          .transform(record).toString());
+  }
+
+  private static String transform(StructuredToTextTransformer transformer, int id, String name,
+                                  String comment) throws Exception {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("id", id)
+      .set("name", name)
+      .set("comment", comment)
+      .build();
+    return transformer.transform(record).toString();
+  }
+}
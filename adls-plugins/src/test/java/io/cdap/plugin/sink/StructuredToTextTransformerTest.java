@@ -20,6 +20,7 @@ import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.format.UnexpectedFormatException;
 import io.cdap.cdap.api.data.schema.Schema;
 import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.io.Text;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -102,6 +103,54 @@ public class StructuredToTextTransformerTest {
     Assert.assertEquals(NULL_RECORD_STRING, transformer.transform(NULL_RECORD).toString());
   }
 
+  @Test
+  public void testEncoding() throws Exception {
+    Schema schema = Schema.recordOf("encoding",
+                                    Schema.Field.of("int_field", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("long_field", Schema.of(Schema.Type.LONG)),
+                                    Schema.Field.of("float_field", Schema.of(Schema.Type.FLOAT)),
+                                    Schema.Field.of("double_field", Schema.of(Schema.Type.DOUBLE)),
+                                    Schema.Field.of("string_field", Schema.of(Schema.Type.STRING)));
+    StructuredToTextTransformer transformer = new StructuredToTextTransformer("|", schema);
+    int[] ints = {0, -1, 7, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    long[] longs = {0L, -10L, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+    float[] floats = {0f, -0f, 1.5f, -3f, 1.0E7f, 1234567f, Float.NaN, Float.NEGATIVE_INFINITY, 0.001f};
+    double[] doubles = {0d, -0d, 0.1d, -2d, 9999999d, 1.0E7d, 1.0E-4d, Double.NaN, Double.MAX_VALUE, Math.PI};
+    String[] strings = {"", "ascii", "\u00e9t\u00e9", "\u20ac", "\ud83d\ude00", "\ud83d", "a\ude00b"};
+    for (int i = 0; i < doubles.length; i++) {
+      StructuredRecord record = StructuredRecord.builder(schema)
+        .set("int_field", ints[i % ints.length])
+        .set("long_field", longs[i % longs.length])
+        .set("float_field", floats[i % floats.length])
+        .set("double_field", doubles[i])
+        .set("string_field", strings[i % strings.length])
+        .build();
+      String expected = String.join("|", Integer.toString(ints[i % ints.length]),
+                                    Long.toString(longs[i % longs.length]),
+                                    Float.toString(floats[i % floats.length]), Double.toString(doubles[i]),
+                                    strings[i % strings.length]);
+      Assert.assertEquals(new Text(expected), transformer.transform(record));
+    }
+  }
+
+  @Test
+  public void testReuseText() throws Exception {
+    StructuredToTextTransformer transformer = new StructuredToTextTransformer("\t", VALID_SCHEMA, true);
+    Text text = transformer.transform(NONNULL_RECORD);
+    Assert.assertEquals(NONNULL_RECORD_STRING, text.toString());
+    Assert.assertSame(text, transformer.transform(NULL_RECORD));
+    Assert.assertEquals(NULL_RECORD_STRING, text.toString());
+  }
+
+  @Test
+  public void testTextIsNotReusedByDefault() throws Exception {
+    StructuredToTextTransformer transformer = new StructuredToTextTransformer("\t", VALID_SCHEMA);
+    // values emitted by the sink may be buffered, so earlier ones must not change when later records are transformed
+    Text text = transformer.transform(NONNULL_RECORD);
+    Assert.assertNotSame(text, transformer.transform(NULL_RECORD));
+    Assert.assertEquals(NONNULL_RECORD_STRING, text.toString());
+  }
+
   private static void assertInvalidOutputSchema(StructuredToTextTransformer transformer, StructuredRecord record)
     throws IOException {
     try {
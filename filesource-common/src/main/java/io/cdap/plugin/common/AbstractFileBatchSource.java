@@ -26,10 +26,9 @@ import io.cdap.cdap.api.dataset.lib.KeyValueTable;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.StageConfigurer;
+import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.common.batch.JobUtils;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.apache.hadoop.conf.Configuration;
@@ -61,9 +60,18 @@ public abstract class AbstractFileBatchSource<T extends FileSourceConfig>
   extends ReferenceBatchSource<Object, Object, StructuredRecord> {
   public static final String INPUT_NAME_CONFIG = "input.path.name";
   public static final String INPUT_REGEX_CONFIG = "input.path.regex";
+  // the list of dates kept by previous versions, only read to convert it to a watermark
   public static final String LAST_TIME_READ = "last.time.read";
+  public static final String READ_WATERMARK = "read.watermark";
+  public static final String READ_CUTOFF = "read.cutoff";
+  public static final String INCREMENTAL_CONFIG = "input.incremental";
+  public static final String TIMESTAMP_PATTERN_CONFIG = "input.timestamp.pattern";
+  public static final String TIMESTAMP_REGEX_CONFIG = "input.timestamp.regex";
   public static final String CUTOFF_READ_TIME = "cutoff.read.time";
   public static final String USE_TIMEFILTER = "timefilter";
+  private static final String INPUT_FILES_METRIC = "input.files";
+  private static final String INPUT_BYTES_METRIC = "input.bytes";
+  private static final String SPLIT_SIZE_METRIC = "input.split.size";
   public static final Schema DEFAULT_SCHEMA = Schema.recordOf(
     "event",
     Schema.Field.of("offset", Schema.of(Schema.Type.LONG)),
@@ -77,9 +85,11 @@ public abstract class AbstractFileBatchSource<T extends FileSourceConfig>
   private final T config;
   private KeyValueTable table;
   private Date prevHour;
-  private String datesToRead;
+  private ReadWatermark readWatermark;
+  private long readCutoff;
   private Path path;
   private FileSystem fs;
+  private ListingIndex listingIndex;
 
   public AbstractFileBatchSource(T config) {
     super(config);
@@ -91,10 +101,11 @@ public abstract class AbstractFileBatchSource<T extends FileSourceConfig>
     super.configurePipeline(pipelineConfigurer);
     StageConfigurer stageConfigurer = pipelineConfigurer.getStageConfigurer();
     config.validate(stageConfigurer.getFailureCollector());
+    stageConfigurer.getFailureCollector().getOrThrowException();
     if (!config.containsMacro("timeTable") && config.timeTable != null) {
       pipelineConfigurer.createDataset(config.timeTable, KeyValueTable.class, DatasetProperties.EMPTY);
     }
-    stageConfigurer.setOutputSchema(DEFAULT_SCHEMA);
+    stageConfigurer.setOutputSchema(getOutputSchema());
   }
 
   @Override
@@ -125,25 +136,45 @@ public abstract class AbstractFileBatchSource<T extends FileSourceConfig>
     }
 
     conf.set(INPUT_REGEX_CONFIG, config.fileRegex);
+    if (config.timestampPattern != null) {
+      conf.set(TIMESTAMP_PATTERN_CONFIG, config.timestampPattern);
+    }
+    if (config.timestampRegex != null) {
+      conf.set(TIMESTAMP_REGEX_CONFIG, config.timestampRegex);
+    }
 
     if (config.timeTable != null) {
       table = context.getDataset(config.timeTable);
-      datesToRead = Bytes.toString(table.read(LAST_TIME_READ));
-      if (datesToRead == null) {
-        List<Date> firstRun = Lists.newArrayList(new Date(0));
-        datesToRead = GSON.toJson(firstRun, ARRAYLIST_DATE_TYPE);
+      String lastRead = Bytes.toString(table.read(READ_WATERMARK));
+      if (lastRead != null) {
+        readWatermark = ReadWatermark.fromJson(lastRead);
+      } else {
+        String lastTimeRead = Bytes.toString(table.read(LAST_TIME_READ));
+        readWatermark = lastTimeRead == null ? new ReadWatermark(0L) :
+          ReadWatermark.fromDates(GSON.<List<Date>>fromJson(lastTimeRead, ARRAYLIST_DATE_TYPE));
+        if (lastTimeRead != null) {
+          table.delete(LAST_TIME_READ);
+        }
       }
-      List<Date> attempted = Lists.newArrayList(prevHour);
-      String updatedDatesToRead = GSON.toJson(attempted, ARRAYLIST_DATE_TYPE);
-      if (!updatedDatesToRead.equals(datesToRead)) {
-        table.write(LAST_TIME_READ, updatedDatesToRead);
+      // files are read by modification time up to the start of the run, or by the date in their name up to the hour
+      readCutoff = config.isIncremental() ? context.getLogicalStartTime() : prevHour.getTime();
+      String attempted = new ReadWatermark(readCutoff).toJson();
+      if (!attempted.equals(lastRead)) {
+        table.write(READ_WATERMARK, attempted);
       }
-      conf.set(LAST_TIME_READ, datesToRead);
+      conf.set(READ_WATERMARK, readWatermark.toJson());
+      conf.setLong(READ_CUTOFF, readCutoff);
+      conf.setBoolean(INCREMENTAL_CONFIG, config.isIncremental());
+      LOG.debug("Reading files from watermark {} with {} pending intervals up to {}.",
+                new Object[] {readWatermark.getWatermark(), readWatermark.getIntervals(), readCutoff});
     }
 
     conf.set(CUTOFF_READ_TIME, dateFormat.format(prevHour));
     FileInputFormat.setInputPathFilter(job, BatchFileFilter.class);
     FileInputFormat.setInputDirRecursive(job, config.recursive);
+    if (config.listingThreads != null) {
+      conf.setInt(FileInputFormat.LIST_STATUS_NUM_THREADS, config.listingThreads);
+    }
 
     FileSystem pathFileSystem = FileSystem.get(new Path(config.getPath()).toUri(), conf);
     FileStatus[] fileStatus = pathFileSystem.globStatus(new Path(config.getPath()));
@@ -171,19 +202,123 @@ public abstract class AbstractFileBatchSource<T extends FileSourceConfig>
               "To treat absence of input path as warning set Ignore Non existing folder property to true",
           config.getPath()));
       throw new RuntimeException(String.format("Input path %s does not exist", config.getPath()));
+    } else if (!setInputPaths(job, pathFileSystem, fileStatus)) {
+      LOG.info("No new files found in input path {}, the pipeline will not read any data.", config.getPath());
+      context.setInput(Input.of(config.referenceName,
+          new SourceInputFormatProvider(EmptyInputFormat.class.getName(), conf)));
     } else {
-      conf.set(INPUT_NAME_CONFIG, new Path(config.getPath()).toString());
-      FileInputFormat.addInputPath(job, new Path(config.getPath()));
-      if (config.maxSplitSize != null) {
-        FileInputFormat.setMaxInputSplitSize(job, config.maxSplitSize);
+      Long maxSplitSize = config.maxSplitSize;
+      if (config.targetSplits != null) {
+        maxSplitSize = chooseSplitSize(job, context);
+      }
+      if (maxSplitSize != null) {
+        FileInputFormat.setMaxInputSplitSize(job, maxSplitSize);
       }
       if (CombinePathTrackingInputFormat.class.getName().equals(config.inputFormatClass)) {
         PathTrackingInputFormat.configure(conf, config.pathField, config.filenameOnly);
+        if (config.getReadAheadBlocks() > 0 || config.getPrefetchFiles() > 0) {
+          // prefetched files are read ahead by at least a block
+          PathTrackingInputFormat.configureReadAhead(conf, Math.max(1, config.getReadAheadBlocks()),
+                                                     config.getReadAheadBlockSize());
+        }
+        if (config.getPrefetchFiles() > 0) {
+          CombinePathTrackingInputFormat.configurePrefetch(conf, config.getPrefetchFiles());
+        }
+        if (config.isBalancedSplits()) {
+          CombinePathTrackingInputFormat.configureBalanced(conf, config.getMinSplits());
+        }
+        if (config.isDelimited()) {
+          boolean quoted = config.isQuoteFields();
+          PathTrackingInputFormat.configureDelimited(conf, config.getSchema(), config.getFieldDelimiter(),
+                                                     quoted ? config.getQuoteCharacter() : null,
+                                                     quoted ? config.getEscapeCharacter() : null,
+                                                     config.isSkipHeader());
+        } else if (!config.isText()) {
+          PathTrackingInputFormat.configureFormat(conf, config.getFormat(), config.getSchema());
+        }
       }
       context.setInput(Input.of(config.referenceName, new SourceInputFormatProvider(config.inputFormatClass, conf)));
     }
   }
 
+  /**
+   * Lists the input files to choose the split size for the target number of splits, and records the size of the
+   * input in the metrics of the stage.
+   */
+  private long chooseSplitSize(Job job, BatchSourceContext context) throws IOException {
+    long start = System.currentTimeMillis();
+    long totalBytes = 0;
+    int fileCount = 0;
+    for (FileStatus file : BatchFileFilter.listStatus(job)) {
+      if (file.isFile()) {
+        totalBytes += file.getLen();
+        fileCount++;
+      }
+    }
+    long maxSplitSize = config.maxSplitSize == null ? FileSourceConfig.DEFAULT_MAX_SPLIT_SIZE : config.maxSplitSize;
+    long splitSize = getSplitSize(totalBytes, config.targetSplits, config.getMinSplitSize(), maxSplitSize);
+    LOG.info("Found {} input files of {} bytes in {} ms, reading them with {} byte splits for {} target splits.",
+             new Object[] {fileCount, totalBytes, System.currentTimeMillis() - start, splitSize, config.targetSplits});
+    StageMetrics metrics = context.getMetrics();
+    metrics.gauge(INPUT_FILES_METRIC, fileCount);
+    metrics.gauge(INPUT_BYTES_METRIC, totalBytes);
+    metrics.gauge(SPLIT_SIZE_METRIC, splitSize);
+    return splitSize;
+  }
+
+  /**
+   * Returns the split size that reads the given number of bytes with the target number of splits, bounded by the
+   * minimum and maximum split size.
+   */
+  static long getSplitSize(long totalBytes, int targetSplits, long minSplitSize, long maxSplitSize) {
+    long splitSize = (totalBytes + targetSplits - 1) / targetSplits;
+    return Math.min(maxSplitSize, Math.max(minSplitSize, splitSize));
+  }
+
+  private Schema getOutputSchema() {
+    if (config.isText()) {
+      return DEFAULT_SCHEMA;
+    }
+    Schema schema = config.getSchema();
+    return schema == null ? null : PathTrackingInputFormat.getOutputSchema(schema, config.pathField);
+  }
+
+  /**
+   * Sets the paths to read. Without the listing index the input path is read, otherwise only the paths that were
+   * added since the last successful run are read.
+   *
+   * @return false if there is nothing to read
+   */
+  private boolean setInputPaths(Job job, FileSystem pathFileSystem, FileStatus[] fileStatus) throws IOException {
+    Configuration conf = job.getConfiguration();
+    conf.set(INPUT_NAME_CONFIG, new Path(config.getPath()).toString());
+    boolean indexed = config.isListingIndexed() && table != null;
+    if (indexed && !ListingIndex.isSupported(config.getPath())) {
+      // the path was a macro when the config was validated
+      LOG.warn("Listing index is not used for '{}', since its directories do not change their modification time " +
+                 "when files are added to them.", config.getPath());
+      indexed = false;
+    }
+    if (!indexed) {
+      FileInputFormat.addInputPath(job, new Path(config.getPath()));
+      return true;
+    }
+
+    long start = System.currentTimeMillis();
+    BatchFileFilter filter = new BatchFileFilter();
+    filter.setConf(conf);
+    listingIndex = new ListingIndex(table, config.fileRegex);
+    List<Path> paths = listingIndex.findNewPaths(pathFileSystem, fileStatus, filter, config.recursive);
+    LOG.info("Listing index checked {} unchanged directories, listed {} directories and found {} new paths in {} ms.",
+             new Object[] {listingIndex.getChecked(), listingIndex.getListed(), paths.size(),
+               System.currentTimeMillis() - start});
+    if (paths.isEmpty()) {
+      return false;
+    }
+    FileInputFormat.setInputPaths(job, paths.toArray(new Path[paths.size()]));
+    return true;
+  }
+
   @Override
   public void transform(KeyValue<Object, Object> input, Emitter<StructuredRecord> emitter) throws Exception {
     // this io.cdap.plugin.source should never have (among other things) allowed specifying a custom input format class.
@@ -201,16 +336,14 @@ public abstract class AbstractFileBatchSource<T extends FileSourceConfig>
 
   @Override
   public void onRunFinish(boolean succeeded, BatchSourceContext context) {
-    if (!succeeded && table != null && USE_TIMEFILTER.equals(config.fileRegex)) {
-      String lastTimeRead = Bytes.toString(table.read(LAST_TIME_READ));
-      List<Date> existing = ImmutableList.of();
-      if (lastTimeRead != null) {
-        existing = GSON.fromJson(lastTimeRead, ARRAYLIST_DATE_TYPE);
-      }
-      List<Date> failed = GSON.fromJson(datesToRead, ARRAYLIST_DATE_TYPE);
-      failed.add(prevHour);
-      failed.addAll(existing);
-      table.write(LAST_TIME_READ, GSON.toJson(failed, ARRAYLIST_DATE_TYPE));
+    if (!succeeded && table != null && (USE_TIMEFILTER.equals(config.fileRegex) || config.isIncremental())) {
+      String lastRead = Bytes.toString(table.read(READ_WATERMARK));
+      ReadWatermark existing = lastRead == null ? new ReadWatermark(readCutoff) : ReadWatermark.fromJson(lastRead);
+      existing.addFailed(readWatermark, readCutoff);
+      table.write(READ_WATERMARK, existing.toJson());
+    }
+    if (succeeded && listingIndex != null) {
+      listingIndex.commit();
     }
     try {
       if (path != null && fs.exists(path.getParent())) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.mapred.FsInput;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads Avro data files into records of the output schema.
+ *
+ * The writer schema of every file is projected to the fields of the output schema, with the types they have in the
+ * file, so Avro skips the other fields instead of decoding them. Like other Avro readers, a split reads the blocks
+ * that start after the first sync marker in it.
+ */
+final class AvroStructuredRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+  private final RecordColumns columns;
+  private final String path;
+  private final Object[] values;
+
+  private DataFileReader<GenericRecord> reader;
+  private long start;
+  private long end;
+  // the position of every column in the projected schema, or -1 if the file does not have it
+  private int[] positions;
+  private GenericRecord record;
+  private StructuredRecord value;
+
+  AvroStructuredRecordReader(io.cdap.cdap.api.data.schema.Schema schema, String pathField, String path) {
+    this.columns = new RecordColumns(schema, pathField);
+    this.path = path;
+    this.values = new Object[columns.size()];
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    FileSplit fileSplit = (FileSplit) split;
+    GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>();
+    reader = new DataFileReader<>(new FsInput(fileSplit.getPath(), context.getConfiguration()), datumReader);
+    Schema projection = project(reader.getSchema());
+    datumReader.setExpected(projection);
+
+    positions = new int[columns.size()];
+    for (int i = 0; i < positions.length; i++) {
+      Schema.Field field = projection.getField(columns.getName(i));
+      positions[i] = field == null ? -1 : field.pos();
+    }
+    reader.sync(fileSplit.getStart());
+    start = reader.previousSync();
+    end = fileSplit.getStart() + fileSplit.getLength();
+  }
+
+  private Schema project(Schema writerSchema) {
+    if (writerSchema.getType() != Schema.Type.RECORD) {
+      throw new IllegalArgumentException(String.format("Schema of Avro file %s is not a record.", path));
+    }
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : writerSchema.getFields()) {
+      if (columns.indexOf(field.name()) >= 0) {
+        fields.add(new Schema.Field(field.name(), field.schema(), field.doc(), field.defaultValue()));
+      }
+    }
+    Schema projection = Schema.createRecord(writerSchema.getName(), writerSchema.getDoc(),
+                                            writerSchema.getNamespace(), writerSchema.isError());
+    projection.setFields(fields);
+    return projection;
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    value = null;
+    if (!reader.hasNext() || reader.pastSync(end)) {
+      return false;
+    }
+    // the record is converted before the next one is read, so it can be reused
+    record = reader.next(record);
+    Arrays.fill(values, null);
+    for (int i = 0; i < positions.length; i++) {
+      Object fieldValue = positions[i] < 0 ? null : record.get(positions[i]);
+      if (fieldValue != null) {
+        values[i] = columns.convert(i, fieldValue);
+      }
+    }
+    value = columns.build(values, path);
+    return true;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() throws IOException {
+    if (end == start) {
+      return 0.0f;
+    }
+    return Math.min(1.0f, (reader.tell() - start) / (float) (end - start));
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+}
@@ -16,110 +16,353 @@
 
 package io.cdap.plugin.common;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.InvalidInputException;
+import org.apache.hadoop.mapreduce.security.TokenCache;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.InterruptedIOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * Filter class to filter out filenames in the input path.
  *
- * The stateful time filter works as follows. A list of times are kept in the table in FileBatchSource. The list always
- * denotes ranges of times where files have not been read in yet. The list is read in prepareRun and then converted to
- * a string and passed in as dateRangesToRead, which is described below. The files are assumed to succeed so that files
- * will not be read in multiple times. Thus, a singleton element is written into the table as the list denoting that
- * the only files that haven't been read in are after that element. If the read fails, then dateRangesToRead with
- * prevHour appended to the end is inserted to the beginning of whatever the list is now in the table. This is done
- * because these were exactly the time ranges that we wanted to read from (which failed, so we should reinsert them
- * to try again). If the read succeeds then we don't do anything since we assumed that the read would succeed
- * initially.
+ * The stateful time filter works as follows. A {@link ReadWatermark} is kept in the table in FileBatchSource. Files
+ * with a time at or after its watermark, or in one of its pending intervals, have not been read in yet. The state is
+ * read in prepareRun and passed in to the filter, which reads the files with a time in those intervals or between the
+ * watermark and the cutoff of the run. The files are assumed to succeed so that files will not be read in multiple
+ * times. Thus, the cutoff is written into the table as the new watermark, without pending intervals. If the read
+ * fails, then the intervals the run was to read are added to the pending intervals of whatever state is now in the
+ * table. If the read succeeds then we don't do anything since we assumed that the read would succeed initially.
+ *
+ * The time of a file is the date in its name when the time filter is used, and its modification time in incremental
+ * mode.
  */
 public class BatchFileFilter extends Configured implements PathFilter {
 
   private static final Logger LOG = LoggerFactory.getLogger(BatchFileFilter.class);
-  private static final Gson GSON = new Gson();
-  private static final Type ARRAYLIST_DATE_TYPE  = new TypeToken<ArrayList<Date>>() { }.getType();
+  // the same filter FileInputFormat applies to skip files like _SUCCESS and .crc files
+  static final PathFilter HIDDEN_FILE_FILTER = new PathFilter() {
+    @Override
+    public boolean accept(Path path) {
+      String name = path.getName();
+      return !name.startsWith("_") && !name.startsWith(".");
+    }
+  };
   private static final String DATE_FORMAT = "yyyy-MM-dd-HH";
-  private static final int DATE_LENGTH = DATE_FORMAT.length();
-  private final SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
   private boolean useTimeFilter;
   private Pattern regex;
   private String pathName;
-  private String lastRead;
+  private String inputPath;
+  private boolean recursive;
+  private boolean incremental;
   private Date prevHour;
+  private long readCutoff;
   private Pattern pattern;
-
-  /*
-   * dateRangesToRead is an odd length List of Dates. The non terminal elements are tuples of Dates that
-   * denote ranges of time that are acceptable for the file to have been created during. The start times are inclusive
-   * and the end times are exclusive. The range of time between the terminal element and prevHour is the final
-   * acceptable range for the file to have been created during.
-   */
-  private List<Date> dateRangesToRead;
+  // null if the time filter is not stateful
+  private ReadWatermark readWatermark;
+  private String currentTime;
+  private TimestampParser timestampParser;
+  // null to parse the timestamp at the start of the file name or after its first dot
+  private Pattern timestampRegex;
+  private boolean customTimestamp;
 
   @Override
   public boolean accept(Path path) {
-    String filePathName = path.toString();
+    FileStatus status;
     try {
-      FileSystem fileSystem = path.getFileSystem(getConf());
-      FileStatus[] fileStatus = fileSystem.globStatus(path);
-      if (fileSystem.isDirectory(path) && !filePathName.endsWith("/")) {
-        filePathName += "/";
-      }
-      if (fileStatus != null && fileSystem.isDirectory(path) &&
-        (fileSystem.getContentSummary(path).getDirectoryCount() > 1 || useTimeFilter ||
-          pattern.matcher(filePathName).find())) {
-        return true;
-      }
+      status = path.getFileSystem(getConf()).getFileStatus(path);
+    } catch (FileNotFoundException e) {
+      // match the name of a path that does not exist as if it is a file
+      status = new FileStatus(0, false, 0, 0, 0, path);
     } catch (IOException e) {
       throw new IllegalArgumentException(String.format("Input path %s does not exists. %s.", path.toString(),
                                                        e.getMessage()), e);
     }
+    return accept(status);
+  }
+
+  /**
+   * Decides whether to read the given path, using only the status that listing returned for it.
+   *
+   * Directories are accepted if the files in them are read recursively, if they are the input path, if the time
+   * filter is used or if they match the directory part of the regex. Files are matched against the regex or the
+   * time filter.
+   */
+  public boolean accept(FileStatus status) {
+    Path path = status.getPath();
+    String filePathName = path.toString();
+    if (status.isDirectory()) {
+      if (!filePathName.endsWith("/")) {
+        filePathName += "/";
+      }
+      if (useTimeFilter && timestampRegex == null && timestampParser.spansDirectories()) {
+        // skip the whole subtree of a date directory that has no time to read
+        long[] range = timestampParser.parseRange(getRelativePath(path));
+        if (range != null && !isAnyToRead(range[0], range[1])) {
+          return false;
+        }
+      }
+      return recursive || useTimeFilter || path.toUri().getPath().equals(inputPath) ||
+        pattern.matcher(filePathName).find();
+    }
 
     //filter by file name using regex from configuration
     if (!useTimeFilter) {
       Matcher matcher = regex.matcher(filePathName);
-      return matcher.matches();
+      return matcher.matches() && (!incremental || readWatermark.isToRead(status.getModificationTime(), readCutoff));
     }
 
     //use hourly time filter
-    if (lastRead.equals("-1")) {
-      String currentTime = sdf.format(prevHour);
+    if (readWatermark == null && !customTimestamp) {
       return filePathName.contains(currentTime);
     }
 
+    long timestamp = getTimestamp(path);
+    if (timestamp == TimestampParser.NO_TIMESTAMP) {
+      // logged at debug level, since the input path may contain many files without timestamps
+      LOG.debug("Couldn't parse file: {}", path.getName());
+      return false;
+    }
+    if (readWatermark == null) {
+      return timestamp >= prevHour.getTime() && timestamp < prevHour.getTime() + TimeUnit.HOURS.toMillis(1);
+    }
     //use stateful time filter
-    Date fileDate;
+    return readWatermark.isToRead(timestamp, prevHour.getTime());
+  }
+
+  /**
+   * Returns the timestamp of the given file, or {@link TimestampParser#NO_TIMESTAMP} if it has none.
+   *
+   * The timestamp is matched by the timestamp regex in the path of the file relative to the input path. Without a
+   * regex, it is at the start of the relative path if the timestamp spans directories, or else at the start of the
+   * file name or just after its first dot, like in the names of CloudFront logs.
+   */
+  private long getTimestamp(Path path) {
+    if (timestampRegex != null) {
+      String relativePath = getRelativePath(path);
+      Matcher matcher = timestampRegex.matcher(relativePath);
+      if (!matcher.find()) {
+        return TimestampParser.NO_TIMESTAMP;
+      }
+      int group = matcher.groupCount() > 0 ? 1 : 0;
+      return timestampParser.parse(relativePath, matcher.start(group), matcher.end(group));
+    }
+    if (timestampParser.spansDirectories()) {
+      String relativePath = getRelativePath(path);
+      return timestampParser.parse(relativePath, 0, relativePath.length());
+    }
     String filename = path.getName();
+    long timestamp = timestampParser.parse(filename, 0, filename.length());
+    int dot = filename.indexOf('.');
+    if (timestamp == TimestampParser.NO_TIMESTAMP && dot >= 0) {
+      timestamp = timestampParser.parse(filename, dot + 1, filename.length());
+    }
+    return timestamp;
+  }
+
+  /**
+   * Returns the path relative to the input path, or the name of the path if it is not below the input path.
+   */
+  private String getRelativePath(Path path) {
+    String pathString = path.toUri().getPath();
+    String prefix = inputPath.endsWith("/") ? inputPath : inputPath + "/";
+    return pathString.startsWith(prefix) ? pathString.substring(prefix.length()) : path.getName();
+  }
+
+  private boolean isAnyToRead(long start, long end) {
+    if (readWatermark == null) {
+      return start < prevHour.getTime() + TimeUnit.HOURS.toMillis(1) && end > prevHour.getTime();
+    }
+    return readWatermark.isAnyToRead(start, end, prevHour.getTime());
+  }
+
+  /**
+   * Returns whether files are filtered by time, so that a file rejected now may be accepted later.
+   */
+  boolean isTimeFiltered() {
+    return useTimeFilter || incremental;
+  }
+
+  /**
+   * Lists the input files of the given job like {@link FileInputFormat#listStatus(JobContext)} does, but filters them
+   * with {@link #accept(FileStatus)}, so no remote calls are made for the listed paths.
+   *
+   * @return the input files, or null if the job does not filter its input with a {@link BatchFileFilter}
+   */
+  @Nullable
+  public static List<FileStatus> listStatus(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    if (conf.getClass(FileInputFormat.PATHFILTER_CLASS, null) != BatchFileFilter.class) {
+      return null;
+    }
+    long start = System.currentTimeMillis();
+    BatchFileFilter filter = ReflectionUtils.newInstance(BatchFileFilter.class, conf);
+    Path[] dirs = FileInputFormat.getInputPaths(job);
+    if (dirs.length == 0) {
+      throw new IOException("No input paths specified in job");
+    }
+    TokenCache.obtainTokensForNamenodes(job.getCredentials(), dirs, conf);
+
+    List<FileStatus> result = new ArrayList<>();
+    List<IOException> errors = new ArrayList<>();
+    Map<Path, FileSystem> inputDirs = new LinkedHashMap<>();
+    for (Path dir : dirs) {
+      FileSystem fs = dir.getFileSystem(conf);
+      FileStatus[] matches = fs.globStatus(dir, HIDDEN_FILE_FILTER);
+      if (matches == null) {
+        errors.add(new IOException("Input path does not exist: " + dir));
+      } else if (matches.length == 0) {
+        errors.add(new IOException("Input Pattern " + dir + " matches 0 files"));
+      } else {
+        for (FileStatus match : matches) {
+          // directories matching the input path are always listed, the files in them are matched by the filter
+          if (match.isDirectory()) {
+            inputDirs.put(match.getPath(), fs);
+          } else if (filter.accept(match)) {
+            result.add(match);
+          }
+        }
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new InvalidInputException(errors);
+    }
+
+    int threads = Math.max(1, conf.getInt(FileInputFormat.LIST_STATUS_NUM_THREADS,
+                                          FileInputFormat.DEFAULT_LIST_STATUS_NUM_THREADS));
+    int listed = 0;
+    if (threads == 1) {
+      for (Map.Entry<Path, FileSystem> entry : inputDirs.entrySet()) {
+        listed += addInputPath(entry.getValue(), entry.getKey(), filter, result);
+      }
+    } else {
+      listed = addInputPaths(inputDirs, filter, threads, result);
+    }
+    LOG.info("Listed {} directories with {} threads and found {} input files in {} ms.",
+             new Object[] {listed, threads, result.size(), System.currentTimeMillis() - start});
+    return result;
+  }
+
+  /**
+   * Adds the matching files in the given directory to the result.
+   *
+   * @return the number of directories listed
+   */
+  private static int addInputPath(FileSystem fs, Path dir, BatchFileFilter filter,
+                                  List<FileStatus> result) throws IOException {
+    int listed = 1;
+    for (LocatedFileStatus status : list(fs, dir, filter)) {
+      if (filter.recursive && status.isDirectory()) {
+        listed += addInputPath(fs, status.getPath(), filter, result);
+      } else {
+        result.add(status);
+      }
+    }
+    return listed;
+  }
+
+  /**
+   * Adds the matching files in the given directories to the result, listing directories on the given number of
+   * threads. Subdirectories are listed as soon as the listing of their parent returns them, so the threads are
+   * kept busy however the files are spread over the tree.
+   *
+   * @return the number of directories listed
+   */
+  private static int addInputPaths(Map<Path, FileSystem> dirs, BatchFileFilter filter, int threads,
+                                   List<FileStatus> result) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("input-listing-%d").setDaemon(true).build());
     try {
-      fileDate = sdf.parse(filename.substring(0, DATE_LENGTH));
-    } catch (Exception pe) {
-      //Try to parse cloudfront format
-      try {
-        int startIndex = filename.indexOf(".") + 1;
-        fileDate = sdf.parse(filename.substring(startIndex, startIndex + DATE_LENGTH));
-      } catch (Exception e) {
-        LOG.warn("Couldn't parse file: " + filename);
-        return false;
+      CompletionService<Listing> listings = new ExecutorCompletionService<>(executor);
+      int pending = 0;
+      for (Map.Entry<Path, FileSystem> entry : dirs.entrySet()) {
+        submitListing(listings, entry.getValue(), entry.getKey(), filter);
+        pending++;
+      }
+      int listed = 0;
+      while (pending > 0) {
+        Listing listing;
+        try {
+          listing = listings.take().get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while listing input paths");
+        } catch (ExecutionException e) {
+          Throwables.propagateIfPossible(e.getCause(), IOException.class);
+          throw new IOException("Failed to list input paths", e.getCause());
+        }
+        pending--;
+        listed++;
+        for (LocatedFileStatus status : listing.statuses) {
+          if (filter.recursive && status.isDirectory()) {
+            submitListing(listings, listing.fs, status.getPath(), filter);
+            pending++;
+          } else {
+            result.add(status);
+          }
+        }
       }
+      return listed;
+    } finally {
+      executor.shutdownNow();
     }
-    return isWithinRange(fileDate);
+  }
+
+  private static void submitListing(CompletionService<Listing> listings, final FileSystem fs, final Path dir,
+                                    final BatchFileFilter filter) {
+    listings.submit(new Callable<Listing>() {
+      @Override
+      public Listing call() throws IOException {
+        return new Listing(fs, list(fs, dir, filter));
+      }
+    });
+  }
+
+  /**
+   * Lists the given directory and returns the statuses that are not hidden and are accepted by the filter.
+   */
+  private static List<LocatedFileStatus> list(FileSystem fs, Path dir, BatchFileFilter filter) throws IOException {
+    List<LocatedFileStatus> statuses = new ArrayList<>();
+    RemoteIterator<LocatedFileStatus> iterator = fs.listLocatedStatus(dir);
+    while (iterator.hasNext()) {
+      LocatedFileStatus status = iterator.next();
+      if (HIDDEN_FILE_FILTER.accept(status.getPath()) && filter.accept(status)) {
+        statuses.add(status);
+      }
+    }
+    return statuses;
   }
 
   @Override
@@ -135,6 +378,8 @@ public class BatchFileFilter extends Configured implements PathFilter {
     if (pathName.endsWith("/")) {
       pathName = pathName.substring(0, pathName.length() - 1);
     }
+    inputPath = pathName.isEmpty() ? "/" : new Path(pathName).toUri().getPath();
+    recursive = conf.getBoolean(FileInputFormat.INPUT_DIR_RECURSIVE, false);
 
     String input = conf.get(AbstractFileBatchSource.INPUT_REGEX_CONFIG);
     if (input.equals(AbstractFileBatchSource.USE_TIMEFILTER)) {
@@ -147,36 +392,36 @@ public class BatchFileFilter extends Configured implements PathFilter {
       }
       regex = Pattern.compile(input);
     }
-    lastRead = conf.get(AbstractFileBatchSource.LAST_TIME_READ, "-1");
-
-    if (!lastRead.equals("-1")) {
-      dateRangesToRead = GSON.fromJson(lastRead, ARRAYLIST_DATE_TYPE);
-    }
+    String lastRead = conf.get(AbstractFileBatchSource.READ_WATERMARK);
+    readWatermark = lastRead == null ? null : ReadWatermark.fromJson(lastRead);
+    incremental = conf.getBoolean(AbstractFileBatchSource.INCREMENTAL_CONFIG, false) && readWatermark != null;
+    readCutoff = conf.getLong(AbstractFileBatchSource.READ_CUTOFF, Long.MAX_VALUE);
 
+    SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
     try {
-      prevHour = sdf.parse(conf.get(AbstractFileBatchSource.CUTOFF_READ_TIME));
+      prevHour = dateFormat.parse(conf.get(AbstractFileBatchSource.CUTOFF_READ_TIME));
     } catch (ParseException pe) {
       prevHour = new Date(System.currentTimeMillis());
     }
+    currentTime = dateFormat.format(prevHour);
+
+    String timestampPattern = conf.get(AbstractFileBatchSource.TIMESTAMP_PATTERN_CONFIG);
+    String timestampRegexString = conf.get(AbstractFileBatchSource.TIMESTAMP_REGEX_CONFIG);
+    timestampParser = TimestampParser.compile(timestampPattern == null ? DATE_FORMAT : timestampPattern);
+    timestampRegex = timestampRegexString == null ? null : Pattern.compile(timestampRegexString);
+    customTimestamp = timestampPattern != null || timestampRegex != null;
   }
 
   /**
-   * Determines if a file should be read in
-   *
-   * Iterates through the list dateRangesToRead and returns true if the filedate falls between one of the tuples, or
-   * if the filedate is between the terminal element and prevHour.
-   *
-   * @param fileDate when the file was created
-   * @return true if the file is to be read, false otherwise
+   * The matching statuses of a directory and the file system they are from.
    */
-  private boolean isWithinRange(Date fileDate) {
-    for (int i = 0; i < dateRangesToRead.size() / 2; i++) {
-      if (fileDate.compareTo(dateRangesToRead.get(2 * i)) >= 0 &&
-        fileDate.compareTo(dateRangesToRead.get(2 * i + 1)) < 0) {
-        return true;
-      }
+  private static final class Listing {
+    private final FileSystem fs;
+    private final List<LocatedFileStatus> statuses;
+
+    private Listing(FileSystem fs, List<LocatedFileStatus> statuses) {
+      this.fs = fs;
+      this.statuses = statuses;
     }
-    return fileDate.compareTo(dateRangesToRead.get(dateRangesToRead.size() - 1)) >= 0
-      && fileDate.compareTo(prevHour) < 0;
   }
 }
@@ -17,29 +17,203 @@
 package io.cdap.plugin.common;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReaderWrapper;
 import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * Similar to CombineTextInputFormat except it uses PathTrackingInputFormat to keep track of filepaths that
  * records were read from.
+ *
+ * By default files are grouped into splits by node and rack like CombineFileInputFormat does. Object stores have no
+ * data locality though, and the grouping then produces splits of very different sizes. If the input format is
+ * configured to balance splits, locality is ignored and files are packed into splits of about the same weight
+ * instead, where the weight of a compressed file is its size times the expected compression ratio.
+ *
+ * The files of a split are read one after the other. If the input format is configured to prefetch files, the next
+ * files of the split are read ahead while the current one is read.
  */
 public class CombinePathTrackingInputFormat extends CombineFileInputFormat<NullWritable, StructuredRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(CombinePathTrackingInputFormat.class);
+  private static final String BALANCED = "path.tracking.combine.balanced";
+  private static final String MIN_SPLITS = "path.tracking.combine.min.splits";
+  private static final String PREFETCH_FILES = "path.tracking.combine.prefetch.files";
+  // can be set through the file system properties, since the actual ratio is unknown until the file is read
+  private static final String COMPRESSION_RATIO = "path.tracking.combine.compression.ratio";
+  private static final float DEFAULT_COMPRESSION_RATIO = 4.0f;
+
+  /**
+   * Configure the input format to pack files into at least the given number of splits of about the same weight,
+   * ignoring locality. Splits are no heavier than the maximum split size, unless that would leave a file unsplit
+   * that cannot be split.
+   */
+  public static void configureBalanced(Configuration conf, int minSplits) {
+    conf.setBoolean(BALANCED, true);
+    conf.setInt(MIN_SPLITS, minSplits);
+  }
+
+  /**
+   * Configure the input format to read the given number of files of a split ahead of the file being read. Only files
+   * that are read ahead by {@link PathTrackingInputFormat} are prefetched, so reading ahead must be configured too.
+   */
+  public static void configurePrefetch(Configuration conf, int files) {
+    conf.setInt(PREFETCH_FILES, files);
+  }
+
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException {
+    long start = System.currentTimeMillis();
+    List<InputSplit> splits = job.getConfiguration().getBoolean(BALANCED, false) ?
+      getBalancedSplits(job) : super.getSplits(job);
+    LOG.info("Planned {} splits in {} ms.", splits.size(), System.currentTimeMillis() - start);
+    return splits;
+  }
+
+  /**
+   * Packs the files into splits by handing out the heaviest remaining block to the lightest split. Files that can be
+   * split are first cut into blocks of at most the weight of a split, so that a large file is spread over several
+   * splits.
+   */
+  private List<InputSplit> getBalancedSplits(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+    float compressionRatio = conf.getFloat(COMPRESSION_RATIO, DEFAULT_COMPRESSION_RATIO);
+    List<FileStatus> files = new ArrayList<>();
+    List<Float> ratios = new ArrayList<>();
+    double totalWeight = 0;
+    for (FileStatus file : listStatus(job)) {
+      if (file.isDirectory() || file.getLen() == 0) {
+        continue;
+      }
+      float ratio = codecs.getCodec(file.getPath()) == null ? 1.0f : compressionRatio;
+      files.add(file);
+      ratios.add(ratio);
+      totalWeight += file.getLen() * ratio;
+    }
+
+    long maxSplitSize = conf.getLong(FileInputFormat.SPLIT_MAXSIZE, 0);
+    long splitCount = Math.max(1, conf.getInt(MIN_SPLITS, 1));
+    if (maxSplitSize > 0) {
+      splitCount = Math.max(splitCount, (long) Math.ceil(totalWeight / maxSplitSize));
+    }
+    double splitWeight = totalWeight / splitCount;
+
+    List<Block> blocks = new ArrayList<>();
+    for (int i = 0; i < files.size(); i++) {
+      FileStatus file = files.get(i);
+      float ratio = ratios.get(i);
+      long count = isSplitable(job, file.getPath()) ? (long) Math.ceil(file.getLen() * ratio / splitWeight) : 1;
+      long blockLength = (file.getLen() + count - 1) / count;
+      for (long blockStart = 0; blockStart < file.getLen(); blockStart += blockLength) {
+        long length = Math.min(blockLength, file.getLen() - blockStart);
+        blocks.add(new Block(file.getPath(), blockStart, length, length * ratio));
+      }
+    }
+    blocks.sort(Comparator.comparingDouble((Block block) -> block.weight).reversed());
+
+    PriorityQueue<Bin> bins = new PriorityQueue<>(Comparator.comparingDouble((Bin bin) -> bin.weight));
+    for (int i = 0; i < Math.min(splitCount, blocks.size()); i++) {
+      bins.add(new Bin());
+    }
+    for (Block block : blocks) {
+      Bin bin = bins.poll();
+      bin.blocks.add(block);
+      bin.weight += block.weight;
+      bins.add(bin);
+    }
+
+    List<InputSplit> splits = new ArrayList<>();
+    double minWeight = Double.MAX_VALUE;
+    double maxWeight = 0;
+    for (Bin bin : bins) {
+      // blocks of the same file are read in order
+      bin.blocks.sort((first, second) -> first.path.equals(second.path) ?
+        Long.compare(first.start, second.start) : first.path.compareTo(second.path));
+      Path[] paths = new Path[bin.blocks.size()];
+      long[] starts = new long[paths.length];
+      long[] lengths = new long[paths.length];
+      for (int i = 0; i < paths.length; i++) {
+        Block block = bin.blocks.get(i);
+        paths[i] = block.path;
+        starts[i] = block.start;
+        lengths[i] = block.length;
+      }
+      splits.add(new CombineFileSplit(paths, starts, lengths, new String[0]));
+      minWeight = Math.min(minWeight, bin.weight);
+      maxWeight = Math.max(maxWeight, bin.weight);
+    }
+    if (!splits.isEmpty()) {
+      LOG.info("Packed {} files into {} balanced splits weighing {} to {} bytes.",
+               new Object[] {files.size(), splits.size(), (long) minWeight, (long) maxWeight});
+    }
+    return splits;
+  }
+
+  @Override
+  protected List<FileStatus> listStatus(JobContext job) throws IOException {
+    List<FileStatus> files = BatchFileFilter.listStatus(job);
+    return files == null ? super.listStatus(job) : files;
+  }
+
+  @Override
+  protected boolean isSplitable(JobContext context, Path file) {
+    return super.isSplitable(context, file) && PathTrackingInputFormat.canSplit(context.getConfiguration(), file);
+  }
 
   @Override
   public RecordReader<NullWritable, StructuredRecord> createRecordReader(InputSplit split, TaskAttemptContext context)
     throws IOException {
+    int prefetchFiles = context.getConfiguration().getInt(PREFETCH_FILES, 0);
+    if (prefetchFiles > 0) {
+      return new PrefetchingRecordReader(prefetchFiles);
+    }
     return new CombineFileRecordReader<>((CombineFileSplit) split, context, RecordReaderWrapper.class);
   }
 
+  /**
+   * A part of a file, weighted by the expected number of bytes read from it.
+   */
+  private static final class Block {
+    private final Path path;
+    private final long start;
+    private final long length;
+    private final double weight;
+
+    private Block(Path path, long start, long length, double weight) {
+      this.path = path;
+      this.start = start;
+      this.length = length;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * The blocks of a split being packed.
+   */
+  private static final class Bin {
+    private final List<Block> blocks = new ArrayList<>();
+    private double weight;
+  }
+
   /**
    * Required because CombineFileRecordReader expects a specific constructor signature.
    */
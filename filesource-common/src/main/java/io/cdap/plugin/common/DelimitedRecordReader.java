@@ -0,0 +1,478 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Reads delimited text, such as CSV, into records of a given schema.
+ *
+ * Records are split into fields at the byte level, and every field is converted to the type of its column straight
+ * from its bytes, so no string is created for the line or for fields that are not strings. Columns map to the fields
+ * of the schema in order, except for the path field. Fields may be quoted if a quote character is given, in which
+ * case they can contain the delimiter, the quote character and line breaks. Since a split cannot tell whether it
+ * starts inside a quoted field, files with quoted fields are never split. Neither are compressed files, unless the
+ * codec can be split, like bzip2. Records are then lines, which are read with a {@link LineRecordReader} so that
+ * splits start and end at the same compressed blocks as they do for text.
+ */
+final class DelimitedRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int NO_CHARACTER = -1;
+
+  private final RecordColumns columns;
+  private final String path;
+  private final byte[] delimiter;
+  private final int quote;
+  private final int escape;
+  private final boolean skipHeader;
+  private byte[] buffer;
+  private final Object[] values;
+
+  private FSDataInputStream fileIn;
+  private InputStream in;
+  private Decompressor decompressor;
+  // reads the lines of compressed splits, which then fill the buffer instead of the input
+  private LineRecordReader lines;
+  private long splitStart;
+  private long splitEnd;
+  // the position of the next byte to parse, relative to the start of the decompressed file
+  private long position;
+  private long end;
+  private int bufferPosition;
+  private int bufferLength;
+  // the bytes of the current record without quotes, and the end and whether it was quoted of every field
+  private byte[] record;
+  private int recordLength;
+  private int[] fieldEnds;
+  private boolean[] fieldQuoted;
+  private int fieldCount;
+  private long recordOffset;
+  private StructuredRecord value;
+
+  DelimitedRecordReader(Schema schema, @Nullable String pathField, String path, String delimiter,
+                        @Nullable Character quote, @Nullable Character escape, boolean skipHeader) {
+    if (delimiter.isEmpty()) {
+      throw new IllegalArgumentException("The field delimiter must not be empty.");
+    }
+    this.columns = new RecordColumns(schema, pathField);
+    this.path = path;
+    this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+    this.quote = quote == null ? NO_CHARACTER : toByte(quote);
+    this.escape = quote == null ? NO_CHARACTER : escape == null ? this.quote : toByte(escape);
+    this.skipHeader = skipHeader;
+    this.buffer = new byte[BUFFER_SIZE];
+    record = new byte[1024];
+    values = new Object[columns.size()];
+    fieldEnds = new int[Math.max(columns.size(), 1)];
+    fieldQuoted = new boolean[fieldEnds.length];
+  }
+
+  private static int toByte(char c) {
+    if (c > 127) {
+      throw new IllegalArgumentException(String.format("'%s' must be an ASCII character.", c));
+    }
+    return c;
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    FileSplit fileSplit = (FileSplit) split;
+    Configuration conf = context.getConfiguration();
+    Path file = fileSplit.getPath();
+    splitStart = fileSplit.getStart();
+    splitEnd = splitStart + fileSplit.getLength();
+    CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+    if (codec instanceof SplittableCompressionCodec && quote == NO_CHARACTER) {
+      // the line reader skips the line that starts before the split itself
+      lines = new LineRecordReader();
+      lines.initialize(split, context);
+      end = Long.MAX_VALUE;
+      if (splitStart == 0 && skipHeader) {
+        readRecord();
+      }
+      return;
+    }
+    fileIn = PathTrackingInputFormat.open(conf, fileSplit);
+    if (codec != null) {
+      // other compressed files are not split, so the split holds the whole file
+      decompressor = CodecPool.getDecompressor(codec);
+      in = codec.createInputStream(fileIn, decompressor);
+      end = Long.MAX_VALUE;
+    } else {
+      fileIn.seek(splitStart);
+      in = fileIn;
+      position = splitStart;
+      end = splitEnd;
+    }
+
+    if (position != 0) {
+      // the record that starts before the split is read by the previous split
+      skipLine();
+    } else if (skipHeader) {
+      readRecord();
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    value = null;
+    // like lines of text, a record belongs to the split it starts in
+    while (position <= end) {
+      recordOffset = position;
+      if (!readRecord()) {
+        return false;
+      }
+      if (lines != null) {
+        // like the offsets of compressed text, this is the position of the block of the line
+        recordOffset = lines.getCurrentKey().get();
+      }
+      if (fieldCount > 1 || recordLength > 0 || fieldQuoted[0]) {
+        value = toRecord();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() throws IOException {
+    if (lines != null) {
+      return lines.getProgress();
+    }
+    if (splitEnd == splitStart) {
+      return 0.0f;
+    }
+    return Math.min(1.0f, (fileIn.getPos() - splitStart) / (float) (splitEnd - splitStart));
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (in != null) {
+        in.close();
+      }
+      if (lines != null) {
+        lines.close();
+      }
+    } finally {
+      if (decompressor != null) {
+        CodecPool.returnDecompressor(decompressor);
+        decompressor = null;
+      }
+    }
+  }
+
+  /**
+   * Reads the next record into the record buffer.
+   *
+   * @return false if there are no more bytes to read
+   */
+  private boolean readRecord() throws IOException {
+    recordLength = 0;
+    fieldCount = 0;
+    int fieldStart = 0;
+    boolean quoted = false;
+    boolean inQuotes = false;
+    int b = read();
+    if (b < 0) {
+      return false;
+    }
+    while (true) {
+      if (inQuotes) {
+        if (b < 0) {
+          // an unterminated quote ends at the end of the file
+          break;
+        }
+        if (b == escape && escape != quote) {
+          int next = read();
+          if (next >= 0) {
+            append(next);
+          }
+        } else if (b == quote) {
+          if (escape == quote && peek() == quote) {
+            // a doubled quote is a quote character in the field
+            read();
+            append(quote);
+          } else {
+            inQuotes = false;
+          }
+        } else {
+          append(b);
+        }
+      } else if (b < 0 || b == '\n' || b == '\r') {
+        if (b == '\r' && peek() == '\n') {
+          read();
+        }
+        break;
+      } else if (b == quote && !quoted && recordLength == fieldStart) {
+        inQuotes = true;
+        quoted = true;
+      } else if (b == delimiter[0] && skipDelimiter()) {
+        endField(quoted);
+        fieldStart = recordLength;
+        quoted = false;
+      } else {
+        append(b);
+      }
+      b = read();
+    }
+    endField(quoted);
+    return true;
+  }
+
+  private void skipLine() throws IOException {
+    int b = read();
+    while (b >= 0 && b != '\n' && b != '\r') {
+      b = read();
+    }
+    if (b == '\r' && peek() == '\n') {
+      read();
+    }
+  }
+
+  /**
+   * Skips the rest of the delimiter, whose first byte was just read, if it follows.
+   *
+   * @return whether the delimiter followed
+   */
+  private boolean skipDelimiter() throws IOException {
+    if (delimiter.length == 1) {
+      return true;
+    }
+    if (bufferLength - bufferPosition < delimiter.length - 1 && !fill(delimiter.length - 1)) {
+      return false;
+    }
+    for (int i = 1; i < delimiter.length; i++) {
+      if (buffer[bufferPosition + i - 1] != delimiter[i]) {
+        return false;
+      }
+    }
+    bufferPosition += delimiter.length - 1;
+    position += delimiter.length - 1;
+    return true;
+  }
+
+  private int read() throws IOException {
+    if (bufferPosition == bufferLength && !fill(1)) {
+      return -1;
+    }
+    position++;
+    return buffer[bufferPosition++] & 0xff;
+  }
+
+  private int peek() throws IOException {
+    if (bufferPosition == bufferLength && !fill(1)) {
+      return -1;
+    }
+    return buffer[bufferPosition] & 0xff;
+  }
+
+  /**
+   * Reads from the input until the buffer holds the given number of unread bytes.
+   *
+   * @return false if the input ended before
+   */
+  private boolean fill(int count) throws IOException {
+    if (bufferPosition > 0) {
+      System.arraycopy(buffer, bufferPosition, buffer, 0, bufferLength - bufferPosition);
+      bufferLength -= bufferPosition;
+      bufferPosition = 0;
+    }
+    if (lines != null) {
+      return fillLines(count);
+    }
+    while (bufferLength < count) {
+      int read = in.read(buffer, bufferLength, buffer.length - bufferLength);
+      if (read < 0) {
+        return false;
+      }
+      bufferLength += read;
+    }
+    return true;
+  }
+
+  /**
+   * Appends whole lines, each followed by a line feed, to the buffer until it holds the given number of unread bytes.
+   *
+   * @return false if there are no more lines
+   */
+  private boolean fillLines(int count) throws IOException {
+    while (bufferLength < count) {
+      if (!lines.nextKeyValue()) {
+        return false;
+      }
+      Text line = lines.getCurrentValue();
+      if (bufferLength + line.getLength() + 1 > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferLength + line.getLength() + 1));
+      }
+      System.arraycopy(line.getBytes(), 0, buffer, bufferLength, line.getLength());
+      bufferLength += line.getLength();
+      buffer[bufferLength++] = '\n';
+    }
+    return true;
+  }
+
+  private void append(int b) {
+    if (recordLength == record.length) {
+      record = Arrays.copyOf(record, record.length * 2);
+    }
+    record[recordLength++] = (byte) b;
+  }
+
+  private void endField(boolean quoted) {
+    if (fieldCount == fieldEnds.length) {
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+      fieldQuoted = Arrays.copyOf(fieldQuoted, fieldQuoted.length * 2);
+    }
+    fieldEnds[fieldCount] = recordLength;
+    fieldQuoted[fieldCount] = quoted;
+    fieldCount++;
+  }
+
+  private StructuredRecord toRecord() {
+    for (int i = 0; i < columns.size(); i++) {
+      values[i] = i < fieldCount ? convert(i) : null;
+      if (values[i] == null && !columns.isNullable(i)) {
+        throw new IllegalArgumentException(String.format(
+          "Non-nullable field '%s' has no value in the record at offset %d of %s.", columns.getName(i), recordOffset,
+          path));
+      }
+    }
+    return columns.build(values, path);
+  }
+
+  @Nullable
+  private Object convert(int column) {
+    int start = column == 0 ? 0 : fieldEnds[column - 1];
+    int length = fieldEnds[column] - start;
+    Schema.Type type = columns.getType(column);
+    if (length == 0) {
+      // an empty field is null, unless it is a quoted or non-nullable string
+      return type == Schema.Type.STRING && (fieldQuoted[column] || !columns.isNullable(column)) ? "" : null;
+    }
+    switch (type) {
+      case STRING:
+        return new String(record, start, length, StandardCharsets.UTF_8);
+      case INT:
+        long intValue = parseLong(column, start, length);
+        if (intValue < Integer.MIN_VALUE || intValue > Integer.MAX_VALUE) {
+          throw invalidValue(column, start, length);
+        }
+        return (int) intValue;
+      case LONG:
+        return parseLong(column, start, length);
+      case FLOAT:
+        try {
+          return Float.parseFloat(new String(record, start, length, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+          throw invalidValue(column, start, length);
+        }
+      case DOUBLE:
+        try {
+          return Double.parseDouble(new String(record, start, length, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+          throw invalidValue(column, start, length);
+        }
+      case BOOLEAN:
+        if (equalsIgnoreCase(start, length, "true")) {
+          return true;
+        }
+        if (equalsIgnoreCase(start, length, "false")) {
+          return false;
+        }
+        throw invalidValue(column, start, length);
+      default:
+        return Arrays.copyOfRange(record, start, start + length);
+    }
+  }
+
+  private long parseLong(int column, int start, int length) {
+    int i = start;
+    boolean negative = record[i] == '-';
+    if (negative || record[i] == '+') {
+      i++;
+    }
+    if (i == start + length) {
+      throw invalidValue(column, start, length);
+    }
+    // accumulate the negative value, whose range includes the absolute value of Long.MIN_VALUE
+    long result = 0;
+    try {
+      for (; i < start + length; i++) {
+        int digit = record[i] - '0';
+        if (digit < 0 || digit > 9) {
+          throw invalidValue(column, start, length);
+        }
+        result = Math.subtractExact(Math.multiplyExact(result, 10), digit);
+      }
+      return negative ? result : Math.negateExact(result);
+    } catch (ArithmeticException e) {
+      throw invalidValue(column, start, length);
+    }
+  }
+
+  private boolean equalsIgnoreCase(int start, int length, String expected) {
+    if (length != expected.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (Character.toLowerCase((char) record[start + i]) != expected.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private IllegalArgumentException invalidValue(int column, int start, int length) {
+    return new IllegalArgumentException(String.format(
+      "Invalid %s value '%s' for field '%s' in the record at offset %d of %s.",
+      columns.getType(column).name().toLowerCase(), new String(record, start, length, StandardCharsets.UTF_8),
+      columns.getName(column), recordOffset, path));
+  }
+}
@@ -18,6 +18,7 @@ package io.cdap.plugin.common;
 
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
+import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.common.ReferencePluginConfig;
 import com.google.common.annotations.VisibleForTesting;
@@ -25,9 +26,12 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import javax.annotation.Nullable;
 
 /**
@@ -35,8 +39,35 @@ import javax.annotation.Nullable;
  */
 public abstract class FileSourceConfig extends ReferencePluginConfig {
   private static final String FILE_SYSTEM_PROPERTIES = "fileSystemProperties";
+  private static final String PATH = "path";
   private static final String PATH_FIELD = "pathField";
   private static final String INPUT_FORMAT_CLASS = "inputFormatClass";
+  private static final String LISTING_THREADS = "listingThreads";
+  private static final String BALANCED_SPLITS = "balancedSplits";
+  private static final String MIN_SPLITS = "minSplits";
+  private static final String TARGET_SPLITS = "targetSplits";
+  private static final String MIN_SPLIT_SIZE = "minSplitSize";
+  private static final String MAX_SPLIT_SIZE = "maxSplitSize";
+  private static final String READ_AHEAD_BLOCKS = "readAheadBlocks";
+  private static final String READ_AHEAD_BLOCK_SIZE = "readAheadBlockSize";
+  private static final String PREFETCH_FILES = "prefetchFiles";
+  private static final String LISTING_INDEX = "listingIndex";
+  private static final String TIME_TABLE = "timeTable";
+  private static final String INCREMENTAL = "incremental";
+  private static final String FILE_REGEX = "fileRegex";
+  private static final String TIMESTAMP_PATTERN = "timestampPattern";
+  private static final String TIMESTAMP_REGEX = "timestampRegex";
+  private static final String FORMAT = "format";
+  private static final String SCHEMA = "schema";
+  private static final String FIELD_DELIMITER = "fieldDelimiter";
+  private static final String QUOTE_FIELDS = "quoteFields";
+  private static final String QUOTE_CHARACTER = "quoteCharacter";
+  private static final String ESCAPE_CHARACTER = "escapeCharacter";
+  private static final String TEXT_FORMAT = "text";
+  private static final String DELIMITED_FORMAT = "delimited";
+  private static final String AVRO_FORMAT = "avro";
+  private static final String ORC_FORMAT = "orc";
+  private static final String PARQUET_FORMAT = "parquet";
 
   protected static final String MAX_SPLIT_SIZE_DESCRIPTION = "Maximum split-size for each mapper in the MapReduce " +
     "Job. Defaults to 128MB.";
@@ -60,6 +91,8 @@ public abstract class FileSourceConfig extends ReferencePluginConfig {
   private static final Type MAP_STRING_STRING_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   @VisibleForTesting
   static final long DEFAULT_MAX_SPLIT_SIZE = 134217728;
+  static final long DEFAULT_MIN_SPLIT_SIZE = 1048576;
+  static final int DEFAULT_READ_AHEAD_BLOCK_SIZE = 4194304;
 
   @Nullable
   @Description(FILESYSTEM_PROPERTIES_DESCRIPTION)
@@ -71,6 +104,21 @@ public abstract class FileSourceConfig extends ReferencePluginConfig {
   @Macro
   public String fileRegex;
 
+  @Nullable
+  @Description("Pattern of the timestamps the time filter reads from file names, made of the fields yyyy, MM, dd, " +
+    "HH, mm and ss. If the pattern contains a '/', such as yyyy/MM/dd/HH, the timestamp is read from the date " +
+    "directories below the path, and directories without times to read are skipped without listing them. " +
+    "Defaults to 'yyyy-MM-dd-HH'.")
+  @Macro
+  public String timestampPattern;
+
+  @Nullable
+  @Description("Regular expression that finds the timestamp in the path of a file relative to the path. The first " +
+    "group, or else the whole match, is parsed with the timestamp pattern. By default the timestamp is at the " +
+    "start of the file name or just after its first dot.")
+  @Macro
+  public String timestampRegex;
+
   @Nullable
   @Description(TABLE_DESCRIPTION)
   @Macro
@@ -86,6 +134,53 @@ public abstract class FileSourceConfig extends ReferencePluginConfig {
   @Macro
   public Long maxSplitSize;
 
+  @Nullable
+  @Description("Number of splits to read the input with. If set, the split size is the total size of the input " +
+    "files divided by this number, but no smaller than the minimum split size and no larger than the maximum split " +
+    "size. The input files are listed once more while preparing the run to find their total size.")
+  @Macro
+  public Integer targetSplits;
+
+  @Nullable
+  @Description("Smallest split size chosen for the target number of splits, so that small inputs are not spread " +
+    "over many tiny splits. Defaults to 1MB.")
+  @Macro
+  public Long minSplitSize;
+
+  @Nullable
+  @Description("Number of blocks of every file to read ahead of the records being parsed, in parallel, so that " +
+    "parsing does not wait for a round trip to the store whenever it runs out of bytes. Blocks in flight are limited " +
+    "to 64MB per task. Text and delimited files are read ahead, except for bzip2 files. Requires inputFormatClass to " +
+    "be CombinePathTrackingInputFormat. Defaults to 0, which does not read ahead.")
+  @Macro
+  public Integer readAheadBlocks;
+
+  @Nullable
+  @Description("Size in bytes of the blocks that are read ahead. Defaults to 4MB.")
+  @Macro
+  public Integer readAheadBlockSize;
+
+  @Nullable
+  @Description("Number of files of a combined split to start reading, in the background, while the file before them " +
+    "is read, so that the latency of opening many small files is not paid for each file in turn. The files being " +
+    "read share the memory for reading ahead. Text and delimited files are prefetched, except for bzip2 files. " +
+    "Requires inputFormatClass to be CombinePathTrackingInputFormat. Defaults to 0, which does not prefetch files.")
+  @Macro
+  public Integer prefetchFiles;
+
+  @Nullable
+  @Description("Whether to pack files into splits of about the same size, ignoring the locality of the files, which " +
+    "object stores do not have. Compressed files count as four times their size, since that much more data is read " +
+    "from them. Requires inputFormatClass to be CombinePathTrackingInputFormat. Default is false.")
+  @Macro
+  public Boolean balancedSplits;
+
+  @Nullable
+  @Description("Minimum number of balanced splits, so that small inputs are still read by several mappers. " +
+    "Defaults to 1.")
+  @Macro
+  public Integer minSplits;
+
   @Nullable
   @Description("Identify if path needs to be ignored or not, for case when directory or file does not exists. If " +
     "set to true it will treat the not present folder as zero input and log a warning. Default is false.")
@@ -95,6 +190,26 @@ public abstract class FileSourceConfig extends ReferencePluginConfig {
   @Description("Boolean value to determine if files are to be read recursively from the path. Default is false.")
   public Boolean recursive;
 
+  @Nullable
+  @Description("Number of threads used to list the input directories while planning splits. Subdirectories are " +
+    "listed in parallel, which speeds up planning of inputs with many directories. Defaults to 1.")
+  @Macro
+  public Integer listingThreads;
+
+  @Nullable
+  @Description("Whether to keep an index of the listed directories and the files read in the time table. Later " +
+    "runs only list the directories whose modification time changed and only read the files that were added to " +
+    "them. Requires the time table and a file system that updates the modification time of a directory when files " +
+    "are added to it. Default is false.")
+  public Boolean listingIndex;
+
+  @Nullable
+  @Description("Whether to only read the files that were modified since the last run. The modification time up to " +
+    "which files were read is kept in the time table, together with the times that failed runs were to read, so " +
+    "that those files are read again. Requires the time table and cannot be used with the time filter. " +
+    "Default is false.")
+  public Boolean incremental;
+
   @Nullable
   @Description("If specified, each output record will include a field with this name that contains the file URI " +
     "that the record was read from. Requires a customized version of CombineFileInputFormat, so it cannot be used " +
@@ -106,9 +221,48 @@ public abstract class FileSourceConfig extends ReferencePluginConfig {
     "URI will be used. Defaults to false.")
   public Boolean filenameOnly;
 
-  // TODO: remove once CDAP-11371 is fixed
-  // This is only here because the UI requires a property otherwise a default schema cannot be set.
   @Nullable
+  @Description("Format of the input files, which is 'text', 'delimited', 'avro', 'orc' or 'parquet'. Text files are " +
+    "read into records with the offset and the body of every line. Delimited files, such as CSV files, are read into " +
+    "records of the output schema, with the fields of every line converted to the types of the schema. Avro, ORC and " +
+    "Parquet files are read into records of the output schema by field name, and only the columns in the output " +
+    "schema are decoded. Defaults to 'text'.")
+  public String format;
+
+  @Nullable
+  @Description("Delimiter between the fields of delimited files. Defaults to ','.")
+  @Macro
+  public String fieldDelimiter;
+
+  @Nullable
+  @Description("Whether fields of delimited files may be quoted, as described in RFC 4180. Quoted fields may contain " +
+    "the delimiter, the quote character and line breaks. Files with quoted fields are not split. Defaults to false.")
+  @Macro
+  public Boolean quoteFields;
+
+  @Nullable
+  @Description("Character that quotes fields of delimited files when quoting is enabled. Defaults to '\"'.")
+  @Macro
+  public String quoteCharacter;
+
+  @Nullable
+  @Description("Character placed before quote characters inside quoted fields. Defaults to the quote character, " +
+    "which doubles quotes as described in RFC 4180.")
+  @Macro
+  public String escapeCharacter;
+
+  @Nullable
+  @Description("Whether to skip the first line of every delimited file, which holds the names of the fields. " +
+    "Defaults to false.")
+  @Macro
+  public Boolean skipHeader;
+
+  // For the text format this is only here because the UI requires a property otherwise a default schema cannot be
+  // set. TODO: remove the text format case once CDAP-11371 is fixed
+  @Nullable
+  @Description("Output schema. Required for all formats except text. The fields of every delimited line are read " +
+    "into the fields of the schema in order, while the columns of Avro, ORC and Parquet files are read into the " +
+    "fields of the same name. Fields must be of type string, int, long, float, double, boolean or bytes.")
   public String schema;
 
   public FileSourceConfig() {
@@ -147,6 +301,252 @@ public abstract class FileSourceConfig extends ReferencePluginConfig {
                              CombinePathTrackingInputFormat.class.getName() + ".", null)
         .withConfigProperty(PATH_FIELD).withConfigProperty(INPUT_FORMAT_CLASS);
     }
+    if (!containsMacro(BALANCED_SPLITS) && isBalancedSplits() &&
+      !CombinePathTrackingInputFormat.class.getName().equals(inputFormatClass)) {
+      collector.addFailure("Balanced splits can only be used if inputFormatClass is " +
+                             CombinePathTrackingInputFormat.class.getName() + ".", null)
+        .withConfigProperty(BALANCED_SPLITS).withConfigProperty(INPUT_FORMAT_CLASS);
+    }
+    if (!containsMacro(MIN_SPLITS) && minSplits != null && minSplits < 1) {
+      collector.addFailure(String.format("Minimum splits '%d' must be at least 1.", minSplits), null)
+        .withConfigProperty(MIN_SPLITS);
+    }
+    if (!containsMacro(TARGET_SPLITS) && targetSplits != null && targetSplits < 1) {
+      collector.addFailure(String.format("Target splits '%d' must be at least 1.", targetSplits), null)
+        .withConfigProperty(TARGET_SPLITS);
+    }
+    if (!containsMacro(MIN_SPLIT_SIZE) && minSplitSize != null && minSplitSize < 1) {
+      collector.addFailure(String.format("Minimum split size '%d' must be at least 1.", minSplitSize), null)
+        .withConfigProperty(MIN_SPLIT_SIZE);
+    } else if (!containsMacro(MIN_SPLIT_SIZE) && !containsMacro(MAX_SPLIT_SIZE) && maxSplitSize != null &&
+      getMinSplitSize() > maxSplitSize) {
+      collector.addFailure(String.format("Minimum split size '%d' must not be larger than the maximum split size " +
+                                           "'%d'.", getMinSplitSize(), maxSplitSize), null)
+        .withConfigProperty(MIN_SPLIT_SIZE).withConfigProperty(MAX_SPLIT_SIZE);
+    }
+    if (!containsMacro(READ_AHEAD_BLOCKS) && readAheadBlocks != null && readAheadBlocks < 0) {
+      collector.addFailure(String.format("Read ahead blocks '%d' must not be negative.", readAheadBlocks), null)
+        .withConfigProperty(READ_AHEAD_BLOCKS);
+    } else if (!containsMacro(READ_AHEAD_BLOCKS) && getReadAheadBlocks() > 0 &&
+      !CombinePathTrackingInputFormat.class.getName().equals(inputFormatClass)) {
+      collector.addFailure("Reading ahead can only be used if inputFormatClass is " +
+                             CombinePathTrackingInputFormat.class.getName() + ".", null)
+        .withConfigProperty(READ_AHEAD_BLOCKS).withConfigProperty(INPUT_FORMAT_CLASS);
+    }
+    if (!containsMacro(READ_AHEAD_BLOCK_SIZE) && readAheadBlockSize != null && readAheadBlockSize < 1) {
+      collector.addFailure(String.format("Read ahead block size '%d' must be at least 1.", readAheadBlockSize), null)
+        .withConfigProperty(READ_AHEAD_BLOCK_SIZE);
+    }
+    if (!containsMacro(PREFETCH_FILES) && prefetchFiles != null && prefetchFiles < 0) {
+      collector.addFailure(String.format("Prefetch files '%d' must not be negative.", prefetchFiles), null)
+        .withConfigProperty(PREFETCH_FILES);
+    } else if (!containsMacro(PREFETCH_FILES) && getPrefetchFiles() > 0 &&
+      !CombinePathTrackingInputFormat.class.getName().equals(inputFormatClass)) {
+      collector.addFailure("Prefetching files can only be used if inputFormatClass is " +
+                             CombinePathTrackingInputFormat.class.getName() + ".", null)
+        .withConfigProperty(PREFETCH_FILES).withConfigProperty(INPUT_FORMAT_CLASS);
+    }
+    if (listingThreads != null && listingThreads < 1) {
+      collector.addFailure(String.format("Listing threads '%d' must be at least 1.", listingThreads), null)
+        .withConfigProperty(LISTING_THREADS);
+    }
+    if (isListingIndexed() && timeTable == null && !containsMacro(TIME_TABLE)) {
+      collector.addFailure("Listing index requires a time table.", "Set the time table or disable the listing index.")
+        .withConfigProperty(LISTING_INDEX).withConfigProperty(TIME_TABLE);
+    }
+    if (isListingIndexed() && !containsMacro(PATH) && getPath() != null && !ListingIndex.isSupported(getPath())) {
+      collector.addFailure("Listing index cannot be used with wasb paths, since their directories do not change " +
+                             "their modification time when files are added to them.",
+                           "Disable the listing index.")
+        .withConfigProperty(LISTING_INDEX).withConfigProperty(PATH);
+    }
+    if (timestampPattern != null && !containsMacro(TIMESTAMP_PATTERN)) {
+      try {
+        TimestampParser.compile(timestampPattern);
+      } catch (IllegalArgumentException e) {
+        collector.addFailure(e.getMessage(), null).withConfigProperty(TIMESTAMP_PATTERN);
+      }
+    }
+    if (timestampRegex != null && !containsMacro(TIMESTAMP_REGEX)) {
+      try {
+        Pattern.compile(timestampRegex);
+      } catch (PatternSyntaxException e) {
+        collector.addFailure(String.format("Invalid timestamp regex '%s': %s", timestampRegex, e.getDescription()),
+                             null).withConfigProperty(TIMESTAMP_REGEX);
+      }
+    }
+    if (isIncremental() && timeTable == null && !containsMacro(TIME_TABLE)) {
+      collector.addFailure("Incremental reading requires a time table.",
+                           "Set the time table or disable incremental reading.")
+        .withConfigProperty(INCREMENTAL).withConfigProperty(TIME_TABLE);
+    }
+    if (!isSupportedFormat(getFormat())) {
+      collector.addFailure(String.format("Unsupported format '%s'.", format),
+                           "Use 'text', 'delimited', 'avro', 'orc' or 'parquet'.")
+        .withConfigProperty(FORMAT);
+    } else if (!isText()) {
+      validateSchemaFormat(collector);
+    }
+    if (isDelimited()) {
+      validateDelimited(collector);
+    }
+    if (isIncremental() && AbstractFileBatchSource.USE_TIMEFILTER.equals(fileRegex)) {
+      collector.addFailure("Incremental reading cannot be used with the time filter.",
+                           "Set a regex or disable incremental reading.")
+        .withConfigProperty(INCREMENTAL).withConfigProperty(FILE_REGEX);
+    }
+  }
+
+  private static boolean isSupportedFormat(String format) {
+    return TEXT_FORMAT.equals(format) || DELIMITED_FORMAT.equals(format) || AVRO_FORMAT.equals(format) ||
+      ORC_FORMAT.equals(format) || PARQUET_FORMAT.equals(format);
+  }
+
+  private void validateSchemaFormat(FailureCollector collector) {
+    if (!CombinePathTrackingInputFormat.class.getName().equals(inputFormatClass)) {
+      collector.addFailure(String.format("The %s format can only be used if inputFormatClass is %s.", getFormat(),
+                                         CombinePathTrackingInputFormat.class.getName()), null)
+        .withConfigProperty(FORMAT).withConfigProperty(INPUT_FORMAT_CLASS);
+    }
+    if (schema == null) {
+      collector.addFailure(String.format("The %s format requires an output schema.", getFormat()),
+                           "Set the output schema.")
+        .withConfigProperty(SCHEMA);
+    } else {
+      try {
+        for (Schema.Field field : getSchema().getFields()) {
+          if (field.getName().equals(pathField)) {
+            Schema fieldSchema = field.getSchema();
+            fieldSchema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+            if (fieldSchema.getType() != Schema.Type.STRING) {
+              collector.addFailure(String.format("Path field '%s' must be of type string.", pathField), null)
+                .withConfigProperty(PATH_FIELD).withOutputSchemaField(pathField);
+            }
+          } else if (!RecordColumns.isSupported(field.getSchema())) {
+            collector.addFailure(String.format("Field '%s' is of unsupported type '%s'.", field.getName(),
+                                               field.getSchema().getDisplayName()),
+                                 "Use a string, int, long, float, double, boolean or bytes field.")
+              .withOutputSchemaField(field.getName());
+          }
+        }
+      } catch (IllegalArgumentException e) {
+        collector.addFailure(e.getMessage(), null).withConfigProperty(SCHEMA);
+      }
+    }
+  }
+
+  private void validateDelimited(FailureCollector collector) {
+    if (!containsMacro(FIELD_DELIMITER) && fieldDelimiter != null && fieldDelimiter.isEmpty()) {
+      collector.addFailure("The field delimiter must not be empty.", null).withConfigProperty(FIELD_DELIMITER);
+    }
+    validateCharacter(QUOTE_CHARACTER, quoteCharacter, collector);
+    validateCharacter(ESCAPE_CHARACTER, escapeCharacter, collector);
+    if (!containsMacro(QUOTE_FIELDS) && isQuoteFields() && !containsMacro(FIELD_DELIMITER) &&
+      !containsMacro(QUOTE_CHARACTER) && getFieldDelimiter().indexOf(getQuoteCharacter()) >= 0) {
+      collector.addFailure("The quote character must not be part of the field delimiter.", null)
+        .withConfigProperty(QUOTE_CHARACTER);
+    }
+  }
+
+  private void validateCharacter(String property, @Nullable String value, FailureCollector collector) {
+    if (!containsMacro(property) && value != null && (value.length() != 1 || value.charAt(0) > 127)) {
+      collector.addFailure(String.format("'%s' must be a single ASCII character.", value), null)
+        .withConfigProperty(property);
+    }
+  }
+
+  /**
+   * Returns the format of the input files in lower case, which defaults to text.
+   */
+  public String getFormat() {
+    return format == null || format.isEmpty() ? TEXT_FORMAT : format.toLowerCase();
+  }
+
+  /**
+   * Returns whether lines are read into records with their offset and body, rather than into the output schema.
+   */
+  public boolean isText() {
+    return TEXT_FORMAT.equals(getFormat());
+  }
+
+  /**
+   * Returns whether delimited files are read into records of the output schema.
+   */
+  public boolean isDelimited() {
+    return DELIMITED_FORMAT.equalsIgnoreCase(format);
+  }
+
+  @Nullable
+  public Schema getSchema() {
+    if (schema == null) {
+      return null;
+    }
+    try {
+      return Schema.parseJson(schema);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to parse output schema: " + e.getMessage());
+    }
+  }
+
+  public String getFieldDelimiter() {
+    return fieldDelimiter == null || fieldDelimiter.isEmpty() ? "," : fieldDelimiter;
+  }
+
+  public boolean isQuoteFields() {
+    return quoteFields != null && quoteFields;
+  }
+
+  public char getQuoteCharacter() {
+    return quoteCharacter == null || quoteCharacter.isEmpty() ? '"' : quoteCharacter.charAt(0);
+  }
+
+  public char getEscapeCharacter() {
+    return escapeCharacter == null || escapeCharacter.isEmpty() ? getQuoteCharacter() : escapeCharacter.charAt(0);
+  }
+
+  public boolean isSkipHeader() {
+    return skipHeader != null && skipHeader;
+  }
+
+  /**
+   * Returns whether files are packed into splits of about the same size.
+   */
+  public boolean isBalancedSplits() {
+    return balancedSplits != null && balancedSplits;
+  }
+
+  public int getMinSplits() {
+    return minSplits == null ? 1 : minSplits;
+  }
+
+  public long getMinSplitSize() {
+    return minSplitSize == null ? DEFAULT_MIN_SPLIT_SIZE : minSplitSize;
+  }
+
+  public int getReadAheadBlocks() {
+    return readAheadBlocks == null ? 0 : readAheadBlocks;
+  }
+
+  public int getReadAheadBlockSize() {
+    return readAheadBlockSize == null ? DEFAULT_READ_AHEAD_BLOCK_SIZE : readAheadBlockSize;
+  }
+
+  public int getPrefetchFiles() {
+    return prefetchFiles == null ? 0 : prefetchFiles;
+  }
+
+  /**
+   * Returns whether the listing index is kept in the time table.
+   */
+  public boolean isListingIndexed() {
+    return listingIndex != null && listingIndex;
+  }
+
+  /**
+   * Returns whether only the files modified since the last run are read.
+   */
+  public boolean isIncremental() {
+    return incremental != null && incremental;
   }
 
   protected Map<String, String> getFileSystemProperties() {
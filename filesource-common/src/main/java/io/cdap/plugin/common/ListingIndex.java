@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the directories listed and the files read by previous runs of a file source, kept in the time table.
+ *
+ * Every indexed directory has an entry with its modification time, the names of its subdirectories and the names of
+ * the files in it that were read. Adding or removing a file changes the modification time of its directory, so a
+ * directory whose modification time did not change is not listed again and only its known subdirectories are
+ * checked. A directory that changed is listed, and only the files that are not in its entry are read. A directory
+ * that was never indexed is read as a whole. File systems whose directories are virtual, like wasb, do not change the
+ * modification time of a directory when files are added to it, so the index cannot be used with them.
+ *
+ * Changes to the index are kept in memory until {@link #commit()} is called once the run succeeded, so the files
+ * found by a failed run are read again by the next one.
+ */
+final class ListingIndex {
+  private static final Gson GSON = new Gson();
+  private static final String KEY_PREFIX = "listing.index:";
+  // blob stores without a hierarchical namespace, where a directory is only the common prefix of blob names
+  private static final Set<String> VIRTUAL_DIRECTORY_SCHEMES = ImmutableSet.of("wasb", "wasbs");
+
+  private final KeyValueTable table;
+  private final String keyPrefix;
+  private final Map<String, Entry> updates;
+  private final Set<String> removals;
+  private int checked;
+  private int listed;
+
+  /**
+   * @param table table to keep the index in
+   * @param fileRegex regex of the source, files rejected by one regex may be accepted by another one
+   */
+  ListingIndex(KeyValueTable table, String fileRegex) {
+    this.table = table;
+    this.keyPrefix = KEY_PREFIX + fileRegex + ":";
+    this.updates = new HashMap<>();
+    this.removals = new HashSet<>();
+  }
+
+  /**
+   * Returns whether the index can be used for the given path, which requires a file system that updates the
+   * modification time of a directory when files are added to it.
+   */
+  static boolean isSupported(String path) {
+    String scheme = new Path(path).toUri().getScheme();
+    return scheme == null || !VIRTUAL_DIRECTORY_SCHEMES.contains(scheme.toLowerCase());
+  }
+
+  /**
+   * Finds the paths that were not read by a previous run.
+   *
+   * @param roots statuses of the paths the input path matches
+   * @param filter filter that decides which files are read
+   * @param recursive whether the files in subdirectories are read
+   * @return the files that were added since the previous run and the directories that were never indexed
+   */
+  List<Path> findNewPaths(FileSystem fs, FileStatus[] roots, BatchFileFilter filter,
+                          boolean recursive) throws IOException {
+    checked = 0;
+    listed = 0;
+    List<Path> result = new ArrayList<>();
+    for (FileStatus root : roots) {
+      if (root.isDirectory()) {
+        visit(fs, root, filter, recursive, result);
+        continue;
+      }
+      // files matching the input path are read again once they are modified
+      String key = getKey(root.getPath());
+      Entry entry = read(key);
+      if ((entry == null || entry.modificationTime != root.getModificationTime()) && filter.accept(root)) {
+        result.add(root.getPath());
+        updates.put(key, new Entry(root.getModificationTime()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of directories whose modification time was checked by the last call to
+   * {@link #findNewPaths(FileSystem, FileStatus[], BatchFileFilter, boolean)} without listing them.
+   */
+  int getChecked() {
+    return checked;
+  }
+
+  /**
+   * Returns the number of directories listed by the last call to
+   * {@link #findNewPaths(FileSystem, FileStatus[], BatchFileFilter, boolean)}.
+   */
+  int getListed() {
+    return listed;
+  }
+
+  /**
+   * Writes the changes to the index to the table.
+   */
+  void commit() {
+    for (String key : removals) {
+      table.delete(key);
+    }
+    for (Map.Entry<String, Entry> update : updates.entrySet()) {
+      table.write(update.getKey(), GSON.toJson(update.getValue()));
+    }
+    removals.clear();
+    updates.clear();
+  }
+
+  /**
+   * Visits the given directory, adding its new paths to the result unless the result is null.
+   */
+  private void visit(FileSystem fs, FileStatus dir, BatchFileFilter filter, boolean recursive,
+                     @Nullable List<Path> result) throws IOException {
+    String key = getKey(dir.getPath());
+    Entry entry = read(key);
+    if (entry == null) {
+      // everything in a directory that was never indexed is new, it only has to be listed to index it
+      if (result != null) {
+        result.add(dir.getPath());
+      }
+      list(fs, dir, new Entry(0L), filter, recursive, null);
+    } else if (entry.modificationTime != dir.getModificationTime() || entry.deferred) {
+      list(fs, dir, entry, filter, recursive, result);
+    } else {
+      checked++;
+      if (!recursive) {
+        return;
+      }
+      for (String name : entry.dirs) {
+        Path path = new Path(dir.getPath(), name);
+        FileStatus status;
+        try {
+          status = fs.getFileStatus(path);
+        } catch (FileNotFoundException e) {
+          // some file systems do not update the parent when a directory is removed
+          remove(path);
+          continue;
+        }
+        visit(fs, status, filter, true, result);
+      }
+    }
+  }
+
+  private void list(FileSystem fs, FileStatus dir, Entry entry, BatchFileFilter filter, boolean recursive,
+                    @Nullable List<Path> result) throws IOException {
+    listed++;
+    Entry updated = new Entry(dir.getModificationTime());
+    RemoteIterator<LocatedFileStatus> iterator = fs.listLocatedStatus(dir.getPath());
+    while (iterator.hasNext()) {
+      LocatedFileStatus status = iterator.next();
+      if (!BatchFileFilter.HIDDEN_FILE_FILTER.accept(status.getPath())) {
+        continue;
+      }
+      String name = status.getPath().getName();
+      if (status.isDirectory()) {
+        if (!recursive) {
+          continue;
+        }
+        if (filter.accept(status)) {
+          updated.dirs.add(name);
+          visit(fs, status, filter, true, result);
+        } else if (filter.isTimeFiltered()) {
+          // a date directory skipped by the time filter may have to be read by a later run
+          updated.deferred = true;
+        }
+      } else if (entry.files.contains(name)) {
+        updated.files.add(name);
+      } else if (filter.accept(status)) {
+        updated.files.add(name);
+        if (result != null) {
+          result.add(status.getPath());
+        }
+      } else if (filter.isTimeFiltered()) {
+        // the file may be read by a later run, so the directory has to be listed again
+        updated.deferred = true;
+      }
+    }
+    for (String name : entry.dirs) {
+      if (!updated.dirs.contains(name)) {
+        remove(new Path(dir.getPath(), name));
+      }
+    }
+    updates.put(getKey(dir.getPath()), updated);
+  }
+
+  /**
+   * Removes the entries of the given directory and of all directories below it.
+   */
+  private void remove(Path dir) {
+    String key = getKey(dir);
+    Entry entry = read(key);
+    if (entry == null) {
+      return;
+    }
+    updates.remove(key);
+    removals.add(key);
+    for (String name : entry.dirs) {
+      remove(new Path(dir, name));
+    }
+  }
+
+  @Nullable
+  private Entry read(String key) {
+    if (removals.contains(key)) {
+      return null;
+    }
+    Entry entry = updates.get(key);
+    if (entry != null) {
+      return entry;
+    }
+    String value = Bytes.toString(table.read(key));
+    return value == null ? null : GSON.fromJson(value, Entry.class);
+  }
+
+  private String getKey(Path path) {
+    return keyPrefix + path.toString();
+  }
+
+  /**
+   * The indexed state of a directory, or of a file the input path matches.
+   */
+  private static final class Entry {
+    private final long modificationTime;
+    private final Set<String> files;
+    private final Set<String> dirs;
+    private boolean deferred;
+
+    private Entry(long modificationTime) {
+      this.modificationTime = modificationTime;
+      this.files = new HashSet<>();
+      this.dirs = new HashSet<>();
+    }
+  }
+}
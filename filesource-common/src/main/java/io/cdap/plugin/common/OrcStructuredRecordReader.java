@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.TypeDescription;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads ORC files into records of the output schema.
+ *
+ * Only the columns of the file that are in the output schema are included, so the other columns are not read from
+ * the file at all. Rows are read in batches and every value is taken straight from its column vector, the way
+ * the vectorized ORC writer of the sink writes them. A split reads the stripes that start in it.
+ */
+final class OrcStructuredRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+  private final RecordColumns columns;
+  private final String path;
+  private final Object[] values;
+
+  private org.apache.orc.RecordReader rows;
+  private VectorizedRowBatch batch;
+  // the index of every column in the row batch, or -1 if the file does not have it
+  private int[] vectorIndexes;
+  private ValueReader[] valueReaders;
+  private int row;
+  private StructuredRecord value;
+
+  OrcStructuredRecordReader(Schema schema, String pathField, String path) {
+    this.columns = new RecordColumns(schema, pathField);
+    this.path = path;
+    this.values = new Object[columns.size()];
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    FileSplit fileSplit = (FileSplit) split;
+    Reader reader = OrcFile.createReader(fileSplit.getPath(), OrcFile.readerOptions(context.getConfiguration()));
+    TypeDescription fileSchema = reader.getSchema();
+    if (fileSchema.getCategory() != TypeDescription.Category.STRUCT) {
+      throw new IllegalArgumentException(String.format("Schema of ORC file %s is not a struct.", path));
+    }
+
+    boolean[] include = new boolean[fileSchema.getMaximumId() + 1];
+    include[0] = true;
+    vectorIndexes = new int[columns.size()];
+    Arrays.fill(vectorIndexes, -1);
+    valueReaders = new ValueReader[columns.size()];
+    List<String> fieldNames = fileSchema.getFieldNames();
+    List<TypeDescription> fieldTypes = fileSchema.getChildren();
+    for (int i = 0; i < fieldNames.size(); i++) {
+      int column = columns.indexOf(fieldNames.get(i));
+      if (column < 0) {
+        continue;
+      }
+      TypeDescription fieldType = fieldTypes.get(i);
+      Arrays.fill(include, fieldType.getId(), fieldType.getMaximumId() + 1, true);
+      vectorIndexes[column] = i;
+      valueReaders[column] = createValueReader(fieldNames.get(i), fieldType);
+    }
+
+    rows = reader.rows(new Reader.Options().include(include).range(fileSplit.getStart(), fileSplit.getLength()));
+    batch = fileSchema.createRowBatch();
+    row = 0;
+  }
+
+  private ValueReader createValueReader(String fieldName, TypeDescription fieldType) {
+    switch (fieldType.getCategory()) {
+      case BOOLEAN:
+        return (vector, index) -> ((LongColumnVector) vector).vector[index] != 0;
+      case BYTE:
+      case SHORT:
+      case INT:
+        return (vector, index) -> (int) ((LongColumnVector) vector).vector[index];
+      case LONG:
+        return (vector, index) -> ((LongColumnVector) vector).vector[index];
+      case FLOAT:
+        return (vector, index) -> (float) ((DoubleColumnVector) vector).vector[index];
+      case DOUBLE:
+        return (vector, index) -> ((DoubleColumnVector) vector).vector[index];
+      case STRING:
+      case CHAR:
+      case VARCHAR:
+        return (vector, index) -> {
+          BytesColumnVector bytes = (BytesColumnVector) vector;
+          return new String(bytes.vector[index], bytes.start[index], bytes.length[index], StandardCharsets.UTF_8);
+        };
+      case BINARY:
+        return (vector, index) -> {
+          BytesColumnVector bytes = (BytesColumnVector) vector;
+          return Arrays.copyOfRange(bytes.vector[index], bytes.start[index], bytes.start[index] + bytes.length[index]);
+        };
+      default:
+        throw new IllegalArgumentException(String.format("Column '%s' of ORC file %s is of unsupported type '%s'.",
+                                                         fieldName, path, fieldType));
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    value = null;
+    while (row == batch.size) {
+      if (!rows.nextBatch(batch)) {
+        return false;
+      }
+      row = 0;
+    }
+    Arrays.fill(values, null);
+    for (int i = 0; i < vectorIndexes.length; i++) {
+      if (vectorIndexes[i] < 0) {
+        continue;
+      }
+      ColumnVector vector = batch.cols[vectorIndexes[i]];
+      int index = vector.isRepeating ? 0 : row;
+      if (vector.noNulls || !vector.isNull[index]) {
+        values[i] = columns.convert(i, valueReaders[i].read(vector, index));
+      }
+    }
+    row++;
+    value = columns.build(values, path);
+    return true;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() throws IOException {
+    return rows.getProgress();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (rows != null) {
+      rows.close();
+    }
+  }
+
+  /**
+   * Reads the value at an index of a column vector of a particular ORC type.
+   */
+  private interface ValueReader {
+    Object read(ColumnVector vector, int index);
+  }
+}
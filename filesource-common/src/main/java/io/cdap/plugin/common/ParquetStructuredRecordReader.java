@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetRecordReader;
+import org.apache.parquet.hadoop.api.InitContext;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads Parquet files into records of the output schema.
+ *
+ * The file schema is projected to the columns of the output schema before reading, so the column chunks of the other
+ * columns are never read or decompressed. A split reads the row groups whose middle is in it.
+ */
+final class ParquetStructuredRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+  private final RecordColumns columns;
+  private final String path;
+  private final Object[] values;
+  private final ParquetRecordReader<Group> delegate;
+
+  // the type of the groups read, and the index in it of every column or -1 if the file does not have it
+  private GroupType groupType;
+  private int[] fieldIndexes;
+  private boolean[] strings;
+  private StructuredRecord value;
+
+  ParquetStructuredRecordReader(Schema schema, String pathField, String path) {
+    this.columns = new RecordColumns(schema, pathField);
+    this.path = path;
+    this.values = new Object[columns.size()];
+    this.delegate = new ParquetRecordReader<>(new ProjectingReadSupport(columns));
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+    delegate.initialize(split, context);
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    value = null;
+    if (!delegate.nextKeyValue()) {
+      return false;
+    }
+    Group group = delegate.getCurrentValue();
+    if (group.getType() != groupType) {
+      resolveFields(group.getType());
+    }
+    Arrays.fill(values, null);
+    for (int i = 0; i < fieldIndexes.length; i++) {
+      int fieldIndex = fieldIndexes[i];
+      if (fieldIndex >= 0 && group.getFieldRepetitionCount(fieldIndex) > 0) {
+        values[i] = columns.convert(i, getValue(group, fieldIndex, strings[i]));
+      }
+    }
+    value = columns.build(values, path);
+    return true;
+  }
+
+  private void resolveFields(GroupType type) {
+    fieldIndexes = new int[columns.size()];
+    strings = new boolean[columns.size()];
+    for (int i = 0; i < fieldIndexes.length; i++) {
+      String name = columns.getName(i);
+      fieldIndexes[i] = type.containsField(name) ? type.getFieldIndex(name) : -1;
+      if (fieldIndexes[i] < 0) {
+        continue;
+      }
+      Type field = type.getType(fieldIndexes[i]);
+      if (!field.isPrimitive() || field.isRepetition(Type.Repetition.REPEATED)) {
+        throw new IllegalArgumentException(String.format("Column '%s' of Parquet file %s is of unsupported type '%s'.",
+                                                         name, path, field));
+      }
+      // binary columns are read as strings if they are annotated as strings or read into string fields
+      strings[i] = field.getOriginalType() == OriginalType.UTF8 || field.getOriginalType() == OriginalType.ENUM ||
+        columns.getType(i) == Schema.Type.STRING;
+    }
+    groupType = type;
+  }
+
+  private Object getValue(Group group, int fieldIndex, boolean string) {
+    PrimitiveType.PrimitiveTypeName typeName = group.getType().getType(fieldIndex).asPrimitiveType()
+      .getPrimitiveTypeName();
+    switch (typeName) {
+      case BOOLEAN:
+        return group.getBoolean(fieldIndex, 0);
+      case INT32:
+        return group.getInteger(fieldIndex, 0);
+      case INT64:
+        return group.getLong(fieldIndex, 0);
+      case FLOAT:
+        return group.getFloat(fieldIndex, 0);
+      case DOUBLE:
+        return group.getDouble(fieldIndex, 0);
+      case BINARY:
+      case FIXED_LEN_BYTE_ARRAY:
+        return string ? group.getBinary(fieldIndex, 0).toStringUsingUTF8() : group.getBinary(fieldIndex, 0).getBytes();
+      default:
+        throw new IllegalArgumentException(String.format("Column '%s' of Parquet file %s is of unsupported type '%s'.",
+                                                         group.getType().getFieldName(fieldIndex), path, typeName));
+    }
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() throws IOException, InterruptedException {
+    return delegate.getProgress();
+  }
+
+  @Override
+  public void close() throws IOException {
+    delegate.close();
+  }
+
+  /**
+   * Reads the columns of the file that are in the output schema, with the types they have in the file.
+   */
+  private static final class ProjectingReadSupport extends GroupReadSupport {
+    private final RecordColumns columns;
+
+    private ProjectingReadSupport(RecordColumns columns) {
+      this.columns = columns;
+    }
+
+    @Override
+    public ReadContext init(InitContext context) {
+      MessageType fileSchema = context.getFileSchema();
+      List<Type> fields = new ArrayList<>();
+      for (Type field : fileSchema.getFields()) {
+        if (columns.indexOf(field.getName()) >= 0) {
+          fields.add(field);
+        }
+      }
+      return new ReadContext(new MessageType(fileSchema.getName(), fields));
+    }
+  }
+}
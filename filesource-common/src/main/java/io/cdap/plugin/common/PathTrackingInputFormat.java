@@ -19,27 +19,63 @@ package io.cdap.plugin.common;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nullable;
 
 /**
- * An input format that tracks which the file path each record was read from.
+ * An input format that tracks which the file path each record was read from. Lines are read into records with their
+ * offset and body, unless the input format is configured to read delimited text, Avro, ORC or Parquet files into
+ * records of a schema.
  */
 public class PathTrackingInputFormat extends FileInputFormat<NullWritable, StructuredRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(PathTrackingInputFormat.class);
   private static final String PATH_FIELD = "path.tracking.path.field";
   private static final String FILENAME_ONLY = "path.tracking.filename.only";
+  private static final String FORMAT = "path.tracking.format";
+  private static final String SCHEMA = "path.tracking.schema";
+  private static final String DELIMITER = "path.tracking.delimiter";
+  private static final String QUOTE = "path.tracking.quote";
+  private static final String ESCAPE = "path.tracking.escape";
+  private static final String SKIP_HEADER = "path.tracking.skip.header";
+  private static final String READ_AHEAD_BLOCKS = "path.tracking.read.ahead.blocks";
+  private static final String READ_AHEAD_BLOCK_SIZE = "path.tracking.read.ahead.block.size";
+  // can be set through the file system properties
+  private static final String READ_AHEAD_MEMORY = "path.tracking.read.ahead.memory";
+  private static final long DEFAULT_READ_AHEAD_MEMORY = 64 * 1024 * 1024;
+  // can be set through the file system properties
+  private static final String READ_AHEAD_THREADS = "path.tracking.read.ahead.threads";
+  private static final int DEFAULT_READ_AHEAD_THREADS = 16;
+  // the record delimiter of TextInputFormat, which the line reader does not support
+  private static final String RECORD_DELIMITER = "textinputformat.record.delimiter";
+  private static final String OFFSET_FIELD = "offset";
+  private static final String BODY_FIELD = "body";
+  private static final String DELIMITED_FORMAT = "delimited";
+  private static final String AVRO_FORMAT = "avro";
+  private static final String ORC_FORMAT = "orc";
+  private static final String PARQUET_FORMAT = "parquet";
 
   /**
    * Configure the input format to use the specified schema and optional path field.
@@ -51,16 +87,151 @@ public class PathTrackingInputFormat extends FileInputFormat<NullWritable, Struc
     conf.setBoolean(FILENAME_ONLY, filenameOnly);
   }
 
+  /**
+   * Configure the input format to read delimited text into records of the given schema instead of reading lines.
+   * Fields are only unquoted if a quote character is given, and files are not split in that case.
+   */
+  public static void configureDelimited(Configuration conf, Schema schema, String delimiter, @Nullable Character quote,
+                                        @Nullable Character escape, boolean skipHeader) {
+    conf.set(FORMAT, DELIMITED_FORMAT);
+    conf.set(SCHEMA, schema.toString());
+    conf.set(DELIMITER, delimiter);
+    if (quote != null) {
+      conf.set(QUOTE, String.valueOf(quote));
+    }
+    if (escape != null) {
+      conf.set(ESCAPE, String.valueOf(escape));
+    }
+    conf.setBoolean(SKIP_HEADER, skipHeader);
+  }
+
+  /**
+   * Configure the input format to read files of the given format, which is avro, orc or parquet, into records of the
+   * given schema. Only the columns of the schema are decoded.
+   */
+  public static void configureFormat(Configuration conf, String format, Schema schema) {
+    String lowerCaseFormat = format.toLowerCase();
+    if (!AVRO_FORMAT.equals(lowerCaseFormat) && !ORC_FORMAT.equals(lowerCaseFormat) &&
+      !PARQUET_FORMAT.equals(lowerCaseFormat)) {
+      throw new IllegalArgumentException(String.format("Unsupported format '%s'.", format));
+    }
+    conf.set(FORMAT, lowerCaseFormat);
+    conf.set(SCHEMA, schema.toString());
+  }
+
+  /**
+   * Configure the input format to read files with the given number of blocks of the given size in flight, so that
+   * records are parsed while the next blocks are read from the store. The blocks in flight are limited to the memory
+   * budget of a task, which is 64MB unless path.tracking.read.ahead.memory is set. Blocks are read on a pool of 16
+   * threads per JVM unless path.tracking.read.ahead.threads is set.
+   */
+  public static void configureReadAhead(Configuration conf, int blocks, int blockSize) {
+    conf.setInt(READ_AHEAD_BLOCKS, blocks);
+    conf.setInt(READ_AHEAD_BLOCK_SIZE, blockSize);
+  }
+
+  /**
+   * Opens the file of the given split, reading ahead if the input format is configured to. The stream of a file that
+   * was prefetched is the one already reading ahead.
+   */
+  static FSDataInputStream open(Configuration conf, FileSplit split) throws IOException {
+    if (split instanceof PrefetchingRecordReader.PrefetchedSplit) {
+      return ((PrefetchingRecordReader.PrefetchedSplit) split).getStream();
+    }
+    Path file = split.getPath();
+    if (conf.getInt(READ_AHEAD_BLOCKS, 0) <= 0) {
+      return file.getFileSystem(conf).open(file);
+    }
+    return new FSDataInputStream(readAhead(conf, file, 1));
+  }
+
+  /**
+   * Returns a stream that reads the given file ahead, with the memory budget of a task shared by the given number of
+   * streams that read ahead at the same time. Nothing is read until the stream is read or prefetches.
+   */
+  static ReadAheadInputStream readAhead(Configuration conf, Path file, int streams) throws IOException {
+    int blocks = Math.max(1, conf.getInt(READ_AHEAD_BLOCKS, 0));
+    int blockSize = conf.getInt(READ_AHEAD_BLOCK_SIZE, FileSourceConfig.DEFAULT_READ_AHEAD_BLOCK_SIZE);
+    // the current block is held besides the blocks in flight
+    long budgetBlocks = conf.getLong(READ_AHEAD_MEMORY, DEFAULT_READ_AHEAD_MEMORY) / streams / blockSize - 1;
+    return new ReadAheadInputStream(file.getFileSystem(conf), file, blockSize,
+                                    (int) Math.max(1, Math.min(blocks, budgetBlocks)),
+                                    Math.max(1, conf.getInt(READ_AHEAD_THREADS, DEFAULT_READ_AHEAD_THREADS)));
+  }
+
+  /**
+   * Returns whether the reader of the given file reads it from the stream that {@link #open} returns, which is the
+   * case for text and delimited files once reading ahead is configured, except for files read like TextInputFormat
+   * does.
+   */
+  static boolean readsAhead(Configuration conf, Path file) {
+    if (conf.getInt(READ_AHEAD_BLOCKS, 0) <= 0) {
+      return false;
+    }
+    String format = conf.get(FORMAT);
+    CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+    if (format == null) {
+      return conf.get(RECORD_DELIMITER) == null && !(codec instanceof SplittableCompressionCodec);
+    }
+    return DELIMITED_FORMAT.equals(format) &&
+      !(codec instanceof SplittableCompressionCodec && conf.get(QUOTE) == null);
+  }
+
+  /**
+   * Returns the schema of records read with a schema, which is the given schema with the path field added if it is
+   * missing.
+   */
+  public static Schema getOutputSchema(Schema schema, @Nullable String pathField) {
+    if (pathField == null || schema.getField(pathField) != null) {
+      return schema;
+    }
+    List<Schema.Field> fields = new ArrayList<>(schema.getFields());
+    fields.add(Schema.Field.of(pathField, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    return Schema.recordOf(schema.getRecordName(), fields);
+  }
+
+  /**
+   * Returns whether the given file can be split. Like for {@link TextInputFormat}, compressed files can only be split
+   * if the codec can, like bzip2, while gzip files are always read whole. Delimited files with quoted fields cannot be
+   * split at all, since a split cannot tell whether it starts inside a quoted field.
+   */
+  static boolean canSplit(Configuration conf, Path file) {
+    if (DELIMITED_FORMAT.equals(conf.get(FORMAT)) && conf.get(QUOTE) != null) {
+      return false;
+    }
+    CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+    return codec == null || codec instanceof SplittableCompressionCodec;
+  }
+
   public static Schema getOutputSchema(@Nullable String pathField) {
     List<Schema.Field> fields = new ArrayList<>();
-    fields.add(Schema.Field.of("offset", Schema.of(Schema.Type.LONG)));
-    fields.add(Schema.Field.of("body", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    fields.add(Schema.Field.of(OFFSET_FIELD, Schema.of(Schema.Type.LONG)));
+    fields.add(Schema.Field.of(BODY_FIELD, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
     if (pathField != null) {
       fields.add(Schema.Field.of(pathField, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
     }
     return Schema.recordOf("file.record", fields);
   }
 
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException {
+    long start = System.currentTimeMillis();
+    List<InputSplit> splits = super.getSplits(job);
+    LOG.info("Planned {} splits in {} ms.", splits.size(), System.currentTimeMillis() - start);
+    return splits;
+  }
+
+  @Override
+  protected List<FileStatus> listStatus(JobContext job) throws IOException {
+    List<FileStatus> files = BatchFileFilter.listStatus(job);
+    return files == null ? super.listStatus(job) : files;
+  }
+
+  @Override
+  protected boolean isSplitable(JobContext context, Path file) {
+    return canSplit(context.getConfiguration(), file);
+  }
+
   @Override
   public RecordReader<NullWritable, StructuredRecord> createRecordReader(InputSplit split,
                                                                          TaskAttemptContext context)
@@ -71,20 +242,50 @@ public class PathTrackingInputFormat extends FileInputFormat<NullWritable, Struc
       throw new IllegalStateException("Input split is not a FileSplit.");
     }
 
-    RecordReader<LongWritable, Text> delegate = (new TextInputFormat()).createRecordReader(split, context);
     FileSplit fileSplit = (FileSplit) split;
-    String pathField = context.getConfiguration().get(PATH_FIELD);
-    boolean filenameOnly = context.getConfiguration().getBoolean(FILENAME_ONLY, false);
+    Configuration conf = context.getConfiguration();
+    String pathField = conf.get(PATH_FIELD);
+    boolean filenameOnly = conf.getBoolean(FILENAME_ONLY, false);
     String path = filenameOnly ? fileSplit.getPath().getName() : fileSplit.getPath().toUri().toString();
 
-    return new TrackingTextRecordReader(delegate, pathField, path);
+    String format = conf.get(FORMAT);
+    if (format == null) {
+      // lines are read from a stream that reads ahead, unless the file has to be read like TextInputFormat does
+      RecordReader<LongWritable, Text> delegate = readsAhead(conf, fileSplit.getPath()) ?
+        new StreamLineRecordReader() : new TextInputFormat().createRecordReader(split, context);
+      return new TrackingTextRecordReader(delegate, pathField, path);
+    }
+
+    Schema schema = getOutputSchema(Schema.parseJson(conf.get(SCHEMA)), pathField);
+    switch (format) {
+      case DELIMITED_FORMAT:
+        String quote = conf.get(QUOTE);
+        String escape = conf.get(ESCAPE);
+        return new DelimitedRecordReader(schema, pathField, path, conf.get(DELIMITER, ","),
+                                         quote == null ? null : quote.charAt(0),
+                                         escape == null ? null : escape.charAt(0), conf.getBoolean(SKIP_HEADER, false));
+      case AVRO_FORMAT:
+        return new AvroStructuredRecordReader(schema, pathField, path);
+      case ORC_FORMAT:
+        return new OrcStructuredRecordReader(schema, pathField, path);
+      case PARQUET_FORMAT:
+        return new ParquetStructuredRecordReader(schema, pathField, path);
+      default:
+        throw new IllegalStateException(String.format("Unsupported format '%s'.", format));
+    }
   }
 
+  /**
+   * Turns the lines read by a {@link TextInputFormat} into records. The record of a line is only built once it is
+   * requested, and the bytes of the line are decoded into its body with a single copy.
+   */
   private static class TrackingTextRecordReader extends RecordReader<NullWritable, StructuredRecord> {
     private final RecordReader<LongWritable, Text> delegate;
     private final Schema schema;
     private final String pathField;
     private final String path;
+    // the record of the current line, null until it is requested
+    private StructuredRecord record;
 
     private TrackingTextRecordReader(RecordReader<LongWritable, Text> delegate, @Nullable String pathField,
                                      String path) {
@@ -101,6 +302,7 @@ public class PathTrackingInputFormat extends FileInputFormat<NullWritable, Struc
 
     @Override
     public boolean nextKeyValue() throws IOException, InterruptedException {
+      record = null;
       return delegate.nextKeyValue();
     }
 
@@ -111,16 +313,21 @@ public class PathTrackingInputFormat extends FileInputFormat<NullWritable, Struc
 
     @Override
     public StructuredRecord getCurrentValue() throws IOException, InterruptedException {
+      if (record != null) {
+        return record;
+      }
       LongWritable key = delegate.getCurrentKey();
       Text text = delegate.getCurrentValue();
 
+      // unlike Text.toString(), this decodes into the string directly instead of through an intermediate buffer
       StructuredRecord.Builder recordBuilder = StructuredRecord.builder(schema)
-        .set("offset", key.get())
-        .set("body", text.toString());
+        .set(OFFSET_FIELD, key.get())
+        .set(BODY_FIELD, new String(text.getBytes(), 0, text.getLength(), StandardCharsets.UTF_8));
       if (pathField != null) {
         recordBuilder.set(pathField, path);
       }
-      return recordBuilder.build();
+      record = recordBuilder.build();
+      return record;
     }
 
     @Override
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reads the files of a combined split one after the other like CombineFileRecordReader does, but starts reading the
+ * next files ahead while the current file is read, so that the latency of opening a file and reading its first bytes
+ * is not paid for every file in turn. Only files whose reader reads the stream that {@link PathTrackingInputFormat}
+ * opens are prefetched, the others are opened once they are reached.
+ */
+final class PrefetchingRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+  private final PathTrackingInputFormat inputFormat = new PathTrackingInputFormat();
+  private final int prefetchFiles;
+  // the splits of the files after the current one, which are read ahead
+  private final Deque<FileSplit> prefetched = new ArrayDeque<>();
+
+  private CombineFileSplit split;
+  private TaskAttemptContext context;
+  // the index of the next file to prefetch
+  private int nextFile;
+  private RecordReader<NullWritable, StructuredRecord> reader;
+  private long readerLength;
+  // the bytes of the files that were read completely
+  private long bytesRead;
+
+  PrefetchingRecordReader(int prefetchFiles) {
+    this.prefetchFiles = prefetchFiles;
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) {
+    this.split = (CombineFileSplit) split;
+    this.context = context;
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException, InterruptedException {
+    while (reader == null || !reader.nextKeyValue()) {
+      if (!nextReader()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() throws IOException, InterruptedException {
+    return reader.getCurrentKey();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() throws IOException, InterruptedException {
+    return reader.getCurrentValue();
+  }
+
+  @Override
+  public float getProgress() throws IOException, InterruptedException {
+    if (split.getLength() == 0) {
+      return 0.0f;
+    }
+    long current = reader == null ? 0 : (long) (reader.getProgress() * readerLength);
+    return Math.min(1.0f, (bytesRead + current) / (float) split.getLength());
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (reader != null) {
+        reader.close();
+        reader = null;
+      }
+    } finally {
+      // files that were prefetched but not reached
+      for (FileSplit fileSplit : prefetched) {
+        if (fileSplit instanceof PrefetchedSplit) {
+          ((PrefetchedSplit) fileSplit).getStream().close();
+        }
+      }
+      prefetched.clear();
+    }
+  }
+
+  /**
+   * Closes the current reader and opens the reader of the next file, prefetching the files after it.
+   *
+   * @return false if all files were read
+   */
+  private boolean nextReader() throws IOException, InterruptedException {
+    if (reader != null) {
+      reader.close();
+      reader = null;
+      bytesRead += readerLength;
+    }
+    prefetch();
+    FileSplit fileSplit = prefetched.poll();
+    if (fileSplit == null) {
+      return false;
+    }
+    prefetch();
+    reader = inputFormat.createRecordReader(fileSplit, context);
+    reader.initialize(fileSplit, context);
+    readerLength = fileSplit.getLength();
+    return true;
+  }
+
+  /**
+   * Starts reading ahead the files that follow the current file, up to the number of files to prefetch.
+   */
+  private void prefetch() throws IOException {
+    Configuration conf = context.getConfiguration();
+    while (prefetched.size() < prefetchFiles && nextFile < split.getNumPaths()) {
+      Path path = split.getPath(nextFile);
+      long start = split.getOffset(nextFile);
+      long length = split.getLength(nextFile);
+      nextFile++;
+      if (!PathTrackingInputFormat.readsAhead(conf, path)) {
+        prefetched.add(new FileSplit(path, start, length, new String[0]));
+        continue;
+      }
+      // the current file and the prefetched files share the memory for reading ahead
+      ReadAheadInputStream stream = PathTrackingInputFormat.readAhead(conf, path, prefetchFiles + 1);
+      stream.seek(start);
+      stream.prefetch();
+      prefetched.add(new PrefetchedSplit(path, start, length, new FSDataInputStream(stream)));
+    }
+  }
+
+  /**
+   * The split of a file that is already being read ahead, which the reader of the file reads from.
+   */
+  static final class PrefetchedSplit extends FileSplit {
+    private final FSDataInputStream stream;
+
+    private PrefetchedSplit(Path path, long start, long length, FSDataInputStream stream) {
+      super(path, start, length, new String[0]);
+      this.stream = stream;
+    }
+
+    FSDataInputStream getStream() {
+      return stream;
+    }
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An input stream that reads a file in blocks ahead of its reader.
+ *
+ * Up to a number of blocks are read at the same time on a bounded pool of daemon threads shared by all streams, each
+ * with positioned reads on a stream of its own, so a reader that consumes the file in order does not wait for a round
+ * trip to the store every time it runs out of bytes. At most the blocks in flight and the current block are held in
+ * memory. Seeking outside of the current block drops the blocks read ahead and continues reading ahead from the new
+ * position. A dropped block that is being read still holds its buffer until the read finishes, so it counts against
+ * the blocks in flight until then.
+ */
+final class ReadAheadInputStream extends InputStream implements Seekable, PositionedReadable {
+  private static final byte[] EMPTY = new byte[0];
+  private static ThreadPoolExecutor executor;
+
+  private final FileSystem fs;
+  private final Path path;
+  private final int blockSize;
+  private final int blocksInFlight;
+  private final ThreadPoolExecutor pool;
+  // streams that are not reading a block, opened when all others are in use
+  private final List<FSDataInputStream> streams = new ArrayList<>();
+  private final Deque<BlockRead> blocks = new ArrayDeque<>();
+  // a permit for every block that is queued, being read, or read and not yet taken by the reader
+  private final Semaphore permits;
+
+  private byte[] block = EMPTY;
+  private int blockPosition;
+  // the position of the next byte returned and of the next block to read ahead
+  private long position;
+  private long nextBlock;
+  // whether a block shorter than the block size was read, which is the last block of the file
+  private boolean lastBlock;
+  // only changed while holding the lock on the streams
+  private volatile boolean closed;
+
+  /**
+   * Creates a stream that reads blocks of the given size, with up to the given number of blocks in flight, on the pool
+   * of the JVM, which is grown to the given number of threads if it has fewer.
+   */
+  ReadAheadInputStream(FileSystem fs, Path path, int blockSize, int blocksInFlight, int threads) {
+    if (blockSize < 1 || blocksInFlight < 1 || threads < 1) {
+      throw new IllegalArgumentException(String.format("Invalid block size %d, number of blocks %d or threads %d.",
+                                                       blockSize, blocksInFlight, threads));
+    }
+    this.fs = fs;
+    this.path = path;
+    this.blockSize = blockSize;
+    this.blocksInFlight = blocksInFlight;
+    this.pool = getExecutor(threads);
+    this.permits = new Semaphore(blocksInFlight);
+  }
+
+  /**
+   * Returns the pool that blocks are read on, which is shared by the tasks that run in the same JVM and has as many
+   * threads as the largest number any of them asked for. Idle threads time out, so the pool holds no threads once
+   * nothing is read ahead.
+   */
+  private static synchronized ThreadPoolExecutor getExecutor(int threads) {
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("read-ahead-%d")
+                                          .build());
+      executor.allowCoreThreadTimeOut(true);
+    } else if (threads > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(threads);
+      executor.setCorePoolSize(threads);
+    }
+    return executor;
+  }
+
+  /**
+   * Starts reading ahead from the current position, rather than only once the first byte is read.
+   */
+  void prefetch() {
+    if (!closed && !lastBlock) {
+      fillBlocks();
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (blockPosition == block.length && !nextBlock()) {
+      return -1;
+    }
+    position++;
+    return block[blockPosition++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (blockPosition == block.length && !nextBlock()) {
+      return -1;
+    }
+    int count = Math.min(length, block.length - blockPosition);
+    System.arraycopy(block, blockPosition, buffer, offset, count);
+    blockPosition += count;
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return block.length - blockPosition;
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0) {
+      throw new EOFException(String.format("Cannot seek to negative position %d of %s.", pos, path));
+    }
+    long blockStart = position - blockPosition;
+    if (pos >= blockStart && pos <= blockStart + block.length) {
+      blockPosition = (int) (pos - blockStart);
+    } else {
+      cancelBlocks();
+      block = EMPTY;
+      blockPosition = 0;
+      nextBlock = pos;
+      lastBlock = false;
+    }
+    position = pos;
+  }
+
+  @Override
+  public long getPos() {
+    return position;
+  }
+
+  @Override
+  public boolean seekToNewSource(long targetPos) {
+    return false;
+  }
+
+  @Override
+  public int read(long pos, byte[] buffer, int offset, int length) throws IOException {
+    FSDataInputStream stream = acquireStream();
+    try {
+      return stream.read(pos, buffer, offset, length);
+    } finally {
+      releaseStream(stream);
+    }
+  }
+
+  @Override
+  public void readFully(long pos, byte[] buffer, int offset, int length) throws IOException {
+    FSDataInputStream stream = acquireStream();
+    try {
+      stream.readFully(pos, buffer, offset, length);
+    } finally {
+      releaseStream(stream);
+    }
+  }
+
+  @Override
+  public void readFully(long pos, byte[] buffer) throws IOException {
+    readFully(pos, buffer, 0, buffer.length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    cancelBlocks();
+    block = EMPTY;
+    List<FSDataInputStream> idle;
+    synchronized (streams) {
+      // streams still reading a block are closed once they are released
+      closed = true;
+      idle = new ArrayList<>(streams);
+      streams.clear();
+    }
+    IOException failure = null;
+    for (FSDataInputStream stream : idle) {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Makes the next block read ahead the current block, waiting for it if it has not been read yet.
+   *
+   * @return false if the end of the file was reached
+   */
+  private boolean nextBlock() throws IOException {
+    if (closed) {
+      throw new IOException(String.format("Stream of %s is closed.", path));
+    }
+    if (lastBlock && blocks.isEmpty()) {
+      return false;
+    }
+    try {
+      fillBlocks();
+      if (blocks.isEmpty()) {
+        // all permits are held by dropped blocks that are still being read
+        permits.acquire();
+        submit();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(String.format("Interrupted while reading %s.", path));
+    }
+    BlockRead blockRead = blocks.poll();
+    try {
+      block = blockRead.future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      blockRead.cancel();
+      throw new InterruptedIOException(String.format("Interrupted while reading %s.", path));
+    } catch (ExecutionException e) {
+      permits.release();
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(String.format("Failed to read %s.", path), cause);
+    }
+    // the current block is held besides the blocks in flight
+    permits.release();
+    blockPosition = 0;
+    if (block.length < blockSize && !lastBlock) {
+      // the blocks after the end of the file are empty
+      lastBlock = true;
+      cancelBlocks();
+    }
+    if (!lastBlock) {
+      fillBlocks();
+    }
+    return block.length > 0;
+  }
+
+  private void fillBlocks() {
+    while (blocks.size() < blocksInFlight && permits.tryAcquire()) {
+      submit();
+    }
+  }
+
+  /**
+   * Starts reading the next block, with a permit that was acquired for it.
+   */
+  private void submit() {
+    BlockRead blockRead = new BlockRead(nextBlock);
+    blockRead.future = pool.submit(blockRead);
+    blocks.add(blockRead);
+    nextBlock += blockSize;
+  }
+
+  private void cancelBlocks() {
+    for (BlockRead blockRead : blocks) {
+      blockRead.cancel();
+    }
+    blocks.clear();
+  }
+
+  private byte[] readBlock(long blockStart) throws IOException {
+    byte[] buffer = new byte[blockSize];
+    int length = 0;
+    FSDataInputStream stream = acquireStream();
+    try {
+      while (length < blockSize) {
+        int read = stream.read(blockStart + length, buffer, length, blockSize - length);
+        if (read < 0) {
+          break;
+        }
+        length += read;
+      }
+    } finally {
+      releaseStream(stream);
+    }
+    return length == blockSize ? buffer : Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * A block read on the pool. Its permit is released by whoever is the last to hold its buffer: the reader once it
+   * took the block, or when the block is dropped, the block itself if it is being read and otherwise the stream.
+   */
+  private final class BlockRead implements Callable<byte[]> {
+    private static final int QUEUED = 0;
+    private static final int READING = 1;
+    private static final int READ = 2;
+    private static final int CANCELLED = 3;
+
+    private final long start;
+    private final AtomicInteger state = new AtomicInteger(QUEUED);
+    private Future<byte[]> future;
+
+    private BlockRead(long start) {
+      this.start = start;
+    }
+
+    @Override
+    public byte[] call() throws IOException {
+      if (!state.compareAndSet(QUEUED, READING)) {
+        return EMPTY;
+      }
+      try {
+        return readBlock(start);
+      } finally {
+        if (!state.compareAndSet(READING, READ)) {
+          // dropped while it was read, so the buffer is released here
+          permits.release();
+        }
+      }
+    }
+
+    private void cancel() {
+      future.cancel(false);
+      int previous = state.getAndSet(CANCELLED);
+      if (previous == QUEUED || previous == READ) {
+        permits.release();
+      }
+    }
+  }
+
+  private FSDataInputStream acquireStream() throws IOException {
+    synchronized (streams) {
+      if (!streams.isEmpty()) {
+        return streams.remove(streams.size() - 1);
+      }
+    }
+    return fs.open(path);
+  }
+
+  private void releaseStream(FSDataInputStream stream) throws IOException {
+    synchronized (streams) {
+      if (!closed) {
+        streams.add(stream);
+        return;
+      }
+    }
+    stream.close();
+  }
+}
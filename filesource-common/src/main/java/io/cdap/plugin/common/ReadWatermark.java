@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The times of the files that are still to be read by a stateful file source.
+ *
+ * Files with a time at or after the watermark have not been read yet. Files with an earlier time have been read,
+ * except for the ones in the pending intervals, which were to be read by runs that failed. The intervals are kept
+ * sorted and merged, so checking a time is a binary search and the state does not grow with the number of runs.
+ * Start times are inclusive and end times are exclusive.
+ */
+public final class ReadWatermark {
+  private static final Gson GSON = new Gson();
+  // once there are more intervals, the two closest ones are merged, so some files may be read again
+  private static final int MAX_INTERVALS = 1000;
+
+  private final long watermark;
+  private long[] starts;
+  private long[] ends;
+
+  public ReadWatermark(long watermark) {
+    this.watermark = watermark;
+    this.starts = new long[0];
+    this.ends = new long[0];
+  }
+
+  /**
+   * Converts the list of dates kept by previous versions of the time filter. Every pair of dates is a pending
+   * interval and the last date is the watermark.
+   */
+  public static ReadWatermark fromDates(List<Date> dates) {
+    ReadWatermark result = new ReadWatermark(dates.isEmpty() ? 0L : dates.get(dates.size() - 1).getTime());
+    for (int i = 0; i < dates.size() / 2; i++) {
+      result.addInterval(dates.get(2 * i).getTime(), dates.get(2 * i + 1).getTime());
+    }
+    return result;
+  }
+
+  public static ReadWatermark fromJson(String json) {
+    return GSON.fromJson(json, ReadWatermark.class);
+  }
+
+  public String toJson() {
+    return GSON.toJson(this);
+  }
+
+  public long getWatermark() {
+    return watermark;
+  }
+
+  /**
+   * Returns the number of pending intervals.
+   */
+  public int getIntervals() {
+    return starts.length;
+  }
+
+  /**
+   * Returns whether a file with the given time is to be read by a run that reads files up to the given cutoff.
+   */
+  public boolean isToRead(long time, long cutoff) {
+    return (time >= watermark && time < cutoff) || isPending(time);
+  }
+
+  /**
+   * Returns whether the given time is in one of the pending intervals.
+   */
+  public boolean isPending(long time) {
+    int index = Arrays.binarySearch(starts, time);
+    if (index >= 0) {
+      return true;
+    }
+    // the interval starting before the time is the only one that may contain it
+    int before = -index - 2;
+    return before >= 0 && time < ends[before];
+  }
+
+  /**
+   * Returns whether any time in the given range is to be read by a run that reads files up to the given cutoff.
+   *
+   * @param start inclusive start of the range
+   * @param end exclusive end of the range
+   */
+  public boolean isAnyToRead(long start, long end, long cutoff) {
+    if (start < cutoff && end > watermark) {
+      return true;
+    }
+    // the interval starting at or before the start of the range, or else the first one starting after it
+    int index = Arrays.binarySearch(starts, start);
+    int next = index >= 0 ? index : -index - 1;
+    if (index < 0 && next > 0 && ends[next - 1] > start) {
+      return true;
+    }
+    return next < starts.length && starts[next] < end;
+  }
+
+  /**
+   * Adds the times read by a failed run, which read the files from the given state up to the given cutoff, to the
+   * pending intervals.
+   */
+  public void addFailed(ReadWatermark failed, long cutoff) {
+    addInterval(failed.watermark, cutoff);
+    for (int i = 0; i < failed.starts.length; i++) {
+      addInterval(failed.starts[i], failed.ends[i]);
+    }
+  }
+
+  /**
+   * Adds an interval to the pending intervals, merging it with the ones it overlaps or touches.
+   */
+  public void addInterval(long start, long end) {
+    if (start >= end) {
+      return;
+    }
+    List<long[]> intervals = new ArrayList<>(starts.length + 1);
+    for (int i = 0; i < starts.length; i++) {
+      intervals.add(new long[] {starts[i], ends[i]});
+    }
+    intervals.add(new long[] {start, end});
+    Collections.sort(intervals, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] first, long[] second) {
+        return Long.compare(first[0], second[0]);
+      }
+    });
+
+    List<long[]> merged = new ArrayList<>(intervals.size());
+    for (long[] interval : intervals) {
+      long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && interval[0] <= last[1]) {
+        last[1] = Math.max(last[1], interval[1]);
+      } else {
+        merged.add(interval);
+      }
+    }
+    while (merged.size() > MAX_INTERVALS) {
+      int closest = 0;
+      for (int i = 1; i < merged.size() - 1; i++) {
+        if (merged.get(i + 1)[0] - merged.get(i)[1] < merged.get(closest + 1)[0] - merged.get(closest)[1]) {
+          closest = i;
+        }
+      }
+      merged.get(closest)[1] = merged.remove(closest + 1)[1];
+    }
+
+    starts = new long[merged.size()];
+    ends = new long[merged.size()];
+    for (int i = 0; i < merged.size(); i++) {
+      starts[i] = merged.get(i)[0];
+      ends[i] = merged.get(i)[1];
+    }
+  }
+}
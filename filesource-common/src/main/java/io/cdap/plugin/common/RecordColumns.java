@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.generic.GenericFixed;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The columns that the record readers of {@link PathTrackingInputFormat} read from files, which are the fields of the
+ * output schema except for the path field.
+ *
+ * The names, types and nullability of the columns are resolved once, so the readers can look them up by position
+ * for every record.
+ */
+final class RecordColumns {
+  private final Schema schema;
+  private final String pathField;
+  private final String[] names;
+  private final Schema.Type[] types;
+  private final boolean[] nullable;
+
+  RecordColumns(Schema schema, @Nullable String pathField) {
+    this.schema = schema;
+    this.pathField = pathField;
+    List<Schema.Field> columns = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      if (!field.getName().equals(pathField)) {
+        columns.add(field);
+      }
+    }
+    names = new String[columns.size()];
+    types = new Schema.Type[columns.size()];
+    nullable = new boolean[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      Schema fieldSchema = columns.get(i).getSchema();
+      if (!isSupported(fieldSchema)) {
+        throw new IllegalArgumentException(String.format("Field '%s' is of unsupported type '%s'.",
+                                                         columns.get(i).getName(), fieldSchema.getDisplayName()));
+      }
+      names[i] = columns.get(i).getName();
+      nullable[i] = fieldSchema.isNullable();
+      types[i] = fieldSchema.isNullable() ? fieldSchema.getNonNullable().getType() : fieldSchema.getType();
+    }
+  }
+
+  /**
+   * Returns whether fields of the given schema can be read from files.
+   */
+  static boolean isSupported(Schema fieldSchema) {
+    Schema nonNullable = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+    if (nonNullable.getLogicalType() != null) {
+      return false;
+    }
+    switch (nonNullable.getType()) {
+      case STRING:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BOOLEAN:
+      case BYTES:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  int size() {
+    return names.length;
+  }
+
+  /**
+   * Returns the position of the column with the given name, or -1 if there is none.
+   */
+  int indexOf(String name) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  String getName(int column) {
+    return names[column];
+  }
+
+  Schema.Type getType(int column) {
+    return types[column];
+  }
+
+  boolean isNullable(int column) {
+    return nullable[column];
+  }
+
+  /**
+   * Converts a non-null value read from a file, such as an Avro Utf8 or a ByteBuffer, to the type of the given
+   * column. Integers and floats are widened, so an int column of a file can be read into a long field, and binary
+   * values are decoded as UTF-8 when they are read into a string field.
+   */
+  Object convert(int column, Object value) {
+    switch (types[column]) {
+      case STRING:
+        byte[] utf8 = toBytes(value);
+        return utf8 == null ? value.toString() : new String(utf8, StandardCharsets.UTF_8);
+      case INT:
+        if (value instanceof Integer) {
+          return value;
+        }
+        break;
+      case LONG:
+        if (value instanceof Integer || value instanceof Long) {
+          return ((Number) value).longValue();
+        }
+        break;
+      case FLOAT:
+        if (value instanceof Float || value instanceof Integer || value instanceof Long) {
+          return ((Number) value).floatValue();
+        }
+        break;
+      case DOUBLE:
+        if (value instanceof Number) {
+          return ((Number) value).doubleValue();
+        }
+        break;
+      case BOOLEAN:
+        if (value instanceof Boolean) {
+          return value;
+        }
+        break;
+      default:
+        byte[] bytes = toBytes(value);
+        if (bytes != null) {
+          return bytes;
+        }
+    }
+    throw new IllegalArgumentException(String.format("Value of class %s cannot be read into field '%s' of type '%s'.",
+                                                     value.getClass().getName(), names[column],
+                                                     types[column].name().toLowerCase()));
+  }
+
+  /**
+   * Returns the bytes of a binary value, like an Orc binary, an Avro bytes or an Avro fixed value, or null if the value
+   * is not binary.
+   */
+  @Nullable
+  private static byte[] toBytes(Object value) {
+    if (value instanceof byte[]) {
+      return (byte[]) value;
+    }
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    if (value instanceof GenericFixed) {
+      return ((GenericFixed) value).bytes();
+    }
+    return null;
+  }
+
+  /**
+   * Builds a record from the converted values of the columns, which are null for missing values, and the path.
+   *
+   * @throws IllegalArgumentException if a non-nullable field has no value
+   */
+  StructuredRecord build(Object[] values, String path) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < names.length; i++) {
+      if (values[i] != null) {
+        builder.set(names[i], values[i]);
+      } else if (!nullable[i]) {
+        throw new IllegalArgumentException(String.format("Non-nullable field '%s' has no value in a record of %s.",
+                                                         names[i], path));
+      }
+    }
+    if (pathField != null) {
+      builder.set(pathField, path);
+    }
+    return builder.build();
+  }
+}
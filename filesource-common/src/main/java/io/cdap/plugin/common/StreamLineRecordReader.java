@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.util.LineReader;
+
+import java.io.IOException;
+
+/**
+ * Reads lines like the LineRecordReader of TextInputFormat, but from the stream that {@link PathTrackingInputFormat}
+ * opens, so that lines are read from a stream that reads ahead. Only files that are not compressed or whose codec
+ * cannot be split are read, and lines end at a line feed, a carriage return or both.
+ */
+final class StreamLineRecordReader extends RecordReader<LongWritable, Text> {
+  private final LongWritable key = new LongWritable();
+  private final Text value = new Text();
+
+  private FSDataInputStream fileIn;
+  private LineReader in;
+  private Decompressor decompressor;
+  private long splitStart;
+  private long splitLength;
+  // the position of the next line, relative to the start of the decompressed file
+  private long position;
+  private long end;
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    FileSplit fileSplit = (FileSplit) split;
+    Configuration conf = context.getConfiguration();
+    Path file = fileSplit.getPath();
+    splitStart = fileSplit.getStart();
+    splitLength = fileSplit.getLength();
+    fileIn = PathTrackingInputFormat.open(conf, fileSplit);
+
+    CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+    if (codec != null) {
+      // compressed files are not split, so the split holds the whole file
+      decompressor = CodecPool.getDecompressor(codec);
+      in = new LineReader(codec.createInputStream(fileIn, decompressor), conf);
+      end = Long.MAX_VALUE;
+    } else {
+      fileIn.seek(splitStart);
+      in = new LineReader(fileIn, conf);
+      position = splitStart;
+      end = splitStart + splitLength;
+    }
+    if (position != 0) {
+      // the line that starts before the split is read by the previous split
+      position += in.readLine(new Text());
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    // a line belongs to the split it starts in
+    if (position > end) {
+      return false;
+    }
+    key.set(position);
+    int size = in.readLine(value);
+    if (size == 0) {
+      return false;
+    }
+    position += size;
+    return true;
+  }
+
+  @Override
+  public LongWritable getCurrentKey() {
+    return key;
+  }
+
+  @Override
+  public Text getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() throws IOException {
+    if (splitLength == 0) {
+      return 0.0f;
+    }
+    return Math.min(1.0f, (fileIn.getPos() - splitStart) / (float) splitLength);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (in != null) {
+        in.close();
+      }
+    } finally {
+      if (decompressor != null) {
+        CodecPool.returnDecompressor(decompressor);
+        decompressor = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Parses the timestamps in file and directory names with a fixed width date pattern, such as yyyy-MM-dd-HH or
+ * yyyy/MM/dd/HH.
+ *
+ * The pattern is compiled once into a list of numeric fields and literal characters, and parsing walks the text
+ * without allocating or throwing for text that does not match, unlike {@link java.text.SimpleDateFormat}. Supported
+ * fields are yyyy, MM, dd, HH, mm and ss. Other characters must appear literally, and letters have to be quoted, as in
+ * 'dt='yyyy-MM-dd. Times are in the default time zone, like those of {@link java.text.SimpleDateFormat}.
+ */
+public final class TimestampParser {
+  /**
+   * Returned by {@link #parse(CharSequence, int, int)} for text that does not match the pattern.
+   */
+  public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+  private static final int YEAR = 0;
+  private static final int MONTH = 1;
+  private static final int DAY = 2;
+  private static final int HOUR = 3;
+  private static final int MINUTE = 4;
+  private static final int SECOND = 5;
+  private static final String FIELDS = "yMdHms";
+  private static final int[] WIDTHS = {4, 2, 2, 2, 2, 2};
+  private static final int[] MIN_VALUES = {0, 1, 1, 0, 0, 0};
+  private static final int[] MAX_VALUES = {9999, 12, 31, 23, 59, 59};
+  // the field of each element of the pattern, or -1 for a literal character
+  private final int[] elementFields;
+  private final char[] literals;
+  private final int length;
+  private final boolean spansDirectories;
+  private final TimeZone timeZone;
+
+  private TimestampParser(int[] elementFields, char[] literals, int length) {
+    this.elementFields = elementFields;
+    this.literals = literals;
+    this.length = length;
+    this.spansDirectories = new String(literals).indexOf('/') >= 0;
+    this.timeZone = TimeZone.getDefault();
+  }
+
+  /**
+   * Compiles the given pattern.
+   *
+   * @throws IllegalArgumentException if the pattern contains unsupported fields
+   */
+  public static TimestampParser compile(String pattern) {
+    List<Integer> fields = new ArrayList<>();
+    StringBuilder literals = new StringBuilder();
+    int length = 0;
+    int i = 0;
+    while (i < pattern.length()) {
+      char c = pattern.charAt(i);
+      if (c == '\'') {
+        // quoted text is literal, so that directory names like dt=2024-06-16 can be matched
+        int end = pattern.indexOf('\'', i + 1);
+        if (end < 0) {
+          throw new IllegalArgumentException(String.format("Unterminated quote in timestamp pattern '%s'.", pattern));
+        }
+        String quoted = end == i + 1 ? "'" : pattern.substring(i + 1, end);
+        for (int j = 0; j < quoted.length(); j++) {
+          fields.add(-1);
+          literals.append(quoted.charAt(j));
+        }
+        length += quoted.length();
+        i = end + 1;
+        continue;
+      }
+      if (!Character.isLetter(c)) {
+        fields.add(-1);
+        literals.append(c);
+        length++;
+        i++;
+        continue;
+      }
+      int field = FIELDS.indexOf(c);
+      int end = i;
+      while (end < pattern.length() && pattern.charAt(end) == c) {
+        end++;
+      }
+      if (field < 0 || end - i != WIDTHS[field]) {
+        throw new IllegalArgumentException(String.format(
+          "Unsupported field '%s' in timestamp pattern '%s'. Supported fields are yyyy, MM, dd, HH, mm and ss.",
+          pattern.substring(i, end), pattern));
+      }
+      fields.add(field);
+      literals.append(c);
+      length += WIDTHS[field];
+      i = end;
+    }
+    int[] elementFields = new int[fields.size()];
+    for (int j = 0; j < elementFields.length; j++) {
+      elementFields[j] = fields.get(j);
+    }
+    return new TimestampParser(elementFields, literals.toString().toCharArray(), length);
+  }
+
+  /**
+   * Returns whether the pattern contains a '/', so that the timestamp is in the names of nested directories.
+   */
+  public boolean spansDirectories() {
+    return spansDirectories;
+  }
+
+  /**
+   * Parses the timestamp at the given start of the text. Text after the timestamp is ignored.
+   *
+   * @return the timestamp in milliseconds, or {@link #NO_TIMESTAMP} if the text does not match the pattern
+   */
+  public long parse(CharSequence text, int start, int end) {
+    if (end - start < length) {
+      return NO_TIMESTAMP;
+    }
+    int year = 1970;
+    int month = 1;
+    int day = 1;
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+    int position = start;
+    for (int i = 0; i < elementFields.length; i++) {
+      int field = elementFields[i];
+      if (field < 0) {
+        if (text.charAt(position++) != literals[i]) {
+          return NO_TIMESTAMP;
+        }
+        continue;
+      }
+      int value = parseField(text, position, field);
+      if (value < 0) {
+        return NO_TIMESTAMP;
+      }
+      position += WIDTHS[field];
+      switch (field) {
+        case YEAR:
+          year = value;
+          break;
+        case MONTH:
+          month = value;
+          break;
+        case DAY:
+          day = value;
+          break;
+        case HOUR:
+          hour = value;
+          break;
+        case MINUTE:
+          minute = value;
+          break;
+        default:
+          second = value;
+      }
+    }
+    return toMillis(year, month, day, hour, minute, second);
+  }
+
+  /**
+   * Parses as many fields of the pattern as the given text holds, such as the year and month of the path 2024/06 with
+   * the pattern yyyy/MM/dd/HH, and returns the range of times they cover.
+   *
+   * @return the inclusive start and exclusive end of the range in milliseconds, or null if the text does not start
+   *         with a complete field of the pattern or the fields of the pattern do not start with the year
+   */
+  @Nullable
+  public long[] parseRange(CharSequence text) {
+    int[] values = {1970, 1, 1, 0, 0, 0};
+    int lastField = -1;
+    int position = 0;
+    for (int i = 0; i < elementFields.length && position < text.length(); i++) {
+      int field = elementFields[i];
+      if (field < 0) {
+        if (text.charAt(position++) != literals[i]) {
+          break;
+        }
+        continue;
+      }
+      if (position + WIDTHS[field] > text.length()) {
+        break;
+      }
+      int value = parseField(text, position, field);
+      if (value < 0) {
+        break;
+      }
+      if (field != lastField + 1) {
+        // the range of a partial timestamp is only known if its fields go from years down
+        return null;
+      }
+      values[field] = value;
+      lastField = field;
+      position += WIDTHS[field];
+    }
+    if (lastField < 0) {
+      return null;
+    }
+    long start = toMillis(values[YEAR], values[MONTH], values[DAY], values[HOUR], values[MINUTE], values[SECOND]);
+    long end;
+    switch (lastField) {
+      case YEAR:
+        end = toMillis(values[YEAR] + 1, 1, 1, 0, 0, 0);
+        break;
+      case MONTH:
+        end = values[MONTH] == 12 ? toMillis(values[YEAR] + 1, 1, 1, 0, 0, 0) :
+          toMillis(values[YEAR], values[MONTH] + 1, 1, 0, 0, 0);
+        break;
+      case DAY:
+        end = toMillis(values[YEAR], values[MONTH], values[DAY], 24, 0, 0);
+        break;
+      case HOUR:
+        end = start + TimeUnit.HOURS.toMillis(1);
+        break;
+      case MINUTE:
+        end = start + TimeUnit.MINUTES.toMillis(1);
+        break;
+      default:
+        end = start + TimeUnit.SECONDS.toMillis(1);
+    }
+    return new long[] {start, end};
+  }
+
+  private static int parseField(CharSequence text, int position, int field) {
+    int value = 0;
+    for (int i = position; i < position + WIDTHS[field]; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value < MIN_VALUES[field] || value > MAX_VALUES[field] ? -1 : value;
+  }
+
+  private long toMillis(int year, int month, int day, int hour, int minute, int second) {
+    long local = TimeUnit.DAYS.toMillis(toEpochDay(year, month, day)) + TimeUnit.HOURS.toMillis(hour) +
+      TimeUnit.MINUTES.toMillis(minute) + TimeUnit.SECONDS.toMillis(second);
+    // like Calendar, take the offset at the local time read as standard time, which picks standard time for the hour
+    // repeated when daylight saving time ends
+    return local - timeZone.getOffset(local - timeZone.getRawOffset());
+  }
+
+  /**
+   * Returns the number of days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+   */
+  private static long toEpochDay(long year, int month, int day) {
+    // shift the year to start in March, so the leap day is the last day of the year
+    long y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+}
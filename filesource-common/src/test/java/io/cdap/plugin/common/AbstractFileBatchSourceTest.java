@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link AbstractFileBatchSource}.
+ */
+public class AbstractFileBatchSourceTest {
+  private static final long MB = 1024 * 1024;
+
+  @Test
+  public void testSplitSize() {
+    // the input is divided over the target splits
+    Assert.assertEquals(10 * MB, AbstractFileBatchSource.getSplitSize(1000 * MB, 100, MB, 128 * MB));
+    Assert.assertEquals(10 * MB + 1, AbstractFileBatchSource.getSplitSize(1000 * MB + 1, 100, MB, 128 * MB));
+    // small inputs are not cut into tiny splits
+    Assert.assertEquals(MB, AbstractFileBatchSource.getSplitSize(5 * MB, 100, MB, 128 * MB));
+    Assert.assertEquals(MB, AbstractFileBatchSource.getSplitSize(0, 100, MB, 128 * MB));
+    // huge inputs do not get splits larger than the maximum
+    Assert.assertEquals(128 * MB, AbstractFileBatchSource.getSplitSize(1000000 * MB, 100, MB, 128 * MB));
+  }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for {@link BatchFileFilter}. Plans the input of a synthetic directory tree on the local file system with the
+ * status aware listing and with the listing of {@link FileInputFormat}, and records the time and the number of file
+ * system calls each of them takes.
+ */
+public class BatchFileFilterTest {
+  private static final Logger LOG = LoggerFactory.getLogger(BatchFileFilterTest.class);
+  private static final int DAYS = 10;
+  private static final int HOURS = 24;
+  private static final int FILES = 20;
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static File root;
+
+  @BeforeClass
+  public static void setupClass() throws IOException {
+    root = TEMP_FOLDER.newFolder("input");
+    for (int day = 0; day < DAYS; day++) {
+      for (int hour = 0; hour < HOURS; hour++) {
+        File dir = new File(root, String.format("day=%02d/hour=%02d", day, hour));
+        Assert.assertTrue(dir.mkdirs());
+        for (int i = 0; i < FILES; i++) {
+          Assert.assertTrue(new File(dir, "part-" + i + (i % 2 == 0 ? ".csv" : ".txt")).createNewFile());
+        }
+        Assert.assertTrue(new File(dir, "_SUCCESS").createNewFile());
+      }
+    }
+  }
+
+  @Test
+  public void testRecursiveListing() throws Exception {
+    Job job = createJob(".*\\.csv", true);
+    CountingFileSystem.reset();
+    long start = System.nanoTime();
+    List<FileStatus> files = BatchFileFilter.listStatus(job);
+    long statusAwareMillis = (System.nanoTime() - start) / 1000000;
+    int statusAwareCalls = CountingFileSystem.CALLS.get();
+
+    Assert.assertNotNull(files);
+    Assert.assertEquals(DAYS * HOURS * FILES / 2, files.size());
+    for (FileStatus file : files) {
+      Assert.assertTrue(file.getPath().getName().endsWith(".csv"));
+    }
+    Assert.assertEquals(0, CountingFileSystem.CONTENT_SUMMARY_CALLS.get());
+    // one listing per directory and the calls to resolve the input path, regardless of the number of files
+    Assert.assertTrue(statusAwareCalls <= DAYS * HOURS + DAYS + 10);
+
+    CountingFileSystem.reset();
+    start = System.nanoTime();
+    List<FileStatus> expected = new ListingTextInputFormat().list(job);
+    long pathFilterMillis = (System.nanoTime() - start) / 1000000;
+    Assert.assertEquals(getPaths(expected), getPaths(files));
+
+    LOG.info(String.format("Planned %d of %d files: status aware listing took %d ms and %d file system calls, " +
+                             "path filter listing took %d ms and %d file system calls.",
+                           files.size(), DAYS * HOURS * FILES, statusAwareMillis, statusAwareCalls,
+                           pathFilterMillis, CountingFileSystem.CALLS.get()));
+  }
+
+  @Test
+  public void testParallelListing() throws Exception {
+    Job job = createJob(".*\\.csv", true);
+    long start = System.nanoTime();
+    List<FileStatus> expected = BatchFileFilter.listStatus(job);
+    long sequentialMillis = (System.nanoTime() - start) / 1000000;
+
+    job.getConfiguration().setInt(FileInputFormat.LIST_STATUS_NUM_THREADS, 8);
+    CountingFileSystem.reset();
+    start = System.nanoTime();
+    List<FileStatus> files = BatchFileFilter.listStatus(job);
+    long parallelMillis = (System.nanoTime() - start) / 1000000;
+
+    Assert.assertNotNull(expected);
+    Assert.assertNotNull(files);
+    Assert.assertEquals(expected.size(), files.size());
+    Assert.assertEquals(getPaths(expected), getPaths(files));
+    // every directory is still listed exactly once
+    Assert.assertTrue(CountingFileSystem.CALLS.get() <= DAYS * HOURS + DAYS + 10);
+
+    LOG.info(String.format("Planned %d files: sequential listing took %d ms, listing with 8 threads took %d ms.",
+                           files.size(), sequentialMillis, parallelMillis));
+  }
+
+  @Test
+  public void testNonRecursiveListing() throws Exception {
+    Job job = createJob(".*/hour=0[0-4]/part-.*", false);
+    FileInputFormat.setInputPaths(job, new Path(new File(root, "day=00").toURI()));
+    List<FileStatus> files = BatchFileFilter.listStatus(job);
+    Assert.assertNotNull(files);
+    // only the directories matching the directory part of the regex are listed, but not descended into
+    Assert.assertEquals(5, files.size());
+    for (FileStatus file : files) {
+      Assert.assertTrue(file.isDirectory());
+    }
+  }
+
+  @Test
+  public void testDateDirectoryPruning() throws Exception {
+    File dates = TEMP_FOLDER.newFolder("dates");
+    for (int day = 1; day <= 3; day++) {
+      for (int hour = 0; hour < HOURS; hour++) {
+        File dir = new File(dates, String.format("2020/01/%02d/%02d", day, hour));
+        Assert.assertTrue(dir.mkdirs());
+        Assert.assertTrue(new File(dir, "part-0.csv").createNewFile());
+        Assert.assertTrue(new File(dir, "part-1.csv").createNewFile());
+      }
+    }
+    Job job = createJob(AbstractFileBatchSource.USE_TIMEFILTER, true);
+    Path input = new Path(dates.toURI());
+    job.getConfiguration().set(AbstractFileBatchSource.INPUT_NAME_CONFIG, input.toString());
+    job.getConfiguration().set(AbstractFileBatchSource.CUTOFF_READ_TIME, "2020-01-03-00");
+    job.getConfiguration().set(AbstractFileBatchSource.TIMESTAMP_PATTERN_CONFIG, "yyyy/MM/dd/HH");
+    long watermark = new SimpleDateFormat("yyyy-MM-dd-HH").parse("2020-01-02-10").getTime();
+    job.getConfiguration().set(AbstractFileBatchSource.READ_WATERMARK, new ReadWatermark(watermark).toJson());
+    FileInputFormat.setInputPaths(job, input);
+
+    CountingFileSystem.reset();
+    List<FileStatus> files = BatchFileFilter.listStatus(job);
+    Assert.assertNotNull(files);
+    // only the hours from the watermark up to the cutoff are read
+    Assert.assertEquals(14 * 2, files.size());
+    for (FileStatus file : files) {
+      String hour = file.getPath().getParent().getName();
+      Assert.assertEquals("02", file.getPath().getParent().getParent().getName());
+      Assert.assertTrue(Integer.parseInt(hour) >= 10);
+    }
+    // the other days and hours are skipped without listing them
+    Assert.assertTrue(CountingFileSystem.CALLS.get() <= 14 + 4 + 4);
+  }
+
+  @Test
+  public void testOtherFilter() throws Exception {
+    Job job = createJob(".*", true);
+    job.getConfiguration().unset(FileInputFormat.PATHFILTER_CLASS);
+    Assert.assertNull(BatchFileFilter.listStatus(job));
+  }
+
+  private static Job createJob(String regex, boolean recursive) throws IOException {
+    Configuration conf = new Configuration();
+    conf.set("fs.file.impl", CountingFileSystem.class.getName());
+    Job job = Job.getInstance(conf);
+    Path input = new Path(root.toURI());
+    job.getConfiguration().set(AbstractFileBatchSource.INPUT_NAME_CONFIG, input.toString());
+    job.getConfiguration().set(AbstractFileBatchSource.INPUT_REGEX_CONFIG, regex);
+    job.getConfiguration().set(AbstractFileBatchSource.CUTOFF_READ_TIME, "2020-01-01-00");
+    FileInputFormat.setInputPathFilter(job, BatchFileFilter.class);
+    FileInputFormat.setInputDirRecursive(job, recursive);
+    FileInputFormat.addInputPath(job, input);
+    return job;
+  }
+
+  private static Set<String> getPaths(List<FileStatus> files) {
+    Set<String> paths = new TreeSet<>();
+    for (FileStatus file : files) {
+      paths.add(file.getPath().toUri().getPath());
+    }
+    return paths;
+  }
+
+  /**
+   * Exposes the listing of {@link FileInputFormat}, which calls {@link BatchFileFilter#accept(Path)}.
+   */
+  private static final class ListingTextInputFormat extends TextInputFormat {
+    private List<FileStatus> list(JobContext job) throws IOException {
+      return super.listStatus(job);
+    }
+  }
+
+  /**
+   * A local file system that counts the calls made to it. It returns statuses with fixed permissions, like a remote
+   * file system returns the status of all children of a directory in a single call, so that listing does not run a
+   * command for every file to load its permissions.
+   */
+  public static final class CountingFileSystem extends RawLocalFileSystem {
+    private static final AtomicInteger CALLS = new AtomicInteger();
+    private static final AtomicInteger CONTENT_SUMMARY_CALLS = new AtomicInteger();
+
+    private static void reset() {
+      CALLS.set(0);
+      CONTENT_SUMMARY_CALLS.set(0);
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path path) throws IOException {
+      CALLS.incrementAndGet();
+      File file = pathToFile(path);
+      if (!file.exists()) {
+        throw new FileNotFoundException("File " + path + " does not exist");
+      }
+      return toStatus(file, makeQualified(path));
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path path) throws IOException {
+      CALLS.incrementAndGet();
+      File dir = pathToFile(path);
+      File[] files = dir.listFiles();
+      if (files == null) {
+        if (!dir.exists()) {
+          throw new FileNotFoundException("File " + path + " does not exist");
+        }
+        return new FileStatus[] {toStatus(dir, makeQualified(path))};
+      }
+      FileStatus[] statuses = new FileStatus[files.length];
+      for (int i = 0; i < files.length; i++) {
+        statuses[i] = toStatus(files[i], makeQualified(new Path(path, files[i].getName())));
+      }
+      return statuses;
+    }
+
+    @Override
+    public ContentSummary getContentSummary(Path path) throws IOException {
+      CONTENT_SUMMARY_CALLS.incrementAndGet();
+      return super.getContentSummary(path);
+    }
+
+    private FileStatus toStatus(File file, Path path) {
+      return new FileStatus(file.length(), file.isDirectory(), 1, getDefaultBlockSize(path), file.lastModified(),
+                            file.lastModified(), FsPermission.getDefault(), "user", "group", path);
+    }
+  }
+}
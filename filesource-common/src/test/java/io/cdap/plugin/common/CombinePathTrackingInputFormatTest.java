@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Test for {@link CombinePathTrackingInputFormat}.
+ */
+public class CombinePathTrackingInputFormatTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+
+  @Before
+  public void setUp() throws IOException {
+    root = temporaryFolder.newFolder("input");
+    write("large.txt", 100000);
+    for (int i = 0; i < 30; i++) {
+      write("small-" + i + ".txt", 1000);
+    }
+  }
+
+  @Test
+  public void testBalancedSplits() throws Exception {
+    List<InputSplit> splits = getSplits(50000, 1);
+    Assert.assertEquals(3, splits.size());
+    long minLength = Long.MAX_VALUE;
+    long maxLength = 0;
+    for (InputSplit split : splits) {
+      Assert.assertEquals(0, split.getLocations().length);
+      minLength = Math.min(minLength, split.getLength());
+      maxLength = Math.max(maxLength, split.getLength());
+    }
+    // the large file is spread over the splits, so they differ by at most a small file
+    Assert.assertTrue(maxLength - minLength <= 1000);
+    assertCovered(splits);
+
+    splits = getSplits(50000, 8);
+    Assert.assertEquals(8, splits.size());
+    assertCovered(splits);
+  }
+
+  @Test
+  public void testCompressedFileWeight() throws Exception {
+    write("compressed.gz", 20000);
+    // the compressed file weighs 80000 bytes, more than a split, and cannot be split
+    List<InputSplit> splits = getSplits(70000, 1);
+    Assert.assertEquals(3, splits.size());
+    int compressedSplits = 0;
+    for (InputSplit split : splits) {
+      CombineFileSplit combineSplit = (CombineFileSplit) split;
+      for (Path path : combineSplit.getPaths()) {
+        if (path.getName().equals("compressed.gz")) {
+          Assert.assertEquals(1, combineSplit.getNumPaths());
+          compressedSplits++;
+        }
+      }
+    }
+    Assert.assertEquals(1, compressedSplits);
+    assertCovered(splits);
+  }
+
+  @Test
+  public void testPrefetchFiles() throws Exception {
+    File textRoot = temporaryFolder.newFolder("text");
+    List<Path> paths = new ArrayList<>();
+    List<Long> starts = new ArrayList<>();
+    List<Long> lengths = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      File file = new File(textRoot, "file-" + i + ".txt");
+      writeLines(file, "file " + i, 20);
+      paths.add(new Path(file.toURI()));
+      starts.add(0L);
+      lengths.add(file.length());
+    }
+    // a file that was cut into two blocks, so the second one is prefetched from the middle of the file
+    File large = new File(textRoot, "large.txt");
+    writeLines(large, "large", 1000);
+    for (long start : new long[] {0, large.length() / 2}) {
+      paths.add(new Path(large.toURI()));
+      starts.add(start);
+      lengths.add(start == 0 ? large.length() / 2 : large.length() - start);
+    }
+    CombineFileSplit split = new CombineFileSplit(paths.toArray(new Path[0]),
+                                                  starts.stream().mapToLong(Long::longValue).toArray(),
+                                                  lengths.stream().mapToLong(Long::longValue).toArray(),
+                                                  new String[0]);
+
+    Configuration conf = new Configuration();
+    conf.set("fs.file.impl", ReadAheadInputStreamTest.SlowFileSystem.class.getName());
+    conf.setBoolean("fs.file.impl.disable.cache", true);
+    PathTrackingInputFormat.configureReadAhead(conf, 1, 64 * 1024);
+    long start = System.nanoTime();
+    List<String> lines = readLines(split, conf);
+    long elapsed = System.nanoTime() - start;
+
+    CombinePathTrackingInputFormat.configurePrefetch(conf, 8);
+    start = System.nanoTime();
+    List<String> prefetchedLines = readLines(split, conf);
+    long prefetchedElapsed = System.nanoTime() - start;
+
+    Assert.assertEquals(50 * 20 + 1000, lines.size());
+    Assert.assertEquals("file 0 line 0", lines.get(0));
+    Assert.assertEquals("large line 999", lines.get(lines.size() - 1));
+    Assert.assertEquals(lines, prefetchedLines);
+    // every file waits for the latency before its first bytes without prefetching
+    Assert.assertTrue(prefetchedElapsed < elapsed);
+  }
+
+  private static List<String> readLines(CombineFileSplit split, Configuration conf) throws Exception {
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    List<String> lines = new ArrayList<>();
+    try (RecordReader<NullWritable, StructuredRecord> reader =
+           new CombinePathTrackingInputFormat().createRecordReader(split, context)) {
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        lines.add(reader.getCurrentValue().get("body"));
+      }
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+    }
+    return lines;
+  }
+
+  private static void writeLines(File file, String prefix, int count) throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      text.append(prefix).append(" line ").append(i).append('\n');
+    }
+    try (OutputStream output = new FileOutputStream(file)) {
+      output.write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private List<InputSplit> getSplits(long maxSplitSize, int minSplits) throws IOException {
+    Configuration conf = new Configuration();
+    // not cached, so other tests still get the file system they configure
+    conf.setBoolean("fs.file.impl.disable.cache", true);
+    CombinePathTrackingInputFormat.configureBalanced(conf, minSplits);
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, new Path(root.toURI()));
+    FileInputFormat.setMaxInputSplitSize(job, maxSplitSize);
+    return new CombinePathTrackingInputFormat().getSplits(job);
+  }
+
+  /**
+   * Asserts that every byte of every file is in exactly one split.
+   */
+  private void assertCovered(List<InputSplit> splits) {
+    // the start and end of every block of every file
+    Map<String, TreeMap<Long, Long>> blocks = new HashMap<>();
+    for (InputSplit split : splits) {
+      CombineFileSplit combineSplit = (CombineFileSplit) split;
+      for (int i = 0; i < combineSplit.getNumPaths(); i++) {
+        blocks.computeIfAbsent(combineSplit.getPath(i).getName(), name -> new TreeMap<>())
+          .put(combineSplit.getOffset(i), combineSplit.getOffset(i) + combineSplit.getLength(i));
+      }
+    }
+    File[] files = root.listFiles();
+    Assert.assertEquals(files.length, blocks.size());
+    for (File file : files) {
+      long end = 0;
+      for (Map.Entry<Long, Long> block : blocks.get(file.getName()).entrySet()) {
+        Assert.assertEquals(end, (long) block.getKey());
+        end = block.getValue();
+      }
+      Assert.assertEquals(file.length(), end);
+    }
+  }
+
+  private void write(String name, int length) throws IOException {
+    try (OutputStream output = new FileOutputStream(new File(root, name))) {
+      output.write(new byte[length]);
+    }
+  }
+}
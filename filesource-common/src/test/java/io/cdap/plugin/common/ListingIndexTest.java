@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.dataset.table.Table;
+import com.google.common.collect.ImmutableSet;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Test for {@link ListingIndex}.
+ */
+public class ListingIndexTest {
+  private static final long START = 1500000000000L;
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Map<String, byte[]> rows = new TreeMap<>();
+  private KeyValueTable table;
+  private FileSystem fs;
+  private BatchFileFilter filter;
+  private File root;
+
+  @Before
+  public void setUp() throws IOException {
+    rows.clear();
+    table = new KeyValueTable("index", createTable(rows));
+    root = temporaryFolder.newFolder("input");
+
+    Configuration conf = new Configuration();
+    conf.set(AbstractFileBatchSource.INPUT_NAME_CONFIG, new Path(root.toURI()).toString());
+    conf.set(AbstractFileBatchSource.INPUT_REGEX_CONFIG, ".*\\.csv");
+    conf.set(AbstractFileBatchSource.CUTOFF_READ_TIME, "2020-01-01-00");
+    conf.setBoolean(FileInputFormat.INPUT_DIR_RECURSIVE, true);
+    // not cached, so other tests still get the file system they configure
+    fs = new RawLocalFileSystem();
+    fs.initialize(URI.create("file:///"), conf);
+    filter = new BatchFileFilter();
+    filter.setConf(conf);
+  }
+
+  @Test
+  public void testIncrementalListing() throws Exception {
+    createFile("a/1.csv");
+    createFile("a/2.txt");
+    createFile("b/3.csv");
+    touch("a", 1);
+    touch("b", 1);
+    touch("", 1);
+
+    // the whole input path is new on the first run
+    ListingIndex index = new ListingIndex(table, ".*\\.csv");
+    Assert.assertEquals(ImmutableSet.of(root.getPath()), findNewPaths(index));
+    Assert.assertEquals(3, index.getListed());
+    index.commit();
+
+    index = new ListingIndex(table, ".*\\.csv");
+    Assert.assertEquals(ImmutableSet.of(), findNewPaths(index));
+    Assert.assertEquals(0, index.getListed());
+    Assert.assertEquals(3, index.getChecked());
+
+    createFile("a/4.csv");
+    createFile("a/5.txt");
+    createFile("c/6.csv");
+    touch("a", 2);
+    touch("c", 2);
+    touch("", 2);
+    Set<String> expected = ImmutableSet.of(path("a/4.csv"), path("c"));
+    index = new ListingIndex(table, ".*\\.csv");
+    Assert.assertEquals(expected, findNewPaths(index));
+    // only the changed directories and the new one are listed
+    Assert.assertEquals(3, index.getListed());
+    Assert.assertEquals(1, index.getChecked());
+
+    // a failed run does not commit the index, so the next run finds the same files
+    index = new ListingIndex(table, ".*\\.csv");
+    Assert.assertEquals(expected, findNewPaths(index));
+    index.commit();
+    index = new ListingIndex(table, ".*\\.csv");
+    Assert.assertEquals(ImmutableSet.of(), findNewPaths(index));
+
+    // a different regex has its own index
+    Assert.assertEquals(ImmutableSet.of(root.getPath()), findNewPaths(new ListingIndex(table, ".*")));
+  }
+
+  @Test
+  public void testRemovedDirectory() throws Exception {
+    createFile("a/b/1.csv");
+    createFile("c/2.csv");
+    ListingIndex index = new ListingIndex(table, ".*\\.csv");
+    findNewPaths(index);
+    index.commit();
+    Assert.assertEquals(4, rows.size());
+
+    Assert.assertTrue(new File(root, "a/b/1.csv").delete());
+    Assert.assertTrue(new File(root, "a/b").delete());
+    Assert.assertTrue(new File(root, "a").delete());
+    touch("", 3);
+    index = new ListingIndex(table, ".*\\.csv");
+    Assert.assertEquals(ImmutableSet.of(), findNewPaths(index));
+    index.commit();
+    // the entries of the removed directory and the directory below it are removed
+    Assert.assertEquals(2, rows.size());
+  }
+
+  @Test
+  public void testVirtualDirectoriesAreNotSupported() {
+    Assert.assertTrue(ListingIndex.isSupported("adl://account.azuredatalakestore.net/data"));
+    Assert.assertTrue(ListingIndex.isSupported("/data"));
+    // blob directories do not change their modification time when blobs are added to them
+    Assert.assertFalse(ListingIndex.isSupported("wasb://container@account.blob.core.windows.net/data"));
+    Assert.assertFalse(ListingIndex.isSupported("WASBS://container@account.blob.core.windows.net/data"));
+  }
+
+  private Set<String> findNewPaths(ListingIndex index) throws IOException {
+    FileStatus[] roots = fs.globStatus(new Path(root.toURI()));
+    List<Path> paths = index.findNewPaths(fs, roots, filter, true);
+    Set<String> result = new TreeSet<>();
+    for (Path path : paths) {
+      result.add(path.toUri().getPath());
+    }
+    return result;
+  }
+
+  private String path(String name) {
+    return new File(root, name).getPath();
+  }
+
+  private void createFile(String name) throws IOException {
+    File file = new File(root, name);
+    file.getParentFile().mkdirs();
+    Assert.assertTrue(file.createNewFile());
+  }
+
+  /**
+   * Sets the modification time of a directory, since directories changed in the same millisecond keep their time.
+   */
+  private void touch(String dir, int version) {
+    Assert.assertTrue(new File(root, dir).setLastModified(START + version * 1000L));
+  }
+
+  /**
+   * Creates a {@link Table} that keeps the rows used by {@link KeyValueTable} in the given map.
+   */
+  private static Table createTable(final Map<String, byte[]> rows) {
+    return (Table) Proxy.newProxyInstance(Table.class.getClassLoader(), new Class<?>[] {Table.class},
+                                          new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        String key = args != null && args.length > 0 && args[0] instanceof byte[] ? Bytes.toString((byte[]) args[0])
+          : null;
+        switch (method.getName()) {
+          case "get":
+            return rows.get(key);
+          case "put":
+            rows.put(key, (byte[]) args[2]);
+            return null;
+          case "delete":
+            rows.remove(key);
+            return null;
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test for {@link PathTrackingInputFormat}.
+ */
+public class PathTrackingInputFormatTest {
+  private static final Logger LOG = LoggerFactory.getLogger(PathTrackingInputFormatTest.class);
+  private static final org.apache.avro.Schema AVRO_SCHEMA = SchemaBuilder.record("row").fields()
+    .requiredInt("id").optionalString("name").requiredString("ignored").endRecord();
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRecords() throws Exception {
+    List<byte[]> lines = new ArrayList<>();
+    lines.add("plain text".getBytes(StandardCharsets.UTF_8));
+    lines.add(new byte[0]);
+    lines.add("café 日本 😀".getBytes(StandardCharsets.UTF_8));
+    // invalid UTF-8 is decoded with replacement characters, like Text.toString() does
+    lines.add(new byte[] {'a', (byte) 0xc3, 'b', (byte) 0xff, (byte) 0xe6, (byte) 0x97});
+    File file = write(lines, 1);
+
+    Configuration conf = createConf();
+    PathTrackingInputFormat.configure(conf, "file", true);
+    List<StructuredRecord> records = read(file, conf);
+
+    Assert.assertEquals(lines.size(), records.size());
+    long offset = 0;
+    for (int i = 0; i < lines.size(); i++) {
+      StructuredRecord record = records.get(i);
+      Assert.assertEquals(PathTrackingInputFormat.getOutputSchema("file"), record.getSchema());
+      Assert.assertEquals(offset, (long) record.<Long>get("offset"));
+      Assert.assertEquals(new Text(lines.get(i)).toString(), record.get("body"));
+      Assert.assertEquals(file.getName(), record.get("file"));
+      offset += lines.get(i).length + 1;
+    }
+  }
+
+  @Test
+  public void testReadThroughput() throws Exception {
+    List<byte[]> lines = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      lines.add(String.format("%d,some value %d,été,%d.%d", i, i * 31, i, i % 7)
+                  .getBytes(StandardCharsets.UTF_8));
+    }
+    File file = write(lines, 5000);
+    Configuration conf = createConf();
+    PathTrackingInputFormat.configure(conf, "file", false);
+
+    // the first read warms up the reader, the second one is measured
+    read(file, conf);
+    long start = System.nanoTime();
+    int records = read(file, conf).size();
+    long elapsed = System.nanoTime() - start;
+    Assert.assertEquals(lines.size() * 5000, records);
+    LOG.info("Read {} records of {} bytes in {} ms.",
+             new Object[] {records, file.length(), elapsed / 1000000});
+  }
+
+  @Test
+  public void testDelimitedRecords() throws Exception {
+    File file = write("id,name,score,active\n" +
+                        "1,\"Smith, J\"\"r\"\"\",1.5,true\r\n" +
+                        "\n" +
+                        "-9223372036854775808,\"multi\nline\",,FALSE\n" +
+                        "3,\"\",2e3,true");
+    Schema schema = Schema.recordOf("row",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+                                    Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)));
+    Configuration conf = createConf();
+    PathTrackingInputFormat.configure(conf, "file", true);
+    PathTrackingInputFormat.configureDelimited(conf, schema, ",", '"', null, true);
+    List<StructuredRecord> records = read(file, conf);
+
+    Assert.assertEquals(3, records.size());
+    Assert.assertEquals(PathTrackingInputFormat.getOutputSchema(schema, "file"), records.get(0).getSchema());
+    assertRecord(records.get(0), 1L, "Smith, J\"r\"", 1.5d, true);
+    assertRecord(records.get(1), Long.MIN_VALUE, "multi\nline", null, false);
+    assertRecord(records.get(2), 3L, "", 2000d, true);
+    Assert.assertEquals(file.getName(), records.get(2).get("file"));
+    Assert.assertFalse(PathTrackingInputFormat.canSplit(conf, new Path(file.toURI())));
+  }
+
+  @Test
+  public void testDelimitedSplits() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append(i).append("||value ").append(i).append(i % 2 == 0 ? "\n" : "\r\n");
+    }
+    File file = write(text.toString());
+    Schema schema = Schema.recordOf("row",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("value", Schema.of(Schema.Type.STRING)));
+    Configuration conf = createConf();
+    PathTrackingInputFormat.configureDelimited(conf, schema, "||", null, null, false);
+    Assert.assertTrue(PathTrackingInputFormat.canSplit(conf, new Path(file.toURI())));
+
+    // every record is read by exactly one of the splits, wherever the splits start
+    for (long splitSize : new long[] {3, 13, 100, file.length()}) {
+      List<StructuredRecord> records = new ArrayList<>();
+      for (long start = 0; start < file.length(); start += splitSize) {
+        records.addAll(read(file, conf, start, Math.min(splitSize, file.length() - start)));
+      }
+      Assert.assertEquals(200, records.size());
+      for (int i = 0; i < records.size(); i++) {
+        Assert.assertEquals(i, (int) records.get(i).<Integer>get("id"));
+        Assert.assertEquals("value " + i, records.get(i).get("value"));
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidDelimitedValue() throws Exception {
+    File file = write("1\n2147483648\n");
+    Configuration conf = createConf();
+    PathTrackingInputFormat.configureDelimited(
+      conf, Schema.recordOf("row", Schema.Field.of("id", Schema.of(Schema.Type.INT))), ",", null, null, false);
+    try {
+      read(file, conf);
+      Assert.fail("Expected the value to be invalid");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(String.format("Invalid int value '2147483648' for field 'id' in the record at offset 2 " +
+                                          "of %s.", new Path(file.toURI()).toUri()), e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCompressedSplits() throws Exception {
+    Configuration conf = createConf();
+    File bzip2File = writeCompressed("rows.bz2", 20000, conf);
+    File gzipFile = writeCompressed("rows.gz", 20000, conf);
+    Assert.assertTrue(PathTrackingInputFormat.canSplit(conf, new Path(bzip2File.toURI())));
+    Assert.assertFalse(PathTrackingInputFormat.canSplit(conf, new Path(gzipFile.toURI())));
+
+    // every line is read by exactly one of the splits, whichever compressed blocks they start and end in
+    for (long splitSize : new long[] {5000, 40000, bzip2File.length()}) {
+      List<StructuredRecord> records = new ArrayList<>();
+      for (long start = 0; start < bzip2File.length(); start += splitSize) {
+        records.addAll(read(bzip2File, conf, start, Math.min(splitSize, bzip2File.length() - start)));
+      }
+      Assert.assertEquals(20000, records.size());
+      for (int i = 0; i < records.size(); i++) {
+        Assert.assertEquals(i + ",value " + i, records.get(i).get("body"));
+      }
+    }
+
+    Schema schema = Schema.recordOf("row",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("value", Schema.of(Schema.Type.STRING)));
+    PathTrackingInputFormat.configureDelimited(conf, schema, ",", null, null, false);
+    Assert.assertTrue(PathTrackingInputFormat.canSplit(conf, new Path(bzip2File.toURI())));
+    List<StructuredRecord> records = new ArrayList<>();
+    for (long start = 0; start < bzip2File.length(); start += 40000) {
+      records.addAll(read(bzip2File, conf, start, Math.min(40000, bzip2File.length() - start)));
+    }
+    Assert.assertEquals(20000, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      Assert.assertEquals(i, (int) records.get(i).<Integer>get("id"));
+      Assert.assertEquals("value " + i, records.get(i).get("value"));
+    }
+    Assert.assertEquals(20000, read(gzipFile, conf).size());
+  }
+
+  @Test
+  public void testCompressedSplitThroughput() throws Exception {
+    Configuration conf = createConf();
+    File file = writeCompressed("throughput.bz2", 200000, conf);
+    for (int splitCount : new int[] {1, 2, 4}) {
+      ExecutorService executor = Executors.newFixedThreadPool(splitCount);
+      try {
+        long splitSize = (file.length() + splitCount - 1) / splitCount;
+        long start = System.nanoTime();
+        List<Future<Integer>> counts = new ArrayList<>();
+        for (long splitStart = 0; splitStart < file.length(); splitStart += splitSize) {
+          long readStart = splitStart;
+          counts.add(executor.submit(
+            () -> read(file, conf, readStart, Math.min(splitSize, file.length() - readStart)).size()));
+        }
+        int records = 0;
+        for (Future<Integer> count : counts) {
+          records += count.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        Assert.assertEquals(200000, records);
+        LOG.info("Read {} records of {} compressed bytes with {} splits in {} ms.",
+                 new Object[] {records, file.length(), splitCount, elapsed / 1000000});
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Writes the given number of numbered lines with the codec of the file name, in bzip2 blocks of 100 KB.
+   */
+  private File writeCompressed(String name, int count, Configuration conf) throws IOException {
+    File file = new File(temporaryFolder.getRoot(), name);
+    Configuration codecConf = new Configuration(conf);
+    codecConf.setInt("bzip2.compress.blocksize", 1);
+    CompressionCodec codec = new CompressionCodecFactory(codecConf).getCodec(new Path(file.toURI()));
+    try (OutputStream output = codec.createOutputStream(new FileOutputStream(file))) {
+      for (int i = 0; i < count; i++) {
+        output.write((i + ",value " + i + "\n").getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testAvroRecords() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "rows.avro");
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>(AVRO_SCHEMA))) {
+      writer.create(AVRO_SCHEMA, file);
+      for (GenericRecord record : createAvroRecords()) {
+        writer.append(record);
+      }
+    }
+    assertProjectedRecords(file, "avro");
+  }
+
+  @Test
+  public void testOrcRecords() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "rows.orc");
+    Configuration conf = createConf();
+    TypeDescription orcSchema = TypeDescription.fromString("struct<id:int,name:string,ignored:string>");
+    Writer writer = OrcFile.createWriter(new Path(file.toURI()), OrcFile.writerOptions(conf).setSchema(orcSchema));
+    VectorizedRowBatch batch = orcSchema.createRowBatch();
+    for (GenericRecord record : createAvroRecords()) {
+      int row = batch.size++;
+      ((LongColumnVector) batch.cols[0]).vector[row] = (Integer) record.get("id");
+      BytesColumnVector names = (BytesColumnVector) batch.cols[1];
+      if (record.get("name") == null) {
+        names.noNulls = false;
+        names.isNull[row] = true;
+      } else {
+        names.setVal(row, record.get("name").toString().getBytes(StandardCharsets.UTF_8));
+      }
+      byte[] ignored = record.get("ignored").toString().getBytes(StandardCharsets.UTF_8);
+      ((BytesColumnVector) batch.cols[2]).setVal(row, ignored);
+    }
+    writer.addRowBatch(batch);
+    writer.close();
+    assertProjectedRecords(file, "orc");
+  }
+
+  @Test
+  public void testParquetRecords() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "rows.parquet");
+    try (ParquetWriter<GenericRecord> writer = new AvroParquetWriter<>(new Path(file.toURI()), AVRO_SCHEMA)) {
+      for (GenericRecord record : createAvroRecords()) {
+        writer.write(record);
+      }
+    }
+    assertProjectedRecords(file, "parquet");
+  }
+
+  private static List<GenericRecord> createAvroRecords() {
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      GenericRecord record = new GenericData.Record(AVRO_SCHEMA);
+      record.put("id", i);
+      record.put("name", i == 1 ? null : "name " + i);
+      record.put("ignored", "ignored " + i);
+      records.add(record);
+    }
+    return records;
+  }
+
+  /**
+   * Reads the file into a schema without the ignored column and with the id widened to a long.
+   */
+  private static void assertProjectedRecords(File file, String format) throws Exception {
+    Schema schema = Schema.recordOf("row",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("missing", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    Configuration conf = createConf();
+    PathTrackingInputFormat.configure(conf, "file", true);
+    PathTrackingInputFormat.configureFormat(conf, format, schema);
+    List<StructuredRecord> records = read(file, conf);
+
+    Assert.assertEquals(3, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      StructuredRecord record = records.get(i);
+      Assert.assertEquals(PathTrackingInputFormat.getOutputSchema(schema, "file"), record.getSchema());
+      Assert.assertEquals(i, (long) record.<Long>get("id"));
+      Assert.assertEquals(i == 1 ? null : "name " + i, record.get("name"));
+      Assert.assertNull(record.get("missing"));
+      Assert.assertEquals(file.getName(), record.get("file"));
+    }
+  }
+
+  private static Configuration createConf() {
+    Configuration conf = new Configuration();
+    // not cached, so other tests still get the file system they configure
+    conf.setBoolean("fs.file.impl.disable.cache", true);
+    return conf;
+  }
+
+  private static void assertRecord(StructuredRecord record, long id, String name, Double score, boolean active) {
+    Assert.assertEquals(id, (long) record.<Long>get("id"));
+    Assert.assertEquals(name, record.get("name"));
+    Assert.assertEquals(score, record.get("score"));
+    Assert.assertEquals(active, record.get("active"));
+  }
+
+  private File write(String text) throws IOException {
+    File file = temporaryFolder.newFile();
+    try (OutputStream output = new FileOutputStream(file)) {
+      output.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+    return file;
+  }
+
+  private File write(List<byte[]> lines, int repetitions) throws IOException {
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+    for (byte[] line : lines) {
+      block.write(line);
+      block.write('\n');
+    }
+    File file = temporaryFolder.newFile();
+    try (OutputStream output = new FileOutputStream(file)) {
+      for (int i = 0; i < repetitions; i++) {
+        block.writeTo(output);
+      }
+    }
+    return file;
+  }
+
+  private static List<StructuredRecord> read(File file, Configuration conf) throws Exception {
+    return read(file, conf, 0, file.length());
+  }
+
+  private static List<StructuredRecord> read(File file, Configuration conf, long start,
+                                             long length) throws Exception {
+    FileSplit split = new FileSplit(new Path(file.toURI()), start, length, new String[0]);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    List<StructuredRecord> records = new ArrayList<>();
+    try (RecordReader<NullWritable, StructuredRecord> reader =
+           new PathTrackingInputFormat().createRecordReader(split, context)) {
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        StructuredRecord record = reader.getCurrentValue();
+        // the record is built once per line
+        Assert.assertSame(record, reader.getCurrentValue());
+        records.add(record);
+      }
+    }
+    return records;
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for {@link ReadAheadInputStream}.
+ */
+public class ReadAheadInputStreamTest {
+  private static final Logger LOG = LoggerFactory.getLogger(ReadAheadInputStreamTest.class);
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testRead() throws Exception {
+    byte[] bytes = new byte[10017];
+    new Random(0).nextBytes(bytes);
+    File file = temporaryFolder.newFile();
+    try (OutputStream output = new FileOutputStream(file)) {
+      output.write(bytes);
+    }
+    // not cached, so other tests still get the file system they configure
+    FileSystem fs = new RawLocalFileSystem();
+    fs.initialize(URI.create("file:///"), new Configuration());
+    Path path = new Path(file.toURI());
+
+    try (ReadAheadInputStream in = new ReadAheadInputStream(fs, path, 1000, 3, 2)) {
+      ByteArrayOutputStream read = new ByteArrayOutputStream();
+      byte[] buffer = new byte[333];
+      int count = in.read(buffer);
+      while (count >= 0) {
+        read.write(buffer, 0, count);
+        count = in.read(buffer);
+      }
+      Assert.assertArrayEquals(bytes, read.toByteArray());
+      Assert.assertEquals(bytes.length, in.getPos());
+      Assert.assertEquals(-1, in.read());
+
+      // back into a block that was dropped, then within the current block and to the end of the file
+      in.seek(1500);
+      Assert.assertEquals(bytes[1500] & 0xff, in.read());
+      in.seek(1999);
+      Assert.assertEquals(bytes[1999] & 0xff, in.read());
+      Assert.assertEquals(bytes[2000] & 0xff, in.read());
+      in.seek(bytes.length);
+      Assert.assertEquals(-1, in.read());
+
+      byte[] positioned = new byte[100];
+      in.readFully(9000, positioned);
+      Assert.assertArrayEquals(Arrays.copyOfRange(bytes, 9000, 9100), positioned);
+      Assert.assertEquals(bytes.length, in.getPos());
+    }
+  }
+
+  @Test
+  public void testReadAheadLatency() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      text.append("line ").append(i).append(" of the file read with latency\n");
+    }
+    File file = temporaryFolder.newFile();
+    try (OutputStream output = new FileOutputStream(file)) {
+      output.write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    Configuration conf = new Configuration();
+    conf.set("fs.file.impl", SlowFileSystem.class.getName());
+    conf.setBoolean("fs.file.impl.disable.cache", true);
+    long start = System.nanoTime();
+    List<String> lines = readLines(file, conf);
+    long elapsed = System.nanoTime() - start;
+
+    PathTrackingInputFormat.configureReadAhead(conf, 8, 64 * 1024);
+    start = System.nanoTime();
+    List<String> readAheadLines = readLines(file, conf);
+    long readAheadElapsed = System.nanoTime() - start;
+
+    Assert.assertEquals(20000, lines.size());
+    Assert.assertEquals(lines, readAheadLines);
+    LOG.info("Read {} bytes with {} ms latency in {} ms, and in {} ms reading ahead.",
+             new Object[] {file.length(), SlowFileSystem.LATENCY_MILLIS, elapsed / 1000000,
+               readAheadElapsed / 1000000});
+    // every read waits for the latency without reading ahead, while the blocks read ahead wait at the same time
+    Assert.assertTrue(readAheadElapsed < elapsed);
+  }
+
+  @Test
+  public void testDroppedBlocksCountAgainstBlocksInFlight() throws Exception {
+    byte[] bytes = new byte[100000];
+    new Random(0).nextBytes(bytes);
+    File file = temporaryFolder.newFile();
+    try (OutputStream output = new FileOutputStream(file)) {
+      output.write(bytes);
+    }
+    FileSystem fs = new SlowFileSystem();
+    fs.initialize(URI.create("file:///"), new Configuration());
+    SlowFileSystem.MAX_READS.set(0);
+
+    try (ReadAheadInputStream in = new ReadAheadInputStream(fs, new Path(file.toURI()), 1000, 2, 8)) {
+      for (int i = 0; i < 20; i++) {
+        // every seek drops the blocks read ahead while they are still being read
+        in.seek(i * 5000);
+        Assert.assertEquals(bytes[i * 5000] & 0xff, in.read());
+      }
+    }
+    Assert.assertTrue(SlowFileSystem.MAX_READS.get() <= 2);
+  }
+
+  private static List<String> readLines(File file, Configuration conf) throws Exception {
+    FileSplit split = new FileSplit(new Path(file.toURI()), 0, file.length(), new String[0]);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    List<String> lines = new ArrayList<>();
+    try (RecordReader<NullWritable, StructuredRecord> reader =
+           new PathTrackingInputFormat().createRecordReader(split, context)) {
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        lines.add(reader.getCurrentValue().get("body"));
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * A local file system that waits before every read, like a remote store waits for a round trip.
+   */
+  public static final class SlowFileSystem extends RawLocalFileSystem {
+    private static final long LATENCY_MILLIS = 10;
+    // the reads waiting for the latency at the same time, and the most of them so far
+    private static final AtomicInteger READS = new AtomicInteger();
+    private static final AtomicInteger MAX_READS = new AtomicInteger();
+
+    @Override
+    public FSDataInputStream open(Path path, int bufferSize) throws IOException {
+      return new FSDataInputStream(new SlowInputStream(super.open(path, bufferSize)));
+    }
+
+    private static void await() throws IOException {
+      MAX_READS.accumulateAndGet(READS.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(LATENCY_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the latency.");
+      } finally {
+        READS.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Waits for the latency before every read of the stream it wraps.
+   */
+  private static final class SlowInputStream extends FSInputStream {
+    private final FSDataInputStream in;
+
+    private SlowInputStream(FSDataInputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return in.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      SlowFileSystem.await();
+      return in.read(buffer, offset, length);
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+      SlowFileSystem.await();
+      return in.read(position, buffer, offset, length);
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      in.seek(pos);
+    }
+
+    @Override
+    public long getPos() throws IOException {
+      return in.getPos();
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
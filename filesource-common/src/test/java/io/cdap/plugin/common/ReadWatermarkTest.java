@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * Test for {@link ReadWatermark}.
+ */
+public class ReadWatermarkTest {
+
+  @Test
+  public void testMergeIntervals() {
+    ReadWatermark watermark = new ReadWatermark(100);
+    watermark.addInterval(10, 20);
+    watermark.addInterval(40, 50);
+    watermark.addInterval(20, 30);
+    watermark.addInterval(45, 60);
+    watermark.addInterval(5, 5);
+    Assert.assertEquals(2, watermark.getIntervals());
+
+    Assert.assertFalse(watermark.isPending(9));
+    Assert.assertTrue(watermark.isPending(10));
+    Assert.assertTrue(watermark.isPending(29));
+    Assert.assertFalse(watermark.isPending(30));
+    Assert.assertTrue(watermark.isPending(59));
+    Assert.assertFalse(watermark.isPending(60));
+
+    Assert.assertTrue(watermark.isToRead(100, 200));
+    Assert.assertFalse(watermark.isToRead(200, 200));
+    Assert.assertFalse(watermark.isToRead(70, 200));
+    Assert.assertTrue(watermark.isToRead(15, 200));
+  }
+
+  @Test
+  public void testRepeatedFailures() {
+    // every run writes its cutoff as the watermark, and adds what it was to read back when it fails
+    ReadWatermark state = new ReadWatermark(0);
+    for (int run = 1; run <= 5000; run++) {
+      ReadWatermark attempted = state;
+      long cutoff = run * 100L;
+      state = new ReadWatermark(cutoff);
+      state.addFailed(attempted, cutoff);
+    }
+    // the times of consecutive failed runs are merged into one interval
+    Assert.assertEquals(1, state.getIntervals());
+    Assert.assertTrue(state.isPending(0));
+    Assert.assertTrue(state.isPending(499999));
+    Assert.assertTrue(state.isToRead(500000, 500100));
+
+    ReadWatermark copy = ReadWatermark.fromJson(state.toJson());
+    Assert.assertEquals(state.getIntervals(), copy.getIntervals());
+    Assert.assertEquals(state.getWatermark(), copy.getWatermark());
+    Assert.assertTrue(copy.isPending(250000));
+
+    // a successful run reads the pending intervals, so it writes the watermark without them
+    Assert.assertEquals(0, new ReadWatermark(500100).getIntervals());
+  }
+
+  @Test
+  public void testMaxIntervals() {
+    ReadWatermark watermark = new ReadWatermark(1000000);
+    for (int i = 0; i < 2000; i++) {
+      watermark.addInterval(i * 100L, i * 100L + 10);
+    }
+    Assert.assertEquals(1000, watermark.getIntervals());
+    // merging intervals may read files again, but never skips a pending time
+    for (int i = 0; i < 2000; i++) {
+      Assert.assertTrue(watermark.isPending(i * 100L + 5));
+    }
+  }
+
+  @Test
+  public void testFromDates() {
+    ReadWatermark watermark = ReadWatermark.fromDates(ImmutableList.of(new Date(10), new Date(20), new Date(100)));
+    Assert.assertEquals(100, watermark.getWatermark());
+    Assert.assertEquals(1, watermark.getIntervals());
+    Assert.assertTrue(watermark.isToRead(15, 200));
+    Assert.assertFalse(watermark.isToRead(50, 200));
+  }
+
+  @Test
+  public void testIncrementalFilter() {
+    ReadWatermark watermark = new ReadWatermark(1000);
+    watermark.addInterval(100, 200);
+    Configuration conf = new Configuration();
+    conf.set(AbstractFileBatchSource.INPUT_NAME_CONFIG, "/input");
+    conf.set(AbstractFileBatchSource.INPUT_REGEX_CONFIG, ".*\\.csv");
+    conf.set(AbstractFileBatchSource.CUTOFF_READ_TIME, "2020-01-01-00");
+    conf.set(AbstractFileBatchSource.READ_WATERMARK, watermark.toJson());
+    conf.setLong(AbstractFileBatchSource.READ_CUTOFF, 2000);
+    conf.setBoolean(AbstractFileBatchSource.INCREMENTAL_CONFIG, true);
+    BatchFileFilter filter = new BatchFileFilter();
+    filter.setConf(conf);
+
+    Assert.assertTrue(filter.accept(createStatus("/input/a.csv", 1500)));
+    Assert.assertTrue(filter.accept(createStatus("/input/a.csv", 150)));
+    Assert.assertFalse(filter.accept(createStatus("/input/a.csv", 500)));
+    Assert.assertFalse(filter.accept(createStatus("/input/a.csv", 2000)));
+    Assert.assertFalse(filter.accept(createStatus("/input/a.txt", 1500)));
+  }
+
+  private static FileStatus createStatus(String path, long modificationTime) {
+    return new FileStatus(10, false, 1, 1, modificationTime, new Path(path));
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test for {@link RecordColumns}.
+ */
+public class RecordColumnsTest {
+  private static final Schema SCHEMA =
+    Schema.recordOf("record",
+                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("data", Schema.nullableOf(Schema.of(Schema.Type.BYTES))),
+                    Schema.Field.of("path", Schema.of(Schema.Type.STRING)));
+
+  @Test
+  public void testBinaryIntoString() {
+    RecordColumns columns = new RecordColumns(SCHEMA, "path");
+    byte[] utf8 = "café".getBytes(StandardCharsets.UTF_8);
+    Assert.assertEquals("café", columns.convert(0, new Utf8("café")));
+    // orc binary, avro bytes and avro fixed values are decoded instead of printed as objects
+    Assert.assertEquals("café", columns.convert(0, utf8));
+    ByteBuffer buffer = ByteBuffer.allocate(utf8.length + 2);
+    buffer.position(1);
+    buffer.put(utf8);
+    buffer.position(1);
+    buffer.limit(1 + utf8.length);
+    Assert.assertEquals("café", columns.convert(0, buffer));
+    Assert.assertEquals(1, buffer.position());
+    org.apache.avro.Schema fixedSchema = org.apache.avro.Schema.createFixed("fixed", null, null, utf8.length);
+    Assert.assertEquals("café", columns.convert(0, new GenericData.Fixed(fixedSchema, utf8)));
+  }
+
+  @Test
+  public void testBinaryIntoBytes() {
+    RecordColumns columns = new RecordColumns(SCHEMA, "path");
+    byte[] bytes = {1, 2, 3};
+    Assert.assertArrayEquals(bytes, (byte[]) columns.convert(1, bytes));
+    Assert.assertArrayEquals(bytes, (byte[]) columns.convert(1, ByteBuffer.wrap(bytes)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStringIntoBytes() {
+    new RecordColumns(SCHEMA, "path").convert(1, "text");
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Test for {@link TimestampParser}.
+ */
+public class TimestampParserTest {
+
+  @Test
+  public void testParse() throws Exception {
+    TimeZone timeZone = TimeZone.getDefault();
+    try {
+      for (String zone : new String[] {"UTC", "America/Los_Angeles", "Asia/Kolkata"}) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        assertSameAsDateFormat();
+      }
+    } finally {
+      TimeZone.setDefault(timeZone);
+    }
+
+    TimestampParser parser = TimestampParser.compile("yyyy-MM-dd-HH");
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd-HH");
+    String name = "E2ABC.2015-06-16-14.csv";
+    Assert.assertEquals(format.parse("2015-06-16-14").getTime(), parser.parse(name, 6, name.length()));
+    Assert.assertEquals(TimestampParser.NO_TIMESTAMP, parser.parse(name, 0, name.length()));
+    Assert.assertEquals(TimestampParser.NO_TIMESTAMP, parser.parse("2015-06-16", 0, 10));
+    Assert.assertEquals(TimestampParser.NO_TIMESTAMP, parser.parse("2015-13-16-14", 0, 13));
+    Assert.assertEquals(TimestampParser.NO_TIMESTAMP, parser.parse("2015-06-16-1x", 0, 13));
+  }
+
+  @Test
+  public void testQuotedPattern() throws Exception {
+    TimestampParser parser = TimestampParser.compile("'dt='yyyy-MM-dd/'hr='HH");
+    Assert.assertTrue(parser.spansDirectories());
+    String path = "dt=2024-06-16/hr=14/part-0.csv";
+    Assert.assertEquals(new SimpleDateFormat("yyyy-MM-dd-HH").parse("2024-06-16-14").getTime(),
+                        parser.parse(path, 0, path.length()));
+  }
+
+  @Test
+  public void testParseRange() throws Exception {
+    TimestampParser parser = TimestampParser.compile("yyyy/MM/dd/HH");
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd-HH");
+
+    assertRange(parser.parseRange("2024"), format.parse("2024-01-01-00"), format.parse("2025-01-01-00"));
+    assertRange(parser.parseRange("2024/12"), format.parse("2024-12-01-00"), format.parse("2025-01-01-00"));
+    assertRange(parser.parseRange("2024/02/29"), format.parse("2024-02-29-00"), format.parse("2024-03-01-00"));
+    assertRange(parser.parseRange("2024/06/16/14"), format.parse("2024-06-16-14"), format.parse("2024-06-16-15"));
+    assertRange(parser.parseRange("2024/06/16/14/sub"), format.parse("2024-06-16-14"),
+                format.parse("2024-06-16-15"));
+    Assert.assertNull(parser.parseRange("logs"));
+    Assert.assertNull(parser.parseRange("202"));
+    Assert.assertNull(TimestampParser.compile("dd-MM-yyyy").parseRange("16-06"));
+  }
+
+  @Test
+  public void testInvalidPattern() {
+    for (String pattern : new String[] {"yyyy-MM-dd-hh", "yy-MM-dd", "'dt=yyyy"}) {
+      try {
+        TimestampParser.compile(pattern);
+        Assert.fail("Expected pattern " + pattern + " to be invalid");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  private static void assertSameAsDateFormat() throws Exception {
+    TimestampParser parser = TimestampParser.compile("yyyy-MM-dd-HH");
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd-HH");
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(format.parse("2015-06-16-00"));
+    // compare every hour of two years, which covers leap days and daylight saving time changes
+    for (int i = 0; i < 2 * 366 * 24; i++) {
+      String timestamp = format.format(calendar.getTime());
+      Assert.assertEquals(timestamp, format.parse(timestamp).getTime(),
+                          parser.parse(timestamp, 0, timestamp.length()));
+      calendar.add(Calendar.HOUR_OF_DAY, 1);
+    }
+  }
+
+  private static void assertRange(long[] range, Date start, Date end) {
+    Assert.assertNotNull(range);
+    Assert.assertEquals(start.getTime(), range[0]);
+    Assert.assertEquals(end.getTime(), range[1]);
+  }
+}